@@ -1,6 +1,15 @@
 package plc.compiler;
 
+import plc.scanner.Scanner;
+import plc.scanner.Source;
+import plc.scanner.TokenBuffer;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -13,14 +22,21 @@ import java.util.List;
  * If the lexer fails to parse something (such as an unterminated string) you
  * should throw a {@link ParseException}.
  *
- * The {@link #peek(String...)} and {@link #match(String...)} functions are
- * helpers you need to use, they will make the implementation a lot easier.
+ * Characters are classified with the lookup tables of {@link Scanner}, which
+ * the {@link CharStream} extends. The {@link #peek(String...)} and {@link
+ * #match(String...)} functions are regex based helpers which are convenient
+ * for experimenting, but are not used to lex since matching a pattern for
+ * every character is far too slow.
  */
 public final class Lexer {
 
     final CharStream chars;
 
     Lexer(String input) {
+        chars = new CharStream(Source.of(input));
+    }
+
+    Lexer(Source input) {
         chars = new CharStream(input);
     }
 
@@ -31,6 +47,33 @@ public final class Lexer {
         return new Lexer(input).lex();
     }
 
+    /**
+     * Lexes the input into a {@link TokenBuffer}, which stores the tokens
+     * packed into an array and reads their literals from the input instead of
+     * copying each one into a {@link Token}.
+     */
+    public static TokenBuffer pack(String input) throws ParseException {
+        return new Lexer(input).lex(new TokenBuffer(input));
+    }
+
+    /**
+     * Lexes the UTF-8 file at the given path, which is memory-mapped. Tokens
+     * are lexed as the iterator is advanced and the characters before them
+     * are discarded, so the file is never held in memory as a whole. Errors
+     * are thrown by the iterator once they are reached.
+     */
+    public static Iterator<Token> tokens(Path path) throws IOException {
+        return new Lexer(Source.of(path, StandardCharsets.UTF_8)).tokens();
+    }
+
+    /**
+     * Lexes the UTF-8 bytes read from the channel as the iterator is
+     * advanced, in the same way as {@link #tokens(Path)}.
+     */
+    public static Iterator<Token> tokens(ReadableByteChannel channel) {
+        return new Lexer(Source.of(channel, StandardCharsets.UTF_8)).tokens();
+    }
+
     /**
      * Repeatedly lexes the next token using {@link #lexToken()} until the end
      * of the input is reached, returning the list of tokens lexed. This should
@@ -38,18 +81,56 @@ public final class Lexer {
      */
     List<Token> lex() throws ParseException {
         List<Token> tokens = new ArrayList<>();
-        while (chars.has(0)){
-            if (peek("[\n\r\t ]")) {
-                chars.advance();
-                chars.skip();
-            }
-            else {
-                tokens.add(lexToken());
-                chars.skip();
-            }
+        for (Token token = next(); token != null; token = next()) {
+            tokens.add(token);
+        }
+        return tokens;
+
+    }
+
+    /**
+     * Lexes every token into the buffer, which must be over the same
+     * characters as the source of this lexer, and returns it.
+     */
+    TokenBuffer lex(TokenBuffer tokens) throws ParseException {
+        while (skipWhitespace()) {
+            tokens.add(lexToken().ordinal(), chars.start(), chars.length);
+            chars.skip();
         }
+        tokens.trimToSize();
         return tokens;
+    }
 
+    Iterator<Token> tokens() {
+        return Scanner.iterate(this::next);
+    }
+
+    /**
+     * Skips whitespace and lexes the next token, or returns null at the end of
+     * the input. The characters before the next token are released.
+     */
+    Token next() throws ParseException {
+        if (!skipWhitespace()) {
+            return null;
+        }
+        Token.Type type = lexToken();
+        Token token = new Token(type, chars.literal(), chars.start());
+        chars.skip();
+        chars.release();
+        return token;
+    }
+
+    /**
+     * Skips whitespace, releasing it, and returns true if there is a token
+     * left to lex.
+     */
+    boolean skipWhitespace() {
+        while (chars.is(0, Scanner.BLANK)) {
+            chars.advance();
+            chars.skip();
+            chars.release();
+        }
+        return chars.has(0);
     }
 
     /*
@@ -60,9 +141,11 @@ public final class Lexer {
      */
 
     /**
-     * Lexes the next token. It may be helpful to have this call other methods,
-     * such as {@code lexIdentifier()} or {@code lexString()}, based on the next
-     * character(s).
+     * Lexes the next token and returns its type, leaving its literal as the
+     * one being built by the {@link CharStream} (see {@link
+     * CharStream#end(Token.Type)}). It may be helpful to have this call other
+     * methods, such as {@code lexIdentifier()} or {@code lexString()}, based on
+     * the next character(s).
      *
      * Additionally, here is an example of lex a character literal (not used
      * in this assignment) using the peek/match methods below.
@@ -95,12 +178,12 @@ public final class Lexer {
      * }
      * </pre>
      */
-    Token lexToken() throws ParseException {
-        if (peek("[0-9]")) {
+    Token.Type lexToken() throws ParseException {
+        if (chars.is(0, Scanner.DIGIT)) {
             return lexNumber();
-        } else if (peek("[A-Za-z_]")) {
+        } else if (chars.is(0, Scanner.LETTER | Scanner.UNDERSCORE)) {
             return lexIdentifier();
-        } else if (peek("\"")) {
+        } else if (chars.is(0, Scanner.QUOTE)) {
             return lexString();
         } else {
             return lexOperator();
@@ -118,12 +201,10 @@ public final class Lexer {
      * Lexes an IDENTIFIER token. Unlike the previous project, fewer characters
      * are allowed in identifiers.
      */
-    Token lexIdentifier() throws ParseException {
+    Token.Type lexIdentifier() throws ParseException {
         chars.advance();
-        while (peek("[A-Za-z0-9_]")) {
-            chars.advance();
-        }
-        return chars.emit(Token.Type.IDENTIFIER);
+        chars.advanceWhile(Scanner.LETTER | Scanner.DIGIT | Scanner.UNDERSCORE);
+        return chars.end(Token.Type.IDENTIFIER);
     }
 
     /**
@@ -133,26 +214,21 @@ public final class Lexer {
      * way, we handle this through a single method and change the token type of
      * the emitted token.
      */
-    Token lexNumber() throws ParseException {
-        while (peek("[0-9]")) {
-            chars.advance();
-        }
+    Token.Type lexNumber() throws ParseException {
+        chars.advanceWhile(Scanner.DIGIT);
 
-        if (chars.has(0) && peek("\\.","[0-9]")) {
+        if (chars.is(0, Scanner.DOT) && chars.is(1, Scanner.DIGIT)) {
             chars.advance();
-            if (peek("[0-9]")) {
-                chars.advance();
-                while (peek("[0-9]")) {
-                    chars.advance();
-                }
-                return chars.emit(Token.Type.DECIMAL);
+            if (chars.is(0, Scanner.DIGIT)) {
+                chars.advanceWhile(Scanner.DIGIT);
+                return chars.end(Token.Type.DECIMAL);
             } else {
                 chars.skip();
                 //throw new ParseException("Not a number: ", chars.index);
             }
 
         }
-        return chars.emit(Token.Type.INTEGER);
+        return chars.end(Token.Type.INTEGER);
     }
 
     /**
@@ -160,9 +236,9 @@ public final class Lexer {
      * characters allowed in strings and escape characters are not supported. If
      * the character is invalid a {@link ParseException} should be thrown.
      */
-    Token lexString() throws ParseException {
+    Token.Type lexString() throws ParseException {
         chars.advance();
-        while (chars.has(0) && !peek("\"")) {
+        while (chars.has(0) && !chars.is(0, Scanner.QUOTE)) {
             //            if (peek("\\\\", "[\"]") && chars.has(2)) {
             //                throw new ParseException("Invalid Escape", chars.index);
             //            }
@@ -178,7 +254,7 @@ public final class Lexer {
         if (chars.has(0)) {
             chars.advance();
         }
-        return chars.emit(Token.Type.STRING);
+        return chars.end(Token.Type.STRING);
 
     }
 
@@ -189,26 +265,26 @@ public final class Lexer {
      * <em>single</em> OPERATOR. As before, this is a 'fallback' for any other
      * unknown characters.
      */
-    Token lexOperator() throws ParseException {
-        if (peek("=")) {
+    Token.Type lexOperator() throws ParseException {
+        if (chars.is(0, '=')) {
             chars.advance();
                                         //TODO: Possible problem with = in lexer
-            if (peek("=")) {
+            if (chars.is(0, '=')) {
                 chars.advance();
-                return chars.emit(Token.Type.OPERATOR);
+                return chars.end(Token.Type.OPERATOR);
             }
-            return chars.emit(Token.Type.OPERATOR);
+            return chars.end(Token.Type.OPERATOR);
             //throw new ParseException("unexpected token for lexOperator", chars.index);
-        } else if (peek("!")) {
+        } else if (chars.is(0, '!')) {
             chars.advance();
-            if (peek("=")) {
+            if (chars.is(0, '=')) {
                 chars.advance();
-                return chars.emit(Token.Type.OPERATOR);
+                return chars.end(Token.Type.OPERATOR);
             }
             throw new ParseException("unexpected token for lexOperator", chars.index);
         } else{
             chars.advance();
-            return chars.emit(Token.Type.OPERATOR);
+            return chars.end(Token.Type.OPERATOR);
         }
         //throw new ParseException("unexpected token for lexOperator", chars.index);
     }
@@ -247,22 +323,10 @@ public final class Lexer {
      * where in the input string the lexer currently is, and the builder
      * accumulates characters into the literal value for the next token.
      */
-    public static final class CharStream {
-
-        final String input;
-        int index = 0;
-        int length = 0;
+    public static final class CharStream extends Scanner {
 
-        CharStream(String input) {
-            this.input = input;
-        }
-
-        /**
-         * Returns true if there is a character at index + offset, as defined by
-         * the length of the input.
-         */
-        public boolean has(int offset) {
-            return index + offset < input.length();
+        CharStream(Source input) {
+            super(input);
         }
 
         /**
@@ -273,15 +337,6 @@ public final class Lexer {
             return input.charAt(index + offset); //throws if out of bounds
         }
 
-        /**
-         * Advances to the next character, incrementing the current index and
-         * length of the literal being built.
-         */
-        public void advance() {
-            index++;
-            length++;
-        }
-
         /**
          * Resets the length to zero, skipping any consumed characters.
          */
@@ -294,9 +349,19 @@ public final class Lexer {
          * of the token should be the starting index.
          */
         public Token emit(Token.Type type) {
-            int start = index - length;
-            skip(); //we've saved the starting point already
-            return new Token(type, input.substring(start, index), start);
+            Token token = new Token(type, literal(), start());
+            skip();
+            return token;
+        }
+
+        /**
+         * Ends a token of the given type, returning the type and leaving the
+         * built literal to be read by the caller. This is used by the lexer
+         * so it does not create a {@link Token} when packing tokens into a
+         * {@link TokenBuffer}.
+         */
+        public Token.Type end(Token.Type type) {
+            return type;
         }
 
     }
@@ -1,8 +1,12 @@
 package plc.compiler;
 
+import plc.scanner.Lookahead;
+import plc.scanner.TokenBuffer;
+
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,7 +16,9 @@ import java.util.Optional;
  * Tree (AST).
  *
  * The parser has a similar architecture to the lexer, just with {@link Token}s
- * instead of characters. As before, {@link #peek(Object...)} and {@link
+ * instead of characters, which are read from a {@link TokenBuffer} so the
+ * literals are only copied when they are needed in the AST, or pulled from
+ * the lexer one at a time. As before, {@link #peek(Object...)} and {@link
  * #match(Object...)} are helpers to make the implementation easier.
  *
  * This type of parser is called <em>recursive descent</em>. Each rule in our
@@ -21,10 +27,42 @@ import java.util.Optional;
  */
 public final class Parser {
 
+    private static final int EQUALITY = 1;
+    private static final int ADDITIVE = 2;
+    private static final int MULTIPLICATIVE = 3;
+
+    /**
+     * The binary operators, which are all left associative. An operator with
+     * a higher precedence binds tighter, so adding an operator only needs an
+     * entry here (and support in the {@link Analyzer} and {@link Generator}).
+     */
+    private static final BinaryOperator[] OPERATORS = {
+            new BinaryOperator(Token.Type.OPERATOR, "==", EQUALITY),
+            new BinaryOperator(Token.Type.OPERATOR, "!=", EQUALITY),
+            new BinaryOperator(Token.Type.OPERATOR, "+", ADDITIVE),
+            new BinaryOperator(Token.Type.OPERATOR, "-", ADDITIVE),
+            new BinaryOperator(Token.Type.OPERATOR, "*", MULTIPLICATIVE),
+            new BinaryOperator(Token.Type.OPERATOR, "/", MULTIPLICATIVE),
+    };
+
     private final TokenStream tokens;
 
     public Parser(List<Token> tokens) {
-        this.tokens = new TokenStream(tokens);
+        this(pack(tokens));
+    }
+
+    public Parser(TokenBuffer tokens) {
+        this.tokens = new PackedTokenStream(tokens);
+    }
+
+    /**
+     * Creates a parser which pulls tokens from the iterator as they are
+     * needed, such as from {@link Lexer#tokens(java.nio.file.Path)}, so
+     * parsing starts before lexing finishes and the full list of tokens never
+     * exists. Errors are still reported by the position of the token.
+     */
+    public Parser(Iterator<Token> tokens) {
+        this.tokens = new StreamedTokenStream(tokens);
     }
 
     /**
@@ -34,13 +72,48 @@ public final class Parser {
         return new Parser(tokens).parseSource();
     }
 
+    /**
+     * Parses the tokens packed by {@link Lexer#pack(String)} and returns the
+     * parsed AST.
+     */
+    public static Ast parse(TokenBuffer tokens) throws ParseException {
+        return new Parser(tokens).parseSource();
+    }
+
+    /**
+     * Parses the tokens as they are pulled from the iterator and returns the
+     * parsed AST.
+     */
+    public static Ast parse(Iterator<Token> tokens) throws ParseException {
+        return new Parser(tokens).parseSource();
+    }
+
+    /**
+     * Packs a list of tokens into a buffer over their concatenated literals.
+     * The parser reports errors by the position of the token in the list, so
+     * the indices of the tokens are not kept.
+     */
+    private static TokenBuffer pack(List<Token> tokens) {
+        StringBuilder literals = new StringBuilder();
+        for (Token token : tokens) {
+            literals.append(token.getLiteral());
+        }
+        TokenBuffer buffer = new TokenBuffer(literals);
+        int start = 0;
+        for (Token token : tokens) {
+            buffer.add(token.getType().ordinal(), start, token.getLiteral().length());
+            start += token.getLiteral().length();
+        }
+        return buffer;
+    }
+
     /**
      * Parses the {@code source} rule.
      */
     public Ast.Source parseSource() throws ParseException {
         List<Ast.Statement> statements = new ArrayList<>();
         Ast.Source source = new Ast.Source(statements);
-        while (tokens.index < tokens.tokens.size()) {
+        while (tokens.has(0)) {
             source.getStatements().add(parseStatement());
         }
         return source;
@@ -54,12 +127,11 @@ public final class Parser {
      */
     public Ast.Statement parseStatement() throws ParseException {
         if (peek(Token.Type.IDENTIFIER)) {
-            Token node = tokens.get(0);
-            if (node.getLiteral().equals("LET")) {
+            if (tokens.is(0, "LET")) {
                 return parseDeclarationStatement();
-            } else if (node.getLiteral().equals("IF")) {
+            } else if (tokens.is(0, "IF")) {
                 return parseIfStatement();
-            } else if (node.getLiteral().equals("WHILE")) {
+            } else if (tokens.is(0, "WHILE")) {
                 return parseWhileStatement();
             } else if (peek(Token.Type.IDENTIFIER, Token.Type.OPERATOR) && peek(Token.Type.IDENTIFIER, "=")) {
                 return parseAssignmentStatement();
@@ -77,7 +149,7 @@ public final class Parser {
      */
     public Ast.Statement.Expression parseExpressionStatement() throws ParseException {
         Ast.Statement.Expression retVal = new Ast.Statement.Expression(parseExpression());
-        if (tokens.has(0) && tokens.get(0).getLiteral().equals(";")) {
+        if (tokens.has(0) && tokens.is(0, ";")) {
             tokens.advance();
         } else {
             throw new ParseException("Could not find semicolon", tokens.index);
@@ -95,26 +167,26 @@ public final class Parser {
             throw new ParseException("Was not able to peek identifier, colon, identifier", tokens.index);
         }
 
-        String identifier1 = tokens.get(0).getLiteral();
+        String identifier1 = tokens.literal(0);
         tokens.advance();
         tokens.advance(); //skip colon
-        String identifier2 = tokens.get(0).getLiteral();
+        String identifier2 = tokens.literal(0);
         tokens.advance();
         Optional<Ast.Expression> val;
 
-        if (tokens.has(0) && peek(Token.Type.OPERATOR) && tokens.get(0).getLiteral().equals("=")) {
+        if (tokens.has(0) && peek(Token.Type.OPERATOR) && tokens.is(0, "=")) {
             tokens.advance();
-            if (tokens.has(0) && !tokens.get(0).getLiteral().equals(";")) {
+            if (tokens.has(0) && !tokens.is(0, ";")) {
                 val = Optional.of(parseExpression());
             }else {
                 throw new ParseException("Parse Exception undefined", tokens.index);
             }
-        } else if (tokens.has(0) && tokens.get(0).getLiteral().equals(";")){
+        } else if (tokens.has(0) && tokens.is(0, ";")){
             val = Optional.empty();
         } else {
             throw new ParseException("Declaration statement not defined", tokens.index);
         }
-        if (tokens.has(0) && tokens.get(0).getLiteral().equals(";")) {
+        if (tokens.has(0) && tokens.is(0, ";")) {
             tokens.advance();
         } else {
             throw new ParseException("Could not find semicolon", tokens.index);
@@ -131,7 +203,7 @@ public final class Parser {
     public Ast.Statement.Assignment parseAssignmentStatement() throws ParseException {
         //check for identifier then check for =
         //create new Assignment statement and set var equal to experession junk
-        String ident = tokens.get(0).getLiteral();
+        String ident = tokens.literal(0);
         tokens.advance();
         if(!peek("="))
         {
@@ -140,7 +212,7 @@ public final class Parser {
             tokens.advance();
         }
         Ast.Statement.Assignment ret = new Ast.Statement.Assignment(ident,parseExpression());
-        if (tokens.has(0) && tokens.get(0).getLiteral().equals(";")) {
+        if (tokens.has(0) && tokens.is(0, ";")) {
             tokens.advance();
         } else {
             throw new ParseException("Could not find semicolon", tokens.index);
@@ -157,7 +229,7 @@ public final class Parser {
     public Ast.Statement.If parseIfStatement() throws ParseException {
         tokens.advance();
         Ast.Expression expval = parseExpression();
-        if (tokens.has(0) && peek(Token.Type.IDENTIFIER) && tokens.get(0).getLiteral().equals("THEN")) {
+        if (tokens.has(0) && peek(Token.Type.IDENTIFIER) && tokens.is(0, "THEN")) {
             tokens.advance();
         }else {
             throw new ParseException("THEN identifier does not exist", tokens.index);
@@ -194,16 +266,16 @@ public final class Parser {
     public Ast.Statement.While parseWhileStatement() throws ParseException {
         tokens.advance();
         Ast.Expression expval = parseExpression();
-        if (tokens.has(0) && peek(Token.Type.IDENTIFIER) && tokens.get(0).getLiteral().equals("DO")) {
+        if (tokens.has(0) && peek(Token.Type.IDENTIFIER) && tokens.is(0, "DO")) {
             tokens.advance();
         }else {
             throw new ParseException("DO identifier does not exist", tokens.index);
         }
         List<Ast.Statement> whileStatements = new ArrayList<>();
-        while (tokens.index < tokens.tokens.size() && !(peek("END") && peek(Token.Type.IDENTIFIER))) {
+        while (tokens.has(0) && !(peek("END") && peek(Token.Type.IDENTIFIER))) {
             whileStatements.add(parseStatement());
         }
-        if (tokens.has(0) && peek(Token.Type.IDENTIFIER) && tokens.get(0).getLiteral().equals("END")) {
+        if (tokens.has(0) && peek(Token.Type.IDENTIFIER) && tokens.is(0, "END")) {
             tokens.advance();
         } else {
             throw new ParseException("END identifier not found", tokens.index);
@@ -216,70 +288,64 @@ public final class Parser {
      */
     public Ast.Expression parseExpression() throws ParseException {
         return parseEqualityExpression();
-        //TODO marc
     }
 
     /**
      * Parses the {@code equality-expression} rule.
      */
     public Ast.Expression parseEqualityExpression() throws ParseException {
-        Ast.Expression leftExpression = parseAdditiveExpression();
-        if ((peek("==") || peek("!=")) && peek(Token.Type.OPERATOR)) {
-            while ((peek("==") || peek("!=")) && peek(Token.Type.OPERATOR)) {
-                String tokenOperator = tokens.get(0).getLiteral();
-                tokens.advance();
-                Ast.Expression rightExpression = parseAdditiveExpression();
-                Ast.Expression.Binary bin = new Ast.Expression.Binary(tokenOperator, leftExpression, rightExpression);
-                leftExpression = bin;
-            }
-        }
-        return leftExpression;
-        //TODO marc
+        return parseBinaryExpression(EQUALITY);
     }
 
     /**
      * Parses the {@code additive-expression} rule.
      */
     public Ast.Expression parseAdditiveExpression() throws ParseException {
-        Ast.Expression left = parseMultiplicativeExpression();
-        //        Ast.Expression right = new Ast.Expression();
-        String operator="";
-        //        tokens.advance();
-        if(tokens.has(0)&&(peek("+")||peek("-")) && peek(Token.Type.OPERATOR))
-        {
-            while(peek("+")||peek("-"))
-            {
-                operator=tokens.get(0).getLiteral();
-                tokens.advance();
-                Ast.Expression right = parseMultiplicativeExpression();
-                Ast.Expression.Binary bin = new Ast.Expression.Binary(operator, left, right);
-                left = bin;
-            }
-        }
-        return left;
-        //throw new UnsupportedOperationException(); //TODO
+        return parseBinaryExpression(ADDITIVE);
     }
 
     /**
      * Parses the {@code multiplicative-expression} rule.
      */
     public Ast.Expression parseMultiplicativeExpression() throws ParseException {
+        return parseBinaryExpression(MULTIPLICATIVE);
+    }
+
+    /**
+     * Parses a sequence of primary expressions separated by binary operators
+     * of at least the given precedence, which is the rule of that precedence
+     * (precedence climbing). Each operator is looked up once in {@link
+     * #OPERATORS}, and the right operand of an operator is parsed with a
+     * higher minimum precedence so operators of the same precedence are left
+     * associative. This builds the same trees as a rule for each precedence.
+     */
+    private Ast.Expression parseBinaryExpression(int precedence) throws ParseException {
         Ast.Expression left = parsePrimaryExpression();
-        String operator="";
-        if(tokens.has(0)&&(peek("*")||peek("/")) && peek(Token.Type.OPERATOR))
-        {
-            while(peek("*")||peek("/"))
-            {
-                operator=tokens.get(0).getLiteral();
-                tokens.advance();
-                Ast.Expression right = parsePrimaryExpression();
-                Ast.Expression.Binary bin = new Ast.Expression.Binary(operator, left, right);
-                left = bin;
-            }
+        for (BinaryOperator operator = peekOperator(); operator != null && operator.precedence >= precedence; operator = peekOperator()) {
+            tokens.advance();
+            Ast.Expression right = parseBinaryExpression(operator.precedence + 1);
+            left = new Ast.Expression.Binary(operator.literal, left, right);
         }
         return left;
     }
 
+    /**
+     * Returns the binary operator of the next token, or null if it is not
+     * one.
+     */
+    private BinaryOperator peekOperator() {
+        if (!tokens.has(0)) {
+            return null;
+        }
+        Token.Type type = tokens.type(0);
+        for (BinaryOperator operator : OPERATORS) {
+            if (operator.type == type && tokens.is(0, operator.literal)) {
+                return operator;
+            }
+        }
+        return null;
+    }
+
     /**
      * Parses the {@code primary-expression} rule. This is the top-level rule
      * for expressions and includes literal values, grouping, variables, and
@@ -288,20 +354,24 @@ public final class Parser {
      */
 
     public Ast.Expression parsePrimaryExpression() throws ParseException {
-        if ((peek("TRUE") | peek("FALSE")) && peek(Token.Type.IDENTIFIER)) {
+        Token.Type type = tokens.has(0) ? tokens.type(0) : null;
+        if (type == Token.Type.IDENTIFIER && (tokens.is(0, "TRUE") || tokens.is(0, "FALSE"))) {
             return parseBoolean();
-        } else if ((peek(Token.Type.DECIMAL))) {
+        } else if (type == Token.Type.DECIMAL) {
             return parseDecimal();
-        } else if ((peek(Token.Type.INTEGER))) {
+        } else if (type == Token.Type.INTEGER) {
             return parseInteger();
-        } else if (peek(Token.Type.STRING)) {
+        } else if (type == Token.Type.STRING) {
             return parseString();
-        } else if (peek(Token.Type.OPERATOR) && peek("(")) {
+        } else if (type == Token.Type.OPERATOR && tokens.is(0, "(")) {
             return parseGroup();
-        } else if (peek(Token.Type.IDENTIFIER, Token.Type.OPERATOR) && peek(Token.Type.IDENTIFIER, "(")) {
-            return parseFunction();
-        } else if (peek(Token.Type.IDENTIFIER) && !peek(Token.Type.IDENTIFIER, "(")) {
-            return parseVariable();
+        } else if (type == Token.Type.IDENTIFIER) {
+            boolean call = tokens.has(1) && tokens.is(1, "(");
+            if (call && tokens.type(1) == Token.Type.OPERATOR) {
+                return parseFunction();
+            } else if (!call) {
+                return parseVariable();
+            }
         }
 
         throw new ParseException("no match for expression", tokens.index); //TODO marc
@@ -323,7 +393,7 @@ public final class Parser {
 
     public Ast.Expression.Function parseFunction() throws ParseException {
         List<Ast.Expression> arguments = new ArrayList<>();
-        String funcname = tokens.get(0).getLiteral();
+        String funcname = tokens.literal(0);
         tokens.advance();
         tokens.advance();
         while (tokens.has(0) && !(peek(Token.Type.OPERATOR) && peek(")"))) {
@@ -347,19 +417,19 @@ public final class Parser {
     }
 
     public Ast.Expression.Variable parseVariable() throws ParseException {
-        Ast.Expression.Variable retVal = new Ast.Expression.Variable(tokens.get(0).getLiteral());
+        Ast.Expression.Variable retVal = new Ast.Expression.Variable(tokens.literal(0));
         tokens.advance();
         return retVal;
     }
 
     public Ast.Expression.Literal parseString() throws ParseException {
-        String tokenString = tokens.get(0).getLiteral();
+        String tokenString = tokens.literal(0);
         Ast.Expression.Literal retVal = new Ast.Expression.Literal(tokenString.substring(1, tokenString.length()-1));
         tokens.advance();
         return retVal;
     }
     public Ast.Expression.Literal parseDecimal() throws ParseException {
-        BigDecimal ret = new BigDecimal(tokens.get(0).getLiteral());
+        BigDecimal ret = new BigDecimal(tokens.literal(0));
         Ast.Expression.Literal retVal = new Ast.Expression.Literal(ret);
         tokens.advance();
         return retVal;
@@ -376,7 +446,7 @@ public final class Parser {
         return retVal;
     }
     public Ast.Expression.Literal parseInteger() throws ParseException {
-        BigInteger ret = new BigInteger(tokens.get(0).getLiteral());
+        BigInteger ret = new BigInteger(tokens.literal(0));
         Ast.Expression.Literal retVal = new Ast.Expression.Literal(ret);
         tokens.advance();
         return retVal;
@@ -398,11 +468,11 @@ public final class Parser {
             if (!tokens.has(i)) {
                 return false;
             } else if (patterns[i] instanceof Token.Type) {
-                if (patterns[i] != tokens.get(i).getType()) {
+                if (patterns[i] != tokens.type(i)) {
                     return false;
                 }
             } else if (patterns[i] instanceof String) {
-                if (!patterns[i].equals(tokens.get(i).getLiteral())) {
+                if (!tokens.is(i, (String) patterns[i])) {
                     return false;
                 }
             } else {
@@ -426,34 +496,132 @@ public final class Parser {
         return peek;
     }
 
-    private static final class TokenStream {
+    private static final class BinaryOperator {
 
-        private final List<Token> tokens;
-        private int index = 0;
+        private final Token.Type type;
+        private final String literal;
+        private final int precedence;
 
-        private TokenStream(List<Token> tokens) {
-            this.tokens = tokens;
+        private BinaryOperator(Token.Type type, String literal, int precedence) {
+            this.type = type;
+            this.literal = literal;
+            this.precedence = precedence;
         }
 
+    }
+
+    private abstract static class TokenStream {
+
+        int index = 0;
+
         /**
          * Returns true if there is a token at index + offset.
          */
+        public abstract boolean has(int offset);
+
+        /**
+         * Gets the type of the token at index + offset.
+         */
+        public abstract Token.Type type(int offset);
+
+        /**
+         * Gets a copy of the literal of the token at index + offset.
+         */
+        public abstract String literal(int offset);
+
+        /**
+         * Returns true if the literal of the token at index + offset is the
+         * given one.
+         */
+        public abstract boolean is(int offset, String literal);
+
+        /**
+         * Advances to the next token, incrementing the index.
+         */
+        public void advance() {
+            index++;
+        }
+
+    }
+
+    /**
+     * A stream over the tokens packed in a buffer, whose literals are read
+     * from the input.
+     */
+    private static final class PackedTokenStream extends TokenStream {
+
+        private static final Token.Type[] TYPES = Token.Type.values();
+
+        private final TokenBuffer tokens;
+
+        private PackedTokenStream(TokenBuffer tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
         public boolean has(int offset) {
             return index + offset < tokens.size();
         }
 
+        @Override
+        public Token.Type type(int offset) {
+            return TYPES[tokens.type(index + offset)];
+        }
+
+        @Override
+        public String literal(int offset) {
+            return tokens.string(index + offset);
+        }
+
         /**
-         * Gets the token at index + offset.
+         * Compares the literal in place, without copying it.
          */
-        public Token get(int offset) {
-            return tokens.get(index + offset);
+        @Override
+        public boolean is(int offset, String literal) {
+            return tokens.matches(index + offset, literal);
+        }
+
+    }
+
+    /**
+     * A stream which pulls tokens from an iterator as they are read, keeping
+     * only the ones being peeked at in a {@link Lookahead} ring.
+     */
+    private static final class StreamedTokenStream extends TokenStream {
+
+        private final Lookahead<Token> tokens;
+
+        private StreamedTokenStream(Iterator<Token> tokens) {
+            this.tokens = new Lookahead<>(tokens);
+        }
+
+        @Override
+        public boolean has(int offset) {
+            return tokens.has(index + offset);
+        }
+
+        @Override
+        public Token.Type type(int offset) {
+            return tokens.get(index + offset).getType();
+        }
+
+        @Override
+        public String literal(int offset) {
+            return tokens.get(index + offset).getLiteral();
+        }
+
+        @Override
+        public boolean is(int offset, String literal) {
+            return tokens.get(index + offset).getLiteral().equals(literal);
         }
 
         /**
-         * Advances to the next token, incrementing the index.
+         * Advances to the next token, releasing the previous ones.
          */
+        @Override
         public void advance() {
-            index++;
+            super.advance();
+            tokens.release(index);
         }
 
     }
@@ -21,54 +21,91 @@ public class Ast {
 
     public static final class Term extends Ast {
 
-        private final String name;
+        private final Symbol symbol;
         private final List<Ast> args;
 
+        /**
+         * The function this term last resolved to, which the interpreter
+         * reuses while the entry matches the scope it runs in.
+         */
+        volatile CallSite cache;
+
         public Term(String name, List<Ast> args) {
-            this.name = name;
+            this(Symbol.of(name), args);
+        }
+
+        public Term(Symbol symbol, List<Ast> args) {
+            this.symbol = symbol;
             this.args = args;
         }
 
         public String getName() {
-            return name;
+            return symbol.getName();
+        }
+
+        public Symbol getSymbol() {
+            return symbol;
         }
 
         public List<Ast> getArgs() {
             return args;
         }
 
+        /**
+         * Compares the terms structurally, returning as soon as the same
+         * instance is reached, as is the case for subtrees shared by an
+         * {@link AstPool}.
+         */
         @Override
         public boolean equals(Object obj) {
-            return obj instanceof Term && name.equals(((Term) obj).name) && args.equals(((Term) obj).args);
+            return obj == this || obj instanceof Term && symbol == ((Term) obj).symbol && args.equals(((Term) obj).args);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * symbol.hashCode() + args.hashCode();
         }
 
         @Override
         public String toString() {
-            return "(" + name + " " + args.stream().map(Object::toString).collect(Collectors.joining(" ")) + ")";
+            return "(" + symbol + " " + args.stream().map(Object::toString).collect(Collectors.joining(" ")) + ")";
         }
 
     }
 
     public static final class Identifier extends Ast {
 
-        private final String name;
+        private final Symbol symbol;
 
         public Identifier(String name) {
-            this.name = name;
+            this(Symbol.of(name));
+        }
+
+        public Identifier(Symbol symbol) {
+            this.symbol = symbol;
         }
 
         public String getName() {
-            return name;
+            return symbol.getName();
+        }
+
+        public Symbol getSymbol() {
+            return symbol;
         }
 
         @Override
         public boolean equals(Object obj) {
-            return obj instanceof Identifier && name.equals(((Identifier) obj).name);
+            return obj instanceof Identifier && symbol == ((Identifier) obj).symbol;
+        }
+
+        @Override
+        public int hashCode() {
+            return symbol.hashCode();
         }
 
         @Override
         public String toString() {
-            return name;
+            return symbol.getName();
         }
 
     }
@@ -100,6 +137,11 @@ public class Ast {
             return obj instanceof NumberLiteral && value.equals(((NumberLiteral) obj).value);
         }
 
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
         @Override
         public String toString() {
             return value.toString();
@@ -124,6 +166,11 @@ public class Ast {
             return obj instanceof StringLiteral && value.equals(((StringLiteral) obj).value);
         }
 
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
         @Override
         public String toString() {
             return "\"" + value + "\"";
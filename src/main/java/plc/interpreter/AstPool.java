@@ -0,0 +1,146 @@
+package plc.interpreter;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonical instances of AST nodes, so that structurally equal subtrees and
+ * literals parsed with the same pool are the same object (hash-consing).
+ * Programs which repeat the same terms and literals then keep one copy of
+ * each, and {@link Ast#equals(Object)} returns as soon as it reaches a
+ * shared node.
+ *
+ * Terms are only pooled once all of their arguments are canonical, so a term
+ * is identified by its symbol and the identities of its arguments instead of
+ * comparing the subtrees again. The arguments of a pooled term are
+ * unmodifiable since the term may be shared by any number of programs. The
+ * only state of a node is the function cached by the interpreter, a single
+ * immutable {@link CallSite} which is checked against the scope it was
+ * looked up in, so a term may be evaluated by any number of call sites,
+ * interpreters and threads at once.
+ *
+ * A pool may be shared between threads. It keeps every node it has returned,
+ * so it should be dropped along with the ASTs it was used for.
+ */
+public final class AstPool {
+
+    private final ConcurrentMap<Symbol, Ast.Identifier> identifiers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<BigDecimal, Ast.NumberLiteral> numbers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Ast.StringLiteral> strings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, Ast.Term> terms = new ConcurrentHashMap<>();
+
+    public Ast.Identifier identifier(Symbol symbol) {
+        return identifiers.computeIfAbsent(symbol, Ast.Identifier::new);
+    }
+
+    /**
+     * Returns the number literal with the given value, which includes its
+     * scale as in {@link BigDecimal#equals(Object)}.
+     */
+    public Ast.NumberLiteral number(BigDecimal value) {
+        return numbers.computeIfAbsent(value, Ast.NumberLiteral::new);
+    }
+
+    public Ast.StringLiteral string(String value) {
+        return strings.computeIfAbsent(value, Ast.StringLiteral::new);
+    }
+
+    /**
+     * Returns the term with the given symbol and arguments, which must have
+     * been returned by this pool.
+     */
+    public Ast.Term term(Symbol symbol, List<Ast> args) {
+        Ast.Term term = terms.get(new Key(symbol, args));
+        if (term == null) {
+            term = new Ast.Term(symbol, Collections.unmodifiableList(new ArrayList<>(args)));
+            Ast.Term existing = terms.putIfAbsent(new Key(symbol, term.getArgs()), term);
+            term = existing != null ? existing : term;
+        }
+        return term;
+    }
+
+    /**
+     * Returns the canonical instance of the AST, pooling each of its nodes.
+     * Terms are visited with an explicit stack so any depth of nesting can be
+     * interned.
+     */
+    public Ast intern(Ast ast) {
+        Deque<Ast.Term> terms = new ArrayDeque<>();
+        Deque<List<Ast>> args = new ArrayDeque<>();
+        Ast node = ast;
+        while (true) {
+            if (node instanceof Ast.Term && terms.peek() != node) {
+                terms.push((Ast.Term) node);
+                args.push(new ArrayList<>(((Ast.Term) node).getArgs().size()));
+            } else {
+                Ast interned;
+                if (node instanceof Ast.Term) {
+                    terms.pop();
+                    interned = term(((Ast.Term) node).getSymbol(), args.pop());
+                } else if (node instanceof Ast.Identifier) {
+                    interned = identifier(((Ast.Identifier) node).getSymbol());
+                } else if (node instanceof Ast.NumberLiteral) {
+                    interned = number(((Ast.NumberLiteral) node).getValue());
+                } else if (node instanceof Ast.StringLiteral) {
+                    interned = string(((Ast.StringLiteral) node).getValue());
+                } else {
+                    throw new AssertionError(node.getClass());
+                }
+                if (terms.isEmpty()) {
+                    return interned;
+                }
+                args.peek().add(interned);
+            }
+            List<Ast> done = args.peek();
+            List<Ast> pending = terms.peek().getArgs();
+            node = done.size() < pending.size() ? pending.get(done.size()) : terms.peek();
+        }
+    }
+
+    /**
+     * Identifies a term by its symbol and the identities of its arguments,
+     * which are already canonical.
+     */
+    private static final class Key {
+
+        private final Symbol symbol;
+        private final List<Ast> args;
+        private final int hash;
+
+        private Key(Symbol symbol, List<Ast> args) {
+            this.symbol = symbol;
+            this.args = args;
+            int hash = symbol.hashCode();
+            for (Ast arg : args) {
+                hash = 31 * hash + System.identityHashCode(arg);
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key) || symbol != ((Key) obj).symbol || args.size() != ((Key) obj).args.size()) {
+                return false;
+            }
+            for (int i = 0; i < args.size(); i++) {
+                if (args.get(i) != ((Key) obj).args.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
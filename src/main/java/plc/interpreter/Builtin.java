@@ -0,0 +1,43 @@
+package plc.interpreter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A function of the standard library with entry points specialized for the
+ * number of arguments, so common calls such as {@code (+ x 1)} can evaluate
+ * their arguments into locals instead of collecting them into a list.
+ *
+ * Every entry point must behave exactly like {@link #applyN(List)} would for
+ * the same arguments, which is also used for any entry point that is not
+ * overridden.
+ */
+abstract class Builtin implements Function<List<Ast>, Object> {
+
+    @Override
+    public final Object apply(List<Ast> args) {
+        switch (args.size()) {
+            case 0: return apply0();
+            case 1: return apply1(args.get(0));
+            case 2: return apply2(args.get(0), args.get(1));
+            default: return applyN(args);
+        }
+    }
+
+    Object apply0() {
+        return applyN(Collections.emptyList());
+    }
+
+    Object apply1(Ast first) {
+        return applyN(Collections.singletonList(first));
+    }
+
+    Object apply2(Ast first, Ast second) {
+        return applyN(Arrays.asList(first, second));
+    }
+
+    abstract Object applyN(List<Ast> args);
+
+}
@@ -0,0 +1,102 @@
+package plc.interpreter;
+
+/**
+ * A compiled unit of bytecode for the {@link VirtualMachine}, which is either
+ * a whole program or the body of a function. Instructions are stored in an
+ * {@code int[]} as an opcode followed by its operands, which are indices into
+ * the constant pool, slots or jump targets. Number and string literals (along
+ * with names, addresses and nested functions) are stored in the constant pool.
+ *
+ * The machine is stack based: instructions pop their operands from the
+ * operand stack and push their result, and every expression leaves exactly
+ * one value on the stack.
+ */
+public final class Bytecode {
+
+    static final int
+            CONST = 0,          // index: push constants[index]
+            VOID = 1,           // push Interpreter.VOID
+            POP = 2,            // discard the top value
+            LOAD_LOCAL = 3,     // depth slot: push a parameter or loop variable
+            LOAD = 4,           // address: push the variable at the Resolver.Address constant
+            STORE = 5,          // address: set! the variable to the top value, replacing it with VOID
+            DEFINE_LOCAL = 6,   // slot: define the top value in the current frame, replacing it with VOID
+            DEFINE_GLOBAL = 7,  // name: define the top value in the global scope, replacing it with VOID
+            CHECK_NUMBER = 8,   // require the top value to be a BigDecimal
+            ADD = 9,            // count
+            SUBTRACT = 10,      // count
+            MULTIPLY = 11,      // count
+            DIVIDE = 12,        // count
+            EQUALS = 13,
+            NOT = 14,
+            COMPARE = 15,       // comparison: compare the top two values into the Boolean below them, keeping the right one
+            JUMP = 16,          // target
+            JUMP_IF_FALSE = 17, // target: pop a Boolean and jump if it is false
+            AND = 18,           // target: pop a value and jump if it is not a Boolean
+            OR = 19,            // pop a value, which must be a Boolean
+            PRINT = 20,         // count
+            LIST = 21,          // count
+            RANGE = 22,         // bounds: push a list of the integers in the BigDecimal[] constant
+            FAIL = 23,          // message: throw an EvalException
+            FUNCTION = 24,      // function: push a closure of the nested Bytecode constant
+            PREPARE = 25,       // count args skip: check the function below the arguments
+            CALL = 26,          // count: call the function below the arguments
+            RETURN = 27,        // return the top value to the caller
+            ENTER = 28,         // names: enter a block frame with the String[] constant
+            EXIT = 29,          // exit the current block frame
+            FOR = 30,           // pop a list, pushing an iterator over it
+            NEXT = 31,          // target: store the next value in slot 0, or pop the iterator and jump
+            TAIL_CALL = 32,     // count: call the function below the arguments in place of the current one
+            TEST = 33;          // value target: pop a Boolean and jump if it is true (1) or false (0)
+
+    static final int LESS = 0, GREATER = 1, LESS_EQUAL = 2, GREATER_EQUAL = 3;
+
+    private static final String[] OPCODES = {
+            "CONST", "VOID", "POP", "LOAD_LOCAL", "LOAD", "STORE", "DEFINE_LOCAL", "DEFINE_GLOBAL",
+            "CHECK_NUMBER", "ADD", "SUBTRACT", "MULTIPLY", "DIVIDE", "EQUALS", "NOT", "COMPARE", "JUMP",
+            "JUMP_IF_FALSE", "AND", "OR", "PRINT", "LIST", "RANGE", "FAIL", "FUNCTION", "PREPARE", "CALL",
+            "RETURN", "ENTER", "EXIT", "FOR", "NEXT", "TAIL_CALL", "TEST"
+    };
+
+    private static final int[] OPERANDS = {
+            1, 0, 0, 2, 1, 1, 1, 1, 0, 1, 1, 1, 1, 0, 0, 1, 1, 1, 1, 0, 1, 1, 1, 1, 1, 3, 1, 0, 1, 0, 0, 1, 1, 2
+    };
+
+    final String name;
+    final int[] code;
+    final Object[] constants;
+    final int params;
+    final String duplicate;
+    final String[] names;
+
+    Bytecode(String name, int[] code, Object[] constants, int params, String duplicate, String[] names) {
+        this.name = name;
+        this.code = code;
+        this.constants = constants;
+        this.params = params;
+        this.duplicate = duplicate;
+        this.names = names;
+    }
+
+    /**
+     * Returns a listing of the instructions, including nested functions.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(name).append(":\n");
+        for (int pc = 0; pc < code.length; pc += 1 + OPERANDS[code[pc]]) {
+            builder.append(String.format("%4d %s", pc, OPCODES[code[pc]]));
+            for (int i = 1; i <= OPERANDS[code[pc]]; i++) {
+                builder.append(' ').append(code[pc + i]);
+            }
+            builder.append('\n');
+        }
+        for (Object constant : constants) {
+            if (constant instanceof Bytecode) {
+                builder.append(constant);
+            }
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,470 @@
+package plc.interpreter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles an AST into {@link Bytecode} for the {@link VirtualMachine}. Terms
+ * are linked to builtins by the {@link Linker} and variables are given
+ * addresses by the {@link Resolver} in the same way as the {@link
+ * ClosureCompiler}, so both agree with {@link Interpreter#eval(Ast)}.
+ *
+ * As with the closure compiler, errors found while compiling are emitted as a
+ * {@code FAIL} instruction so they are only thrown if the code is reached.
+ */
+public final class BytecodeCompiler {
+
+    private final Interpreter interpreter;
+    private Linker linker;
+    private Resolver resolver;
+    private Emitter emitter;
+
+    public BytecodeCompiler(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Compiles the given AST against the interpreter's current scope. As with
+     * {@link ClosureCompiler#compile(Ast)}, a term named {@code source} is
+     * compiled as a sequence of top-level forms.
+     */
+    public Bytecode compile(Ast ast) {
+        linker = new Linker(interpreter, ast);
+        resolver = new Resolver(linker::isBuiltin);
+        emitter = new Emitter();
+        if (ast instanceof Ast.Term && ((Ast.Term) ast).getName().equals("source")) {
+            compileSequence(((Ast.Term) ast).getArgs(), true);
+        } else {
+            compileAst(ast, true);
+        }
+        emitter.emit(Bytecode.RETURN);
+        return emitter.build("source", 0, null, new String[0]);
+    }
+
+    /**
+     * Compiles each AST, leaving the value of the last one (or VOID) on the
+     * stack. The last AST is in tail position if the sequence is.
+     */
+    private void compileSequence(List<Ast> asts, boolean tail) {
+        if (asts.isEmpty()) {
+            emitter.emit(Bytecode.VOID);
+        }
+        for (int i = 0; i < asts.size(); i++) {
+            if (i > 0) {
+                emitter.emit(Bytecode.POP);
+            }
+            compileAst(asts.get(i), tail && i == asts.size() - 1);
+        }
+    }
+
+    private void compileAll(List<Ast> asts) {
+        asts.forEach(this::compileAst);
+    }
+
+    private void compileAst(Ast ast) {
+        compileAst(ast, false);
+    }
+
+    /**
+     * Compiles an AST, which is in tail position if its value is returned
+     * from the bytecode being compiled.
+     */
+    private void compileAst(Ast ast, boolean tail) {
+        if (ast instanceof Ast.Term) {
+            compileTerm((Ast.Term) ast, tail);
+        } else if (ast instanceof Ast.Identifier) {
+            String name = ((Ast.Identifier) ast).getName();
+            if ((name.equals("true") || name.equals("false")) && linker.isBuiltin(name)) {
+                emitter.emit(Bytecode.CONST, emitter.constant(linker.builtin(name)));
+            } else {
+                compileVariable(name);
+            }
+        } else if (ast instanceof Ast.NumberLiteral) {
+            emitter.emit(Bytecode.CONST, emitter.constant(((Ast.NumberLiteral) ast).getValue()));
+        } else if (ast instanceof Ast.StringLiteral) {
+            emitter.emit(Bytecode.CONST, emitter.constant(((Ast.StringLiteral) ast).getValue()));
+        } else {
+            throw new AssertionError(ast.getClass());
+        }
+    }
+
+    private void compileVariable(String name) {
+        Resolver.Address address = resolver.resolve(name);
+        if (!address.isGlobal() && address.definite) {
+            emitter.emit(Bytecode.LOAD_LOCAL, address.depth, address.slot);
+        } else {
+            emitter.emit(Bytecode.LOAD, emitter.constant(address));
+        }
+    }
+
+    private void compileTerm(Ast.Term ast, boolean tail) {
+        String name = ast.getName();
+        List<Ast> args = ast.getArgs();
+        if (!linker.isBuiltin(name)) {
+            compileCall(ast, tail);
+            return;
+        }
+        switch (name) {
+            case "print":
+                compileAll(args);
+                emitter.emit(Bytecode.PRINT, args.size());
+                break;
+            case "+":
+                compileAll(args);
+                emitter.emit(Bytecode.ADD, args.size());
+                break;
+            case "-":
+                compileNumbers(args);
+                emitter.emit(Bytecode.SUBTRACT, args.size());
+                break;
+            case "*":
+                compileNumbers(args);
+                emitter.emit(Bytecode.MULTIPLY, args.size());
+                break;
+            case "/":
+                compileNumbers(args);
+                emitter.emit(Bytecode.DIVIDE, args.size());
+                break;
+            case "equals?":
+                if (args.size() != 2) {
+                    fail("Can only have 2 arguments fore equals term name");
+                } else {
+                    compileAll(args);
+                    emitter.emit(Bytecode.EQUALS);
+                }
+                break;
+            case "not":
+                if (args.size() != 1) {
+                    fail("Can only have 2 arguments fore equals term name");
+                } else {
+                    compileAst(args.get(0));
+                    emitter.emit(Bytecode.NOT);
+                }
+                break;
+            case "and":
+                compileLogic(args, Bytecode.AND, false);
+                break;
+            case "or":
+                compileLogic(args, Bytecode.OR, true);
+                break;
+            case "list":
+                compileAll(args);
+                emitter.emit(Bytecode.LIST, args.size());
+                break;
+            case "range":
+                compileRange(args);
+                break;
+            case "set!":
+                compileSet(args);
+                break;
+            case "define":
+                compileDefine(args);
+                break;
+            case "while":
+                compileWhile(args);
+                break;
+            case "for":
+                compileFor(args);
+                break;
+            case "do":
+                compileDo(args, tail);
+                break;
+            case "<":
+                compileComparison(args, Bytecode.LESS);
+                break;
+            case ">":
+                compileComparison(args, Bytecode.GREATER);
+                break;
+            case "<=":
+                compileComparison(args, Bytecode.LESS_EQUAL);
+                break;
+            case ">=":
+                compileComparison(args, Bytecode.GREATER_EQUAL);
+                break;
+            default:
+                compileCall(ast, tail);
+        }
+    }
+
+    /**
+     * Compiles a call to a function which is looked up when it runs. If the
+     * function is not compiled bytecode, {@code PREPARE} applies it to the
+     * original ASTs and skips over the code for the arguments. In tail
+     * position, the call replaces the current function instead of returning
+     * to it.
+     */
+    private void compileCall(Ast.Term ast, boolean tail) {
+        compileVariable(ast.getName());
+        int prepare = emitter.emit(Bytecode.PREPARE, ast.getArgs().size(), emitter.constant(ast.getArgs()), -1);
+        compileAll(ast.getArgs());
+        emitter.emit(tail ? Bytecode.TAIL_CALL : Bytecode.CALL, ast.getArgs().size());
+        emitter.patch(prepare + 3);
+    }
+
+    /**
+     * Compiles arguments which must be numbers, checking each as it is
+     * evaluated like the interpreter does.
+     */
+    private void compileNumbers(List<Ast> args) {
+        for (Ast arg : args) {
+            compileAst(arg);
+            emitter.emit(Bytecode.CHECK_NUMBER);
+        }
+    }
+
+    /**
+     * Compiles {@code and} / {@code or}, which jump to push the short-circuit
+     * result as soon as an argument decides it. As in the interpreter, each
+     * argument is evaluated once to check that it is a boolean and again for
+     * the value which is tested.
+     */
+    private void compileLogic(List<Ast> args, int opcode, boolean shortCircuit) {
+        List<Integer> jumps = new ArrayList<>();
+        for (Ast arg : args) {
+            compileAst(arg);
+            if (opcode == Bytecode.AND) {
+                jumps.add(emitter.emit(Bytecode.AND, -1) + 1);
+            } else {
+                emitter.emit(Bytecode.OR);
+            }
+            compileAst(arg);
+            jumps.add(emitter.emit(Bytecode.TEST, shortCircuit ? 1 : 0, -1) + 2);
+        }
+        emitter.emit(Bytecode.CONST, emitter.constant(!shortCircuit));
+        int end = emitter.emit(Bytecode.JUMP, -1);
+        jumps.forEach(emitter::patch);
+        emitter.emit(Bytecode.CONST, emitter.constant(shortCircuit));
+        emitter.patch(end + 1);
+    }
+
+    private void compileRange(List<Ast> args) {
+        if (args.size() == 0) {
+            fail("Expected values to be there");
+            return;
+        } else if (args.size() != 2) {
+            fail("Expected range size to be 2");
+            return;
+        }
+        for (Ast arg : args) {
+            if (!(arg instanceof Ast.NumberLiteral)) {
+                fail("Expected " + arg + " to have type NumberLiteral.");
+                return;
+            } else if (((Ast.NumberLiteral) arg).getValue().scale() > 0) {
+                fail("Expected Number Literal and an Integer");
+                return;
+            }
+        }
+        BigDecimal first = ((Ast.NumberLiteral) args.get(0)).getValue();
+        BigDecimal last = ((Ast.NumberLiteral) args.get(1)).getValue();
+        if (last.compareTo(first) < 0) {
+            fail("Expected range to be increasing");
+        } else {
+            emitter.emit(Bytecode.RANGE, emitter.constant(new BigDecimal[] {first, last}));
+        }
+    }
+
+    private void compileSet(List<Ast> args) {
+        if (args.size() != 2) {
+            fail("Need 2 arguments for set");
+        } else if (!(args.get(0) instanceof Ast.Identifier)) {
+            fail("Need Identifier for argument");
+        } else {
+            Resolver.Address address = resolver.resolve(((Ast.Identifier) args.get(0)).getName());
+            compileAst(args.get(1));
+            emitter.emit(Bytecode.STORE, emitter.constant(address));
+        }
+    }
+
+    private void compileDefine(List<Ast> args) {
+        if (args.size() != 2) {
+            fail("Invalid number of arguments");
+        } else if (args.get(0) instanceof Ast.Identifier) {
+            String name = ((Ast.Identifier) args.get(0)).getName();
+            compileAst(args.get(1));
+            define(name);
+        } else if (args.get(0) instanceof Ast.Term) {
+            Ast.Term signature = (Ast.Term) args.get(0);
+            String[] params = new String[signature.getArgs().size()];
+            String duplicate = null;
+            Set<String> unique = new HashSet<>();
+            for (int i = 0; i < params.length; i++) {
+                Ast param = signature.getArgs().get(i);
+                if (!(param instanceof Ast.Identifier)) {
+                    fail("Expected " + param + " to have type Identifier.");
+                    return;
+                }
+                params[i] = ((Ast.Identifier) param).getName();
+                if (!unique.add(params[i]) && duplicate == null) {
+                    duplicate = params[i];
+                }
+            }
+            Resolver.Block block = resolver.enter(Arrays.asList(params), true, args.subList(1, 2));
+            Emitter enclosing = emitter;
+            emitter = new Emitter();
+            compileAst(args.get(1), true);
+            emitter.emit(Bytecode.RETURN);
+            Bytecode function = emitter.build(signature.getName(), params.length, duplicate, block.getNames());
+            emitter = enclosing;
+            resolver.exit();
+            emitter.emit(Bytecode.FUNCTION, emitter.constant(function));
+            define(signature.getName());
+        } else {
+            fail("Invalid first arguments");
+        }
+    }
+
+    private void define(String name) {
+        int slot = resolver.slot(name);
+        if (slot < 0) {
+            emitter.emit(Bytecode.DEFINE_GLOBAL, emitter.constant(name));
+        } else {
+            emitter.emit(Bytecode.DEFINE_LOCAL, slot);
+        }
+    }
+
+    private void compileWhile(List<Ast> args) {
+        if (args.size() != 2) {
+            fail("Expected 2 arguments, received " + args.size() + ".");
+            return;
+        }
+        int start = emitter.size();
+        compileAst(args.get(0));
+        int exit = emitter.emit(Bytecode.JUMP_IF_FALSE, -1);
+        compileAst(args.get(1));
+        emitter.emit(Bytecode.POP);
+        emitter.emit(Bytecode.JUMP, start);
+        emitter.patch(exit + 1);
+        emitter.emit(Bytecode.VOID);
+    }
+
+    private void compileFor(List<Ast> args) {
+        if (args.size() != 2) {
+            fail("Need 2 arguments for for loop");
+            return;
+        } else if (!(args.get(0) instanceof Ast.Term)) {
+            fail("Expected " + args.get(0) + " to have type Term.");
+            return;
+        }
+        Ast.Term value = (Ast.Term) args.get(0);
+        if (value.getArgs().isEmpty()) {
+            fail("Need a linked list for the for loop");
+            return;
+        }
+        Resolver.Block block = resolver.enter(Collections.singletonList(value.getName()), false, Arrays.asList(value.getArgs().get(0), args.get(1)));
+        emitter.emit(Bytecode.ENTER, emitter.constant(block.getNames()));
+        compileAst(value.getArgs().get(0));
+        resolver.markDefinite(value.getName());
+        emitter.emit(Bytecode.FOR);
+        int next = emitter.emit(Bytecode.NEXT, -1);
+        compileAst(args.get(1));
+        emitter.emit(Bytecode.POP);
+        emitter.emit(Bytecode.JUMP, next);
+        emitter.patch(next + 1);
+        emitter.emit(Bytecode.EXIT);
+        emitter.emit(Bytecode.VOID);
+        resolver.exit();
+    }
+
+    private void compileDo(List<Ast> args, boolean tail) {
+        Resolver.Block block = resolver.enter(Collections.emptyList(), false, args);
+        emitter.emit(Bytecode.ENTER, emitter.constant(block.getNames()));
+        compileSequence(args, tail);
+        emitter.emit(Bytecode.EXIT);
+        resolver.exit();
+    }
+
+    private void compileComparison(List<Ast> args, int comparison) {
+        if (args.isEmpty()) {
+            emitter.emit(Bytecode.CONST, emitter.constant(true));
+        } else if (Linker.isKeyword(args.get(0))) {
+            fail("Identifier should not be keyword");
+        } else if (args.size() == 1) {
+            compileAst(args.get(0));
+            emitter.emit(Bytecode.POP);
+            emitter.emit(Bytecode.CONST, emitter.constant(true));
+        } else {
+            //As in the interpreter, both arguments of each pair are evaluated
+            //(so the middle ones twice) and type checked before the next pair.
+            emitter.emit(Bytecode.CONST, emitter.constant(true));
+            for (int i = 1; i < args.size(); i++) {
+                compileAst(args.get(i - 1));
+                compileAst(args.get(i));
+                emitter.emit(Bytecode.COMPARE, comparison);
+                emitter.emit(Bytecode.POP);
+            }
+        }
+    }
+
+    private void fail(String message) {
+        emitter.emit(Bytecode.FAIL, emitter.constant(message));
+    }
+
+    /**
+     * Accumulates the instructions and constant pool of a single unit of
+     * bytecode.
+     */
+    private static final class Emitter {
+
+        private int[] code = new int[64];
+        private int size = 0;
+        private final List<Object> constants = new ArrayList<>();
+        private final Map<Object, Integer> literals = new HashMap<>();
+
+        /**
+         * Appends an instruction, returning its index.
+         */
+        int emit(int opcode, int... operands) {
+            if (size + operands.length + 1 > code.length) {
+                code = Arrays.copyOf(code, Math.max(code.length * 2, size + operands.length + 1));
+            }
+            int index = size;
+            code[size++] = opcode;
+            for (int operand : operands) {
+                code[size++] = operand;
+            }
+            return index;
+        }
+
+        /**
+         * Sets the jump target at the given index to the next instruction.
+         */
+        void patch(int index) {
+            code[index] = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Adds a value to the constant pool, sharing literals which are
+         * already present.
+         */
+        int constant(Object value) {
+            if (value instanceof BigDecimal || value instanceof String || value instanceof Boolean) {
+                Integer index = literals.get(value);
+                if (index == null || constants.get(index).getClass() != value.getClass()) {
+                    index = constants.size();
+                    constants.add(value);
+                    literals.put(value, index);
+                }
+                return index;
+            }
+            constants.add(value);
+            return constants.size() - 1;
+        }
+
+        Bytecode build(String name, int params, String duplicate, String[] names) {
+            return new Bytecode(name, Arrays.copyOf(code, size), constants.toArray(), params, duplicate, names);
+        }
+
+    }
+
+}
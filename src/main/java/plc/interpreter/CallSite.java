@@ -0,0 +1,34 @@
+package plc.interpreter;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * The function a term resolved to, cached by the interpreter in the term. An
+ * entry is valid while the term runs in the same scope and the version of
+ * that scope's tree is unchanged (see {@link Scope#version()}).
+ *
+ * Entries are immutable and replaced as a whole, so a term shared between
+ * threads (such as one from an {@link AstPool}) never pairs the scope of one
+ * lookup with the function of another. The scope is held weakly so a cached
+ * term does not keep the scopes of finished calls alive.
+ */
+final class CallSite extends WeakReference<Scope> {
+
+    final long version;
+    final Object function;
+
+    CallSite(Scope scope, long version, Object function) {
+        super(scope);
+        this.version = version;
+        this.function = function;
+    }
+
+    /**
+     * Returns true if the cached function is still the one the term resolves
+     * to in the given scope.
+     */
+    boolean matches(Scope scope) {
+        return get() == scope && version == scope.version();
+    }
+
+}
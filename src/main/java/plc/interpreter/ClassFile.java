@@ -0,0 +1,346 @@
+package plc.interpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer for JVM class files, used by the {@link JvmCompiler} to
+ * generate classes without depending on a bytecode library. It supports only
+ * what the compiler needs: a constant pool, methods with a single {@code
+ * Code} attribute and forward and backward jumps.
+ *
+ * Classes are written with version 49 (Java 5), which the JVM verifies by
+ * type inference, so no {@code StackMapTable} needs to be computed. The
+ * maximum stack size is tracked as instructions are emitted.
+ */
+final class ClassFile {
+
+    static final int
+            ICONST_0 = 0x03,
+            BIPUSH = 0x10,
+            SIPUSH = 0x11,
+            LDC_W = 0x13,
+            ALOAD = 0x19,
+            AALOAD = 0x32,
+            AASTORE = 0x53,
+            POP = 0x57,
+            DUP = 0x59,
+            SWAP = 0x5f,
+            IFEQ = 0x99,
+            IFNE = 0x9a,
+            GOTO = 0xa7,
+            ARETURN = 0xb0,
+            RETURN = 0xb1,
+            GETSTATIC = 0xb2,
+            GETFIELD = 0xb4,
+            INVOKEVIRTUAL = 0xb6,
+            INVOKESPECIAL = 0xb7,
+            INVOKESTATIC = 0xb8,
+            ANEWARRAY = 0xbd,
+            ATHROW = 0xbf;
+
+    static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+    private static final int VERSION = 49;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream constants = new DataOutputStream(pool);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int count = 1;
+    private final int name;
+    private final int superName;
+    private final List<Code> methods = new ArrayList<>();
+
+    /**
+     * Creates a public final class with the given internal names (such as
+     * {@code java/lang/Object}).
+     */
+    ClassFile(String name, String superName) {
+        this.name = classRef(name);
+        this.superName = classRef(superName);
+    }
+
+    /**
+     * Adds a method, returning the builder for its code.
+     */
+    Code method(int access, String name, String descriptor, int maxLocals) {
+        Code code = new Code(access, utf8(name), utf8(descriptor), maxLocals);
+        methods.add(code);
+        return code;
+    }
+
+    int utf8(String value) {
+        return entry("U" + value, 1, out -> out.writeUTF(value));
+    }
+
+    int classRef(String name) {
+        int index = utf8(name);
+        return entry("C" + name, 7, out -> out.writeShort(index));
+    }
+
+    int string(String value) {
+        int index = utf8(value);
+        return entry("S" + value, 8, out -> out.writeShort(index));
+    }
+
+    int member(int tag, String owner, String name, String descriptor) {
+        int owned = classRef(owner);
+        int type = utf8(descriptor);
+        int named = utf8(name);
+        int nameAndType = entry("N" + name + ":" + descriptor, 12, out -> {
+            out.writeShort(named);
+            out.writeShort(type);
+        });
+        return entry(tag + owner + "." + name + ":" + descriptor, tag, out -> {
+            out.writeShort(owned);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private interface Entry {
+
+        void write(DataOutputStream out) throws IOException;
+
+    }
+
+    /**
+     * Returns the index of a constant pool entry, adding it if it has not
+     * been written already.
+     */
+    private int entry(String key, int tag, Entry entry) {
+        Integer index = entries.get(key);
+        if (index == null) {
+            try {
+                constants.writeByte(tag);
+                entry.write(constants);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            index = count++;
+            entries.put(key, index);
+        }
+        return index;
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int attribute = utf8("Code");
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(count);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(name);
+            out.writeShort(superName);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (Code method : methods) {
+                method.write(out, attribute);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A jump target, which may be used before it is marked.
+     */
+    static final class Label {
+
+        private int position = -1;
+        private int depth = -1;
+        private final List<Integer> jumps = new ArrayList<>();
+
+    }
+
+    /**
+     * Builds the code of a single method.
+     */
+    final class Code {
+
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final int maxLocals;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+        private int depth = 0;
+        private int maxStack = 0;
+        private boolean reachable = true;
+
+        private Code(int access, int name, int descriptor, int maxLocals) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxLocals = maxLocals;
+        }
+
+        /**
+         * Emits an instruction without operands which changes the depth of
+         * the stack by the given amount.
+         */
+        Code op(int opcode, int delta) {
+            code.write(opcode);
+            stack(delta);
+            if (opcode == ARETURN || opcode == RETURN || opcode == ATHROW) {
+                reachable = false;
+            }
+            return this;
+        }
+
+        Code aload(int local) {
+            code.write(ALOAD);
+            code.write(local);
+            stack(1);
+            return this;
+        }
+
+        Code iconst(int value) {
+            if (value >= -1 && value <= 5) {
+                code.write(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.write(BIPUSH);
+                code.write(value);
+            } else {
+                code.write(SIPUSH);
+                u2(value);
+            }
+            stack(1);
+            return this;
+        }
+
+        Code ldc(String value) {
+            code.write(LDC_W);
+            u2(string(value));
+            stack(1);
+            return this;
+        }
+
+        Code anewarray(String type) {
+            code.write(ANEWARRAY);
+            u2(classRef(type));
+            return this;
+        }
+
+        Code getstatic(String owner, String name, String descriptor) {
+            code.write(GETSTATIC);
+            u2(member(9, owner, name, descriptor));
+            stack(1);
+            return this;
+        }
+
+        Code getfield(String owner, String name, String descriptor) {
+            code.write(GETFIELD);
+            u2(member(9, owner, name, descriptor));
+            return this;
+        }
+
+        /**
+         * Emits an invoke instruction, adjusting the stack for the receiver
+         * (if any), arguments and result described by the descriptor.
+         */
+        Code invoke(int opcode, String owner, String name, String descriptor) {
+            code.write(opcode);
+            u2(member(10, owner, name, descriptor));
+            int delta = opcode == INVOKESTATIC ? 0 : -1;
+            int i = 1;
+            while (descriptor.charAt(i) != ')') {
+                while (descriptor.charAt(i) == '[') {
+                    i++;
+                }
+                if (descriptor.charAt(i) == 'L') {
+                    i = descriptor.indexOf(';', i);
+                }
+                delta--;
+                i++;
+            }
+            stack(descriptor.charAt(i + 1) == 'V' ? delta : delta + 1);
+            return this;
+        }
+
+        /**
+         * Emits a jump to the label. Conditional jumps pop the int they test.
+         */
+        Code jump(int opcode, Label label) {
+            if (opcode != GOTO) {
+                stack(-1);
+            }
+            label.depth = depth;
+            label.jumps.add(code.size());
+            code.write(opcode);
+            u2(0);
+            if (!labels.contains(label)) {
+                labels.add(label);
+            }
+            if (opcode == GOTO) {
+                reachable = false;
+            }
+            return this;
+        }
+
+        /**
+         * Marks the label at the next instruction. If the previous instruction
+         * cannot fall through, the stack depth is that of the jumps here.
+         */
+        Code mark(Label label) {
+            label.position = code.size();
+            if (!reachable) {
+                depth = label.depth;
+                reachable = true;
+            }
+            if (!labels.contains(label)) {
+                labels.add(label);
+            }
+            return this;
+        }
+
+        private void u2(int value) {
+            code.write(value >> 8);
+            code.write(value);
+        }
+
+        private void stack(int delta) {
+            depth += delta;
+            maxStack = Math.max(maxStack, depth);
+        }
+
+        private void write(DataOutputStream out, int attribute) throws IOException {
+            byte[] bytes = code.toByteArray();
+            if (bytes.length > Short.MAX_VALUE) {
+                throw new IllegalStateException("Method code is too large");
+            }
+            for (Label label : labels) {
+                for (int jump : label.jumps) {
+                    int offset = label.position - jump;
+                    bytes[jump + 1] = (byte) (offset >> 8);
+                    bytes[jump + 2] = (byte) offset;
+                }
+            }
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(attribute);
+            out.writeInt(12 + bytes.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+
+    }
+
+}
@@ -0,0 +1,1133 @@
+package plc.interpreter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The closure compiler is an alternative to walking the AST with {@link
+ * Interpreter#eval(Ast)}. Instead of dispatching on the type of each AST and
+ * looking up the function of every term in the scope each time it is run, the
+ * AST is compiled once into a tree of {@link Node}s which are already linked
+ * to the code they execute.
+ *
+ * Builtins and special forms (such as {@code define}, {@code while}, {@code
+ * for} and {@code do}) are resolved while compiling whenever the {@link
+ * Linker} allows it. Every other term is looked up when it runs, exactly like
+ * {@link Interpreter#eval(Ast)}.
+ *
+ * Variables of {@code do}, {@code for} and function bodies are given lexical
+ * addresses by the {@link Resolver} and stored in array-backed {@link
+ * Frame}s, so calling a function no longer allocates a hash table. Global
+ * variables remain in the interpreter's {@link Scope}.
+ *
+ * Errors found while compiling (such as a {@code set!} with the wrong number
+ * of arguments) are not thrown until the node is executed, so a compiled
+ * program fails at the same point the interpreted one would.
+ */
+public final class ClosureCompiler {
+
+    private final Interpreter interpreter;
+    private Linker linker;
+    private Resolver resolver;
+
+    public ClosureCompiler(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Compiles the given AST against the interpreter's current scope. A term
+     * named {@code source}, as returned by {@link Parser#parse(String)}, is
+     * compiled as a sequence of top-level forms which returns the value of
+     * the last form, or {@link Interpreter#VOID} if there are none.
+     */
+    public Program compile(Ast ast) {
+        linker = new Linker(interpreter, ast);
+        resolver = new Resolver(linker::isBuiltin);
+        if (ast instanceof Ast.Term && ((Ast.Term) ast).getName().equals("source")) {
+            return new Program(interpreter, new Sequence(compileAll(((Ast.Term) ast).getArgs())));
+        }
+        return new Program(interpreter, compileAst(ast));
+    }
+
+    /**
+     * A compiled program, which can be executed any number of times.
+     */
+    public static final class Program {
+
+        private final Interpreter interpreter;
+        private final Node node;
+
+        private Program(Interpreter interpreter, Node node) {
+            this.interpreter = interpreter;
+            this.node = node;
+        }
+
+        /**
+         * Executes the program with the interpreter's current scope as the
+         * global scope and returns the resulting value.
+         */
+        public Object execute() {
+            return node.execute(new Frame(interpreter.scope));
+        }
+
+    }
+
+    /**
+     * An executable node of a compiled program. Variables of the enclosing
+     * blocks are stored in the given frame.
+     */
+    abstract static class Node {
+
+        abstract Object execute(Frame frame);
+
+        /**
+         * Executes the node where an integer is likely, such as an argument
+         * of an arithmetic builtin. If the value is an integer which fits in
+         * a {@code long} (see {@link Numbers#isLong(BigDecimal)}) it is
+         * returned without being boxed; otherwise the value is thrown as a
+         * {@link NotLong}, having been evaluated exactly once.
+         */
+        long executeLong(Frame frame) {
+            Object value = execute(frame);
+            if (value instanceof BigDecimal && Numbers.isLong((BigDecimal) value)) {
+                return ((BigDecimal) value).longValue();
+            }
+            throw new NotLong(value);
+        }
+
+    }
+
+    /**
+     * Thrown by {@link Node#executeLong(Frame)} with a value which is not an
+     * integer that fits in a {@code long}. Nodes which catch it stop trying
+     * the integer path afterwards, so it is only thrown while a node adapts.
+     */
+    private static final class NotLong extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object value;
+
+        private NotLong(Object value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+
+    }
+
+    private Node[] compileAll(List<Ast> asts) {
+        Node[] nodes = new Node[asts.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compileAst(asts.get(i));
+        }
+        return nodes;
+    }
+
+    private Node compileAst(Ast ast) {
+        return compileAst(ast, false);
+    }
+
+    /**
+     * Compiles an AST, which is in tail position if its value is the result
+     * of the enclosing function.
+     */
+    private Node compileAst(Ast ast, boolean tail) {
+        if (ast instanceof Ast.Term) {
+            return compileTerm((Ast.Term) ast, tail);
+        } else if (ast instanceof Ast.Identifier) {
+            String name = ((Ast.Identifier) ast).getName();
+            if ((name.equals("true") || name.equals("false")) && linker.isBuiltin(name)) {
+                return new Constant(linker.builtin(name));
+            }
+            return variable(name);
+        } else if (ast instanceof Ast.NumberLiteral) {
+            return new Constant(((Ast.NumberLiteral) ast).getValue());
+        } else if (ast instanceof Ast.StringLiteral) {
+            return new Constant(((Ast.StringLiteral) ast).getValue());
+        } else {
+            throw new AssertionError(ast.getClass());
+        }
+    }
+
+    private Node compileTerm(Ast.Term ast, boolean tail) {
+        String name = ast.getName();
+        List<Ast> args = ast.getArgs();
+        if (!linker.isBuiltin(name)) {
+            return new Call(variable(name), args, compileAll(args), tail);
+        }
+        switch (name) {
+            case "print": return new Print(compileAll(args));
+            case "+": return new Add(compileAll(args));
+            case "-": return new Subtract(compileAll(args));
+            case "*": return new Multiply(compileAll(args));
+            case "/": return new Divide(compileAll(args));
+            case "equals?":
+                if (args.size() != 2) {
+                    return new Fail("Can only have 2 arguments fore equals term name");
+                }
+                return new Equals(compileAst(args.get(0)), compileAst(args.get(1)));
+            case "not":
+                if (args.size() != 1) {
+                    return new Fail("Can only have 2 arguments fore equals term name");
+                }
+                return new Not(compileAst(args.get(0)));
+            case "and": return new And(compileAll(args));
+            case "or": return new Or(compileAll(args));
+            case "list": return new ListNode(compileAll(args));
+            case "range": return compileRange(args);
+            case "set!": return compileSet(args);
+            case "define": return compileDefine(args);
+            case "while":
+                if (args.size() != 2) {
+                    return new Fail("Expected 2 arguments, received " + args.size() + ".");
+                }
+                return new While(compileAst(args.get(0)), compileAst(args.get(1)));
+            case "for": return compileFor(args);
+            case "do": return compileDo(args, tail);
+            case "<": return compileComparison(args, Comparison.LESS);
+            case ">": return compileComparison(args, Comparison.GREATER);
+            case "<=": return compileComparison(args, Comparison.LESS_EQUAL);
+            case ">=": return compileComparison(args, Comparison.GREATER_EQUAL);
+            default: return new Call(variable(name), args, compileAll(args), tail);
+        }
+    }
+
+    private Node compileRange(List<Ast> args) {
+        if (args.size() == 0) {
+            return new Fail("Expected values to be there");
+        }
+        if (args.size() != 2) {
+            return new Fail("Expected range size to be 2");
+        }
+        for (Ast arg : args) {
+            if (!(arg instanceof Ast.NumberLiteral)) {
+                return new Fail("Expected " + arg + " to have type NumberLiteral.");
+            } else if (((Ast.NumberLiteral) arg).getValue().scale() > 0) {
+                return new Fail("Expected Number Literal and an Integer");
+            }
+        }
+        BigDecimal first = ((Ast.NumberLiteral) args.get(0)).getValue();
+        BigDecimal last = ((Ast.NumberLiteral) args.get(1)).getValue();
+        if (last.compareTo(first) < 0) {
+            return new Fail("Expected range to be increasing");
+        }
+        return new RangeList(first, last);
+    }
+
+    private Node compileSet(List<Ast> args) {
+        if (args.size() != 2) {
+            return new Fail("Need 2 arguments for set");
+        }
+        if (!(args.get(0) instanceof Ast.Identifier)) {
+            return new Fail("Need Identifier for argument");
+        }
+        return new Assign(resolver.resolve(((Ast.Identifier) args.get(0)).getName()), compileAst(args.get(1)));
+    }
+
+    private Node compileDefine(List<Ast> args) {
+        if (args.size() != 2) {
+            return new Fail("Invalid number of arguments");
+        }
+        if (args.get(0) instanceof Ast.Identifier) {
+            String name = ((Ast.Identifier) args.get(0)).getName();
+            return new DefineVariable(name, resolver.slot(name), compileAst(args.get(1)));
+        } else if (args.get(0) instanceof Ast.Term) {
+            Ast.Term signature = (Ast.Term) args.get(0);
+            String[] params = new String[signature.getArgs().size()];
+            String duplicate = null;
+            Set<String> unique = new HashSet<>();
+            for (int i = 0; i < params.length; i++) {
+                Ast param = signature.getArgs().get(i);
+                if (!(param instanceof Ast.Identifier)) {
+                    return new Fail("Expected " + param + " to have type Identifier.");
+                }
+                params[i] = ((Ast.Identifier) param).getName();
+                if (!unique.add(params[i]) && duplicate == null) {
+                    duplicate = params[i];
+                }
+            }
+            Resolver.Block block = resolver.enter(Arrays.asList(params), true, args.subList(1, 2));
+            Node body = compileAst(args.get(1), true);
+            resolver.exit();
+            int slot = resolver.slot(signature.getName());
+            return new DefineFunction(signature.getName(), slot, params.length, duplicate, block.getNames(), body);
+        } else {
+            return new Fail("Invalid first arguments");
+        }
+    }
+
+    private Node compileFor(List<Ast> args) {
+        if (args.size() != 2) {
+            return new Fail("Need 2 arguments for for loop");
+        }
+        if (!(args.get(0) instanceof Ast.Term)) {
+            return new Fail("Expected " + args.get(0) + " to have type Term.");
+        }
+        Ast.Term value = (Ast.Term) args.get(0);
+        if (value.getArgs().isEmpty()) {
+            return new Fail("Need a linked list for the for loop");
+        }
+        Resolver.Block block = resolver.enter(Collections.singletonList(value.getName()), false, Arrays.asList(value.getArgs().get(0), args.get(1)));
+        Node list = compileAst(value.getArgs().get(0));
+        resolver.markDefinite(value.getName());
+        Node body = compileAst(args.get(1));
+        resolver.exit();
+        return new For(block.getNames(), list, body);
+    }
+
+    private Node compileDo(List<Ast> args, boolean tail) {
+        Resolver.Block block = resolver.enter(Collections.emptyList(), false, args);
+        Node[] nodes = new Node[args.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compileAst(args.get(i), tail && i == nodes.length - 1);
+        }
+        resolver.exit();
+        return new Do(block.getNames(), nodes);
+    }
+
+    /**
+     * Compiles a variable read, which is a single array access if the
+     * variable is a parameter or loop variable.
+     */
+    private Node variable(String name) {
+        Resolver.Address address = resolver.resolve(name);
+        if (!address.isGlobal() && address.definite) {
+            return new Local(address.depth, address.slot);
+        }
+        return new Variable(address);
+    }
+
+    private Node compileComparison(List<Ast> args, Comparison comparison) {
+        if (args.isEmpty()) {
+            return new Constant(true);
+        }
+        if (Linker.isKeyword(args.get(0))) {
+            return new Fail("Identifier should not be keyword");
+        }
+        return new Compare(comparison, compileAll(args));
+    }
+
+    /**
+     * A user function created by a compiled {@code define}. Calls from
+     * compiled code pass evaluated arguments to {@link #invoke(Object[])}, while
+     * calls from the interpreter go through {@link #apply(List)}. Calls in
+     * tail position of the body return a {@link TailCall}, which {@link
+     * #invoke(Object[])} runs in a loop.
+     */
+    private final class Lambda implements Function<List<Ast>, Object> {
+
+        private final int params;
+        private final String[] names;
+        private final String duplicate;
+        private final Node body;
+        private final Frame parent;
+
+        private Lambda(int params, String[] names, String duplicate, Node body, Frame parent) {
+            this.params = params;
+            this.names = names;
+            this.duplicate = duplicate;
+            this.body = body;
+            this.parent = parent;
+        }
+
+        @Override
+        public Object apply(List<Ast> arguments) {
+            Object[] evaluated = new Object[arguments.size()];
+            for (int i = 0; i < evaluated.length; i++) {
+                evaluated[i] = interpreter.eval(arguments.get(i));
+            }
+            return invoke(evaluated);
+        }
+
+        private Object invoke(Object[] arguments) {
+            Object result = step(arguments);
+            while (result instanceof TailCall) {
+                TailCall call = (TailCall) result;
+                result = ((Lambda) call.function).step(call.arguments);
+            }
+            return result;
+        }
+
+        private Object step(Object[] arguments) {
+            if (params != arguments.length) {
+                throw new EvalException("Invalid number of arguments");
+            } else if (duplicate != null) {
+                throw new EvalException("The identifier " + duplicate + " is already defined in this scope.");
+            }
+            Frame frame = new Frame(parent, names);
+            System.arraycopy(arguments, 0, frame.slots, 0, params);
+            return body.execute(frame);
+        }
+
+    }
+
+    private static Object[] evaluate(Node[] nodes, Frame frame) {
+        Object[] values = new Object[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            values[i] = nodes[i].execute(frame);
+        }
+        return values;
+    }
+
+    private static BigDecimal requireNumber(Node node, Frame frame) {
+        return Interpreter.requireType(BigDecimal.class, node.execute(frame));
+    }
+
+    private static final class Constant extends Node {
+
+        private final Object value;
+        private final boolean isLong;
+
+        private Constant(Object value) {
+            this.value = value;
+            this.isLong = value instanceof BigDecimal && Numbers.isLong((BigDecimal) value);
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            return value;
+        }
+
+        @Override
+        long executeLong(Frame frame) {
+            if (isLong) {
+                return ((BigDecimal) value).longValue();
+            }
+            throw new NotLong(value);
+        }
+
+    }
+
+    /**
+     * Throws an error detected while compiling once the node is reached.
+     */
+    private static final class Fail extends Node {
+
+        private final String message;
+
+        private Fail(String message) {
+            this.message = message;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            throw new EvalException(message);
+        }
+
+    }
+
+    private static final class Sequence extends Node {
+
+        private final Node[] nodes;
+
+        private Sequence(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Object result = Interpreter.VOID;
+            for (Node node : nodes) {
+                result = node.execute(frame);
+            }
+            return result;
+        }
+
+    }
+
+    private static final class Local extends Node {
+
+        private final int depth;
+        private final int slot;
+
+        private Local(int depth, int slot) {
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            return frame.get(depth, slot);
+        }
+
+    }
+
+    private static final class Variable extends Node {
+
+        private final Resolver.Address address;
+
+        private Variable(Resolver.Address address) {
+            this.address = address;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            return frame.lookup(address);
+        }
+
+    }
+
+    /**
+     * A term which is not linked to a builtin. The function is looked up when
+     * the term runs; compiled functions receive evaluated arguments directly
+     * (or as a {@link TailCall} in tail position) and anything else is applied
+     * to the original ASTs, with the frames copied into the interpreter's
+     * scope while it runs.
+     */
+    private final class Call extends Node {
+
+        private final Node function;
+        private final List<Ast> args;
+        private final Node[] nodes;
+        private final boolean tail;
+
+        private Call(Node function, List<Ast> args, Node[] nodes, boolean tail) {
+            this.function = function;
+            this.args = args;
+            this.nodes = nodes;
+            this.tail = tail;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Function<?, ?> function = Interpreter.requireType(Function.class, this.function.execute(frame));
+            if (function instanceof Lambda) {
+                Object[] arguments = evaluate(nodes, frame);
+                return tail ? new TailCall(function, arguments) : ((Lambda) function).invoke(arguments);
+            }
+            @SuppressWarnings("unchecked")
+            Function<List<Ast>, Object> builtin = (Function<List<Ast>, Object>) function;
+            Scope current = interpreter.scope;
+            Scope bridge = frame.toScope();
+            interpreter.scope = bridge;
+            try {
+                return builtin.apply(args);
+            } finally {
+                interpreter.scope = current;
+                frame.update(bridge);
+            }
+        }
+
+    }
+
+    private final class Print extends Node {
+
+        private final Node[] nodes;
+
+        private Print(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Object[] values = evaluate(nodes, frame);
+            for (Object value : values) {
+                interpreter.out.print(value);
+            }
+            interpreter.out.println();
+            return Interpreter.VOID;
+        }
+
+    }
+
+    /**
+     * An arithmetic builtin which first computes with {@code long}s, as long
+     * as every argument is an integer that fits in one and no step overflows.
+     * Otherwise, the arguments evaluated so far are converted to {@link
+     * BigDecimal}s and the remaining ones are evaluated as usual, so the
+     * result is the same either way. Once that happens the node only uses
+     * {@link BigDecimal}s, so a node which sees decimals is not slowed down.
+     */
+    private abstract static class Arithmetic extends Node {
+
+        final Node[] nodes;
+        boolean speculate = true;
+
+        Arithmetic(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        final Object execute(Frame frame) {
+            if (speculate) {
+                try {
+                    return Numbers.valueOf(executeLong(frame));
+                } catch (NotLong e) {
+                    return e.value;
+                }
+            }
+            return executeDecimal(frame);
+        }
+
+        abstract Object executeDecimal(Frame frame);
+
+        /**
+         * Stops speculating and returns the result of continuing with {@link
+         * BigDecimal}s from the argument at the given index, which has been
+         * evaluated to the given value.
+         */
+        final NotLong promote(Frame frame, long result, int index, Object value) {
+            speculate = false;
+            return new NotLong(resume(frame, Numbers.valueOf(result), index, value));
+        }
+
+        abstract Object resume(Frame frame, BigDecimal result, int index, Object value);
+
+    }
+
+    private static final class Add extends Arithmetic {
+
+        private Add(Node[] nodes) {
+            super(nodes);
+        }
+
+        @Override
+        long executeLong(Frame frame) {
+            if (!speculate) {
+                return super.executeLong(frame);
+            }
+            long result = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                Object value;
+                try {
+                    long next = nodes[i].executeLong(frame);
+                    try {
+                        result = Math.addExact(result, next);
+                        continue;
+                    } catch (ArithmeticException e) {
+                        value = Numbers.valueOf(next);
+                    }
+                } catch (NotLong e) {
+                    value = e.value;
+                }
+                throw promote(frame, result, i, value);
+            }
+            return result;
+        }
+
+        @Override
+        Object executeDecimal(Frame frame) {
+            Object[] values = evaluate(nodes, frame);
+            BigDecimal result = BigDecimal.ZERO;
+            for (Object value : values) {
+                result = result.add(Interpreter.requireType(BigDecimal.class, value));
+            }
+            return result;
+        }
+
+        /**
+         * Like the interpreter, every argument is evaluated before any of
+         * them is type checked.
+         */
+        @Override
+        Object resume(Frame frame, BigDecimal result, int index, Object value) {
+            Object[] values = new Object[nodes.length - index];
+            values[0] = value;
+            for (int i = 1; i < values.length; i++) {
+                values[i] = nodes[index + i].execute(frame);
+            }
+            for (Object next : values) {
+                result = result.add(Interpreter.requireType(BigDecimal.class, next));
+            }
+            return result;
+        }
+
+    }
+
+    private static final class Subtract extends Arithmetic {
+
+        private Subtract(Node[] nodes) {
+            super(nodes);
+        }
+
+        @Override
+        long executeLong(Frame frame) {
+            if (nodes.length == 0) {
+                throw new EvalException("Arguments to - cannot be empty");
+            } else if (!speculate) {
+                return super.executeLong(frame);
+            }
+            long result = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                Object value;
+                try {
+                    long next = nodes[i].executeLong(frame);
+                    try {
+                        if (nodes.length == 1) {
+                            return Math.negateExact(next);
+                        }
+                        result = i == 0 ? next : Math.subtractExact(result, next);
+                        continue;
+                    } catch (ArithmeticException e) {
+                        value = Numbers.valueOf(next);
+                    }
+                } catch (NotLong e) {
+                    value = e.value;
+                }
+                throw promote(frame, result, i, value);
+            }
+            return result;
+        }
+
+        @Override
+        Object executeDecimal(Frame frame) {
+            if (nodes.length == 0) {
+                throw new EvalException("Arguments to - cannot be empty");
+            } else if (nodes.length == 1) {
+                return requireNumber(nodes[0], frame).negate();
+            }
+            BigDecimal result = requireNumber(nodes[0], frame);
+            for (int i = 1; i < nodes.length; i++) {
+                result = result.subtract(requireNumber(nodes[i], frame));
+            }
+            return result;
+        }
+
+        @Override
+        Object resume(Frame frame, BigDecimal result, int index, Object value) {
+            BigDecimal number = Interpreter.requireType(BigDecimal.class, value);
+            if (nodes.length == 1) {
+                return number.negate();
+            }
+            result = index == 0 ? number : result.subtract(number);
+            for (int i = index + 1; i < nodes.length; i++) {
+                result = result.subtract(requireNumber(nodes[i], frame));
+            }
+            return result;
+        }
+
+    }
+
+    private static final class Multiply extends Arithmetic {
+
+        private Multiply(Node[] nodes) {
+            super(nodes);
+        }
+
+        @Override
+        long executeLong(Frame frame) {
+            if (!speculate) {
+                return super.executeLong(frame);
+            }
+            long result = 1;
+            for (int i = 0; i < nodes.length; i++) {
+                Object value;
+                try {
+                    long next = nodes[i].executeLong(frame);
+                    try {
+                        result = Math.multiplyExact(result, next);
+                        continue;
+                    } catch (ArithmeticException e) {
+                        value = Numbers.valueOf(next);
+                    }
+                } catch (NotLong e) {
+                    value = e.value;
+                }
+                throw promote(frame, result, i, value);
+            }
+            return result;
+        }
+
+        @Override
+        Object executeDecimal(Frame frame) {
+            BigDecimal result = BigDecimal.ONE;
+            for (Node node : nodes) {
+                result = result.multiply(requireNumber(node, frame));
+            }
+            return result;
+        }
+
+        @Override
+        Object resume(Frame frame, BigDecimal result, int index, Object value) {
+            result = result.multiply(Interpreter.requireType(BigDecimal.class, value));
+            for (int i = index + 1; i < nodes.length; i++) {
+                result = result.multiply(requireNumber(nodes[i], frame));
+            }
+            return result;
+        }
+
+    }
+
+    private static final class Divide extends Node {
+
+        private final Node[] nodes;
+
+        private Divide(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            if (nodes.length == 0) {
+                throw new EvalException("Empty Arguments for divide function");
+            } else if (nodes.length == 1) {
+                return BigDecimal.ONE.divide(requireNumber(nodes[0], frame), RoundingMode.HALF_EVEN);
+            }
+            BigDecimal[] values = new BigDecimal[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                values[i] = requireNumber(nodes[i], frame);
+            }
+            BigDecimal result = values[0];
+            int scale = result.scale();
+            for (int i = 1; i < values.length; i++) {
+                scale = Math.max(values[i].scale(), scale);
+                result = result.divide(values[i], scale, RoundingMode.HALF_EVEN);
+            }
+            return result;
+        }
+
+    }
+
+    private static final class Equals extends Node {
+
+        private final Node left;
+        private final Node right;
+
+        private Equals(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Object value = left.execute(frame);
+            return Objects.deepEquals(value, right.execute(frame));
+        }
+
+    }
+
+    private static final class Not extends Node {
+
+        private final Node node;
+
+        private Not(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Object value = node.execute(frame);
+            if (!(value instanceof Boolean)) {
+                throw new EvalException("Argument has to be of type boolean");
+            }
+            return !(Boolean) value;
+        }
+
+    }
+
+    /**
+     * As in the interpreter, an argument which evaluates to a boolean is
+     * evaluated a second time for the value which is tested.
+     */
+    private static final class And extends Node {
+
+        private final Node[] nodes;
+
+        private And(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            for (Node node : nodes) {
+                if (!(node.execute(frame) instanceof Boolean) || !(Boolean) node.execute(frame)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Evaluates each argument twice as {@link And} does.
+     */
+    private static final class Or extends Node {
+
+        private final Node[] nodes;
+
+        private Or(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            for (Node node : nodes) {
+                if (!(node.execute(frame) instanceof Boolean)) {
+                    throw new EvalException("Need a boolean value to evaluate or statement");
+                } else if ((Boolean) node.execute(frame)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    private static final class ListNode extends Node {
+
+        private final Node[] nodes;
+
+        private ListNode(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            List<Object> values = new LinkedList<>();
+            for (Node node : nodes) {
+                values.add(node.execute(frame));
+            }
+            return values;
+        }
+
+    }
+
+    private static final class RangeList extends Node {
+
+        private final BigDecimal first;
+        private final BigDecimal last;
+
+        private RangeList(BigDecimal first, BigDecimal last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            return Range.of(first, last);
+        }
+
+    }
+
+    private static final class Assign extends Node {
+
+        private final Resolver.Address address;
+        private final Node value;
+
+        private Assign(Resolver.Address address, Node value) {
+            this.address = address;
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            frame.set(address, value.execute(frame));
+            return Interpreter.VOID;
+        }
+
+    }
+
+    private static final class DefineVariable extends Node {
+
+        private final String name;
+        private final int slot;
+        private final Node value;
+
+        private DefineVariable(String name, int slot, Node value) {
+            this.name = name;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Object result = value.execute(frame);
+            if (slot < 0) {
+                frame.scope.define(name, result);
+            } else {
+                frame.define(slot, result);
+            }
+            return Interpreter.VOID;
+        }
+
+    }
+
+    private final class DefineFunction extends Node {
+
+        private final String name;
+        private final int slot;
+        private final int params;
+        private final String duplicate;
+        private final String[] names;
+        private final Node body;
+
+        private DefineFunction(String name, int slot, int params, String duplicate, String[] names, Node body) {
+            this.name = name;
+            this.slot = slot;
+            this.params = params;
+            this.duplicate = duplicate;
+            this.names = names;
+            this.body = body;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Lambda lambda = new Lambda(params, names, duplicate, body, frame);
+            if (slot < 0) {
+                frame.scope.define(name, lambda);
+            } else {
+                frame.define(slot, lambda);
+            }
+            return Interpreter.VOID;
+        }
+
+    }
+
+    private static final class While extends Node {
+
+        private final Node condition;
+        private final Node body;
+
+        private While(Node condition, Node body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            while (Interpreter.requireType(Boolean.class, condition.execute(frame))) {
+                body.execute(frame);
+            }
+            return Interpreter.VOID;
+        }
+
+    }
+
+    private static final class For extends Node {
+
+        private final String[] names;
+        private final Node list;
+        private final Node body;
+
+        private For(String[] names, Node list, Node body) {
+            this.names = names;
+            this.list = list;
+            this.body = body;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Frame loop = new Frame(frame, names);
+            Object values = list.execute(loop);
+            if (!Range.isIterable(values)) {
+                throw new EvalException("Need a linked list for the for loop");
+            }
+            boolean defined = false;
+            for (Object value : (List<?>) values) {
+                if (!defined) {
+                    loop.define(0, value);
+                    defined = true;
+                } else {
+                    loop.slots[0] = value;
+                }
+                body.execute(loop);
+            }
+            return Interpreter.VOID;
+        }
+
+    }
+
+    private static final class Do extends Node {
+
+        private final String[] names;
+        private final Node[] nodes;
+
+        private Do(String[] names, Node[] nodes) {
+            this.names = names;
+            this.nodes = nodes;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            Frame block = new Frame(frame, names);
+            Object result = Interpreter.VOID;
+            for (Node node : nodes) {
+                result = node.execute(block);
+            }
+            return result;
+        }
+
+    }
+
+    private enum Comparison {
+        LESS, GREATER, LESS_EQUAL, GREATER_EQUAL
+    }
+
+    /**
+     * Compares each pair of adjacent arguments. As in the interpreter, every
+     * pair is evaluated and type checked even once the result is known.
+     * Integers are compared as {@code long}s until an argument is not one
+     * (see {@link Arithmetic}).
+     */
+    private static final class Compare extends Node {
+
+        private final Comparison comparison;
+        private final Node[] nodes;
+        private boolean speculate = true;
+
+        private Compare(Comparison comparison, Node[] nodes) {
+            this.comparison = comparison;
+            this.nodes = nodes;
+        }
+
+        @Override
+        Object execute(Frame frame) {
+            if (nodes.length == 1) {
+                nodes[0].execute(frame);
+                return true;
+            }
+            boolean result = true;
+            for (int i = 1; i < nodes.length; i++) {
+                int compared = speculate
+                        ? compareLong(frame, i)
+                        : compare(nodes[i - 1].execute(frame), nodes[i].execute(frame));
+                switch (comparison) {
+                    case LESS: result &= compared < 0; break;
+                    case GREATER: result &= compared > 0; break;
+                    case LESS_EQUAL: result &= compared <= 0; break;
+                    case GREATER_EQUAL: result &= compared >= 0; break;
+                }
+            }
+            return result;
+        }
+
+        private int compareLong(Frame frame, int index) {
+            Object left;
+            Object right;
+            try {
+                long value = nodes[index - 1].executeLong(frame);
+                try {
+                    return Long.compare(value, nodes[index].executeLong(frame));
+                } catch (NotLong e) {
+                    left = Numbers.valueOf(value);
+                    right = e.value;
+                }
+            } catch (NotLong e) {
+                left = e.value;
+                right = nodes[index].execute(frame);
+            }
+            speculate = false;
+            return compare(left, right);
+        }
+
+        private static int compare(Object left, Object right) {
+            if (left instanceof BigDecimal && right instanceof BigDecimal) {
+                return ((BigDecimal) left).compareTo((BigDecimal) right);
+            } else if (left instanceof String && right instanceof String) {
+                return ((String) left).compareTo((String) right);
+            }
+            throw new EvalException("values have to be of same type");
+        }
+
+    }
+
+}
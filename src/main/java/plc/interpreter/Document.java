@@ -0,0 +1,159 @@
+package plc.interpreter;
+
+import plc.scanner.Source;
+import plc.scanner.TokenBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The text of a program which is being edited, such as the buffer of a REPL
+ * or an editor, and the AST parsed from it. Instead of parsing the whole text
+ * after every edit, only the forms of the {@code source} term which the edit
+ * could have changed are lexed and parsed again, and the ASTs of the others
+ * are reused as they are.
+ *
+ * Each form remembers the characters it was parsed from and how far the
+ * lexer read to parse it, which includes the token after it since the parser
+ * peeks at that to decide whether to skip it. An edit re-parses from the first
+ * form which read a changed character, and stops as soon as the next form
+ * starts after the edit at the same place as one of the previous forms did,
+ * since everything after that lexes and parses exactly as before.
+ *
+ * The AST is always the same as {@link Parser#parse(String)} would return for
+ * the text, and so are the errors: if the text is not valid the edit throws a
+ * {@link ParseException}, keeping the forms before the error so the next edit
+ * continues from there.
+ */
+public final class Document {
+
+    private final StringBuilder text;
+    private final List<Form> forms = new ArrayList<>();
+    private boolean complete = false;
+
+    public Document(String text) {
+        this.text = new StringBuilder(text);
+    }
+
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Returns the AST of the text, parsing any forms which have not been
+     * parsed since the document was created or an edit failed.
+     */
+    public Ast parse() throws ParseException {
+        if (!complete) {
+            parse(forms.size(), 0, 0);
+        }
+        return source();
+    }
+
+    /**
+     * Replaces {@code removed} characters at the given offset with the
+     * inserted text and returns the new AST.
+     */
+    public Ast edit(int offset, int removed, String inserted) throws ParseException {
+        if (offset < 0 || removed < 0 || offset + removed > text.length()) {
+            throw new IndexOutOfBoundsException("Edit: " + offset + " to " + (offset + removed) + ", Length: " + text.length());
+        }
+        text.replace(offset, offset + removed, inserted);
+        int low = 0;
+        int high = forms.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (forms.get(mid).reach <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        parse(low, offset + inserted.length(), inserted.length() - removed);
+        return source();
+    }
+
+    /**
+     * Parses the text again from the given form, reusing the forms after it
+     * which start after the end of the edit. The positions of those forms
+     * are moved by delta, which is the change in length of the text.
+     */
+    private void parse(int first, int end, int delta) {
+        List<Form> previous = new ArrayList<>(forms.subList(first, forms.size()));
+        boolean reusable = complete;
+        forms.subList(first, forms.size()).clear();
+        complete = false;
+        int restart = first == 0 ? 0 : forms.get(first - 1).end;
+        Lexer lexer = new Lexer(Source.of(text));
+        lexer.chars.index = restart;
+        TokenBuffer tokens = new TokenBuffer(text);
+        Parser parser = new Parser(lexer, tokens);
+        int next = 0;
+        try {
+            while (parser.hasNext()) {
+                int start = tokens.start(parser.index());
+                if (reusable && start >= end) {
+                    while (next < previous.size() && previous.get(next).start + delta < start) {
+                        next++;
+                    }
+                    if (next < previous.size() && previous.get(next).start + delta == start) {
+                        for (Form form : previous.subList(next, previous.size())) {
+                            form.move(delta);
+                            forms.add(form);
+                        }
+                        complete = true;
+                        return;
+                    }
+                }
+                Ast ast = parser.parseForm();
+                //the parser skips the token after a term even at the end
+                int last = Math.min(parser.index(), tokens.size()) - 1;
+                forms.add(new Form(ast, start, tokens.start(last) + tokens.length(last), lexer.chars.index + 1));
+            }
+        } catch (ParseException e) {
+            //Parser.parse lexes the whole text before parsing, so an error in
+            //a later token is reported before this one.
+            Lexer rest = new Lexer(Source.of(text));
+            rest.chars.index = restart;
+            rest.lex(new TokenBuffer(text));
+            throw e;
+        }
+        complete = true;
+    }
+
+    private Ast source() {
+        List<Ast> args = new ArrayList<>(forms.size());
+        for (Form form : forms) {
+            args.add(form.ast);
+        }
+        return new Ast.Term("source", args);
+    }
+
+    /**
+     * A form of the source, which was parsed from the characters from start
+     * to end (exclusive). The lexer read every character before reach to
+     * parse it, so it only changes if one of those does.
+     */
+    private static final class Form {
+
+        private final Ast ast;
+        private int start;
+        private int end;
+        private int reach;
+
+        private Form(Ast ast, int start, int end, int reach) {
+            this.ast = ast;
+            this.start = start;
+            this.end = end;
+            this.reach = reach;
+        }
+
+        private void move(int delta) {
+            start += delta;
+            end += delta;
+            reach += delta;
+        }
+
+    }
+
+}
@@ -0,0 +1,464 @@
+package plc.interpreter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A compact encoding of an AST in primitive arrays, for keeping many parsed
+ * programs in memory. Each node takes two ints instead of an object (and a
+ * list, for terms): a header with its {@link Kind} and the index of its name
+ * or value in a pool of literals, which is shared by equal literals, and the
+ * index of its first child.
+ *
+ * Nodes are stored breadth first, so the children of a node are next to each
+ * other and follow the children of the node before it. The children of node
+ * {@code i} are therefore the nodes from {@code first[i]} to {@code
+ * first[i + 1]}, and leaves are simply nodes with no children.
+ *
+ * The tree is read with a {@link Cursor}, and the {@link Ast} classes can be
+ * rebuilt with {@link #toAst()} when they are needed, such as to evaluate it.
+ *
+ * The arrays can also be written to a file with {@link #write(Path)} and
+ * memory-mapped back with {@link #load(Path)}, so a library is only parsed
+ * once. The file starts with {@link #MAGIC} and {@link #VERSION}, which is
+ * incremented whenever the layout changes, followed by the number of nodes
+ * and literals, the headers, the first children, the offset of each literal
+ * and finally the characters of the literals. Numbers are stored as their
+ * {@link BigDecimal#toString()}, which keeps their scale. Literals are only
+ * decoded when a node using them is read.
+ */
+public final class FlatAst {
+
+    public enum Kind {
+        TERM,
+        IDENTIFIER,
+        NUMBER,
+        STRING
+    }
+
+    /**
+     * The first int of a file, which is {@code "WHSP"} in ASCII.
+     */
+    public static final int MAGIC = 0x57485350;
+    public static final int VERSION = 1;
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final int KIND_BITS = 2;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    private final IntBuffer headers;
+    private final IntBuffer first;
+    private final Object[] literals;
+    private final IntBuffer offsets;
+    private final CharBuffer chars;
+
+    /**
+     * Creates a tree over the given buffers. The offsets and characters of
+     * the literals are only needed to decode them, so they are null if every
+     * literal is already decoded.
+     */
+    private FlatAst(IntBuffer headers, IntBuffer first, Object[] literals, IntBuffer offsets, CharBuffer chars) {
+        this.headers = headers;
+        this.first = first;
+        this.literals = literals;
+        this.offsets = offsets;
+        this.chars = chars;
+    }
+
+    /**
+     * Encodes the AST, which is traversed with a queue rather than recursion
+     * so any depth of nesting can be encoded.
+     */
+    public static FlatAst of(Ast ast) {
+        List<Ast> nodes = new ArrayList<>();
+        nodes.add(ast);
+        int[] headers = new int[16];
+        int[] first = new int[16];
+        Map<Object, Integer> pool = new HashMap<>();
+        List<Object> literals = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i + 1 >= first.length) {
+                headers = Arrays.copyOf(headers, 2 * headers.length);
+                first = Arrays.copyOf(first, 2 * first.length);
+            }
+            Ast node = nodes.get(i);
+            Kind kind;
+            Object literal;
+            if (node instanceof Ast.Term) {
+                kind = Kind.TERM;
+                literal = ((Ast.Term) node).getSymbol();
+            } else if (node instanceof Ast.Identifier) {
+                kind = Kind.IDENTIFIER;
+                literal = ((Ast.Identifier) node).getSymbol();
+            } else if (node instanceof Ast.NumberLiteral) {
+                kind = Kind.NUMBER;
+                literal = ((Ast.NumberLiteral) node).getValue();
+            } else if (node instanceof Ast.StringLiteral) {
+                kind = Kind.STRING;
+                literal = ((Ast.StringLiteral) node).getValue();
+            } else {
+                throw new AssertionError();
+            }
+            Integer index = pool.get(literal);
+            if (index == null) {
+                index = literals.size();
+                pool.put(literal, index);
+                literals.add(literal);
+            }
+            headers[i] = index << KIND_BITS | kind.ordinal();
+            first[i] = nodes.size();
+            if (kind == Kind.TERM) {
+                nodes.addAll(((Ast.Term) node).getArgs());
+            }
+        }
+        first[nodes.size()] = nodes.size();
+        return new FlatAst(IntBuffer.wrap(headers, 0, nodes.size()).slice(), IntBuffer.wrap(Arrays.copyOf(first, nodes.size() + 1)),
+                literals.toArray(), null, null);
+    }
+
+    /**
+     * Memory-maps a file written by {@link #write(Path)}. Only the header is
+     * read until nodes are, so loading takes the same time for any size of
+     * file.
+     */
+    public static FlatAst load(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a Whisp AST file: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported Whisp AST version " + version + ", expected " + VERSION + ": " + path);
+        }
+        int nodes = buffer.getInt();
+        int literals = buffer.getInt();
+        long ints = 2L * nodes + 1 + literals + 1;
+        if (nodes < 1 || literals < 0 || buffer.remaining() < Integer.BYTES * ints) {
+            throw new IOException("Truncated Whisp AST file: " + path);
+        }
+        IntBuffer headers = slice(buffer, nodes).asIntBuffer();
+        IntBuffer first = slice(buffer, nodes + 1).asIntBuffer();
+        IntBuffer offsets = slice(buffer, literals + 1).asIntBuffer();
+        CharBuffer chars = buffer.slice().asCharBuffer();
+        if (offsets.get(literals) > chars.limit()) {
+            throw new IOException("Truncated Whisp AST file: " + path);
+        }
+        return new FlatAst(headers, first, new Object[literals], offsets, chars);
+    }
+
+    /**
+     * Writes the tree to the file at the given path, replacing it.
+     */
+    public void write(Path path) throws IOException {
+        int nodes = size();
+        String[] texts = new String[literals.length];
+        int length = 0;
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = text(i);
+            length += texts[i].length();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + Integer.BYTES * (2 * nodes + 1 + texts.length + 1) + Character.BYTES * length);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(nodes).putInt(texts.length);
+        for (int i = 0; i < nodes; i++) {
+            buffer.putInt(headers.get(i));
+        }
+        for (int i = 0; i <= nodes; i++) {
+            buffer.putInt(first.get(i));
+        }
+        int offset = 0;
+        for (String text : texts) {
+            buffer.putInt(offset);
+            offset += text.length();
+        }
+        buffer.putInt(offset);
+        for (String text : texts) {
+            for (int i = 0; i < text.length(); i++) {
+                buffer.putChar(text.charAt(i));
+            }
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Returns the next count ints of the buffer as a buffer of their own,
+     * advancing past them.
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int count) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(Integer.BYTES * count);
+        buffer.position(buffer.position() + Integer.BYTES * count);
+        return slice;
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int size() {
+        return headers.limit();
+    }
+
+    /**
+     * Returns a cursor at the root.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Rebuilds the AST from the root.
+     */
+    public Ast toAst() {
+        return toAst(0);
+    }
+
+    /**
+     * Rebuilds the root, but only rebuilds each argument of the root term the
+     * first time it is read. For a loaded library, each top-level form is
+     * then decoded when it is first evaluated instead of all of them being
+     * decoded up front.
+     */
+    public Ast toLazyAst() {
+        if (kind(0) != Kind.TERM) {
+            return toAst(0);
+        }
+        return new Ast.Term((Symbol) literal(0), new LazyArgs(first.get(0), first.get(1) - first.get(0)));
+    }
+
+    /**
+     * Rebuilds the AST of the given node. Each node is created before its
+     * children, which are added to the arguments of its term as they are
+     * reached in breadth first order.
+     */
+    private Ast toAst(int root) {
+        List<Ast> result = new ArrayList<>(1);
+        Deque<Integer> nodes = new ArrayDeque<>();
+        Deque<List<Ast>> parents = new ArrayDeque<>();
+        nodes.add(root);
+        parents.add(result);
+        while (!nodes.isEmpty()) {
+            int node = nodes.remove();
+            Ast ast;
+            switch (kind(node)) {
+                case TERM:
+                    List<Ast> args = new ArrayList<>(first.get(node + 1) - first.get(node));
+                    for (int child = first.get(node); child < first.get(node + 1); child++) {
+                        nodes.add(child);
+                        parents.add(args);
+                    }
+                    ast = new Ast.Term((Symbol) literal(node), args);
+                    break;
+                case IDENTIFIER:
+                    ast = new Ast.Identifier((Symbol) literal(node));
+                    break;
+                case NUMBER:
+                    ast = new Ast.NumberLiteral((BigDecimal) literal(node));
+                    break;
+                case STRING:
+                    ast = new Ast.StringLiteral((String) literal(node));
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+            parents.remove().add(ast);
+        }
+        return result.get(0);
+    }
+
+    private Kind kind(int node) {
+        return KINDS[headers.get(node) & (1 << KIND_BITS) - 1];
+    }
+
+    /**
+     * Returns the literal of the node, decoding it if the tree was loaded
+     * and it has not been read before. Decoding the same literal twice from
+     * different threads is harmless, as the results are equal.
+     */
+    private Object literal(int node) {
+        int index = headers.get(node) >>> KIND_BITS;
+        Object literal = literals[index];
+        if (literal == null) {
+            int start = offsets.get(index);
+            int end = offsets.get(index + 1);
+            switch (kind(node)) {
+                case TERM:
+                case IDENTIFIER:
+                    literal = Symbol.intern(chars, start, end);
+                    break;
+                case NUMBER:
+                    literal = new BigDecimal(chars.subSequence(start, end).toString());
+                    break;
+                case STRING:
+                    literal = chars.subSequence(start, end).toString();
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+            literals[index] = literal;
+        }
+        return literal;
+    }
+
+    /**
+     * Returns the text a literal is written as.
+     */
+    private String text(int index) {
+        Object literal = literals[index];
+        if (literal == null) {
+            return chars.subSequence(offsets.get(index), offsets.get(index + 1)).toString();
+        } else if (literal instanceof Symbol) {
+            return ((Symbol) literal).getName();
+        } else {
+            return literal.toString();
+        }
+    }
+
+    /**
+     * The arguments of the root term for {@link #toLazyAst()}, which rebuilds
+     * each one when it is first read.
+     */
+    private final class LazyArgs extends AbstractList<Ast> implements RandomAccess {
+
+        private final int start;
+        private final Ast[] args;
+
+        private LazyArgs(int start, int size) {
+            this.start = start;
+            this.args = new Ast[size];
+        }
+
+        @Override
+        public Ast get(int index) {
+            if (args[index] == null) {
+                args[index] = toAst(start + index);
+            }
+            return args[index];
+        }
+
+        @Override
+        public int size() {
+            return args.length;
+        }
+
+    }
+
+    /**
+     * A position in the tree, which moves between nodes instead of creating
+     * an object for each one. The path back to the root is kept so the
+     * cursor can return to the parent.
+     */
+    public final class Cursor {
+
+        private int node = 0;
+        private int[] path = new int[8];
+        private int depth = 0;
+
+        private Cursor() {}
+
+        public Kind getKind() {
+            return kind(node);
+        }
+
+        /**
+         * Returns the symbol of a term or identifier.
+         */
+        public Symbol getSymbol() {
+            Kind kind = kind(node);
+            if (kind != Kind.TERM && kind != Kind.IDENTIFIER) {
+                throw new IllegalStateException("Expected a term or identifier, received " + kind + ".");
+            }
+            return (Symbol) FlatAst.this.literal(node);
+        }
+
+        public String getName() {
+            return getSymbol().getName();
+        }
+
+        public BigDecimal getNumber() {
+            return (BigDecimal) value(Kind.NUMBER);
+        }
+
+        public String getString() {
+            return (String) value(Kind.STRING);
+        }
+
+        /**
+         * Returns the number of arguments of a term, which is zero for the
+         * other kinds of nodes.
+         */
+        public int getChildCount() {
+            return first.get(node + 1) - first.get(node);
+        }
+
+        /**
+         * Moves to the i-th argument of the term, returning this cursor.
+         */
+        public Cursor child(int i) {
+            if (i < 0 || i >= getChildCount()) {
+                throw new IndexOutOfBoundsException("Index: " + i + ", Children: " + getChildCount());
+            }
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, 2 * path.length);
+            }
+            path[depth++] = node;
+            node = first.get(node) + i;
+            return this;
+        }
+
+        /**
+         * Returns true if the cursor is not at the root.
+         */
+        public boolean hasParent() {
+            return depth > 0;
+        }
+
+        /**
+         * Moves back to the term containing this node, returning this cursor.
+         */
+        public Cursor parent() {
+            if (depth == 0) {
+                throw new IllegalStateException("The cursor is at the root.");
+            }
+            node = path[--depth];
+            return this;
+        }
+
+        /**
+         * Rebuilds the AST of the node at the cursor.
+         */
+        public Ast toAst() {
+            return FlatAst.this.toAst(node);
+        }
+
+        private Object value(Kind expected) {
+            if (kind(node) != expected) {
+                throw new IllegalStateException("Expected a " + expected + ", received " + kind(node) + ".");
+            }
+            return FlatAst.this.literal(node);
+        }
+
+    }
+
+}
@@ -0,0 +1,136 @@
+package plc.interpreter;
+
+/**
+ * A frame stores the variables of a block (a {@code do}, {@code for} or
+ * function call) for code compiled by the {@link ClosureCompiler}. Unlike a
+ * {@link Scope}, the values are kept in a plain array indexed by the slots the
+ * {@link Resolver} assigned while compiling, so accessing a variable is an
+ * index operation instead of a series of hash table lookups.
+ *
+ * A slot holding {@code null} has not been defined yet. The outermost frame
+ * has no slots and instead refers to the dynamic {@link Scope} that holds the
+ * global variables, which is also shared by every frame nested in it.
+ */
+final class Frame {
+
+    private static final Object[] EMPTY = new Object[0];
+
+    final Frame parent;
+    final Scope scope;
+    final Object[] slots;
+    final String[] names;
+
+    /**
+     * Creates the outermost frame for the given global scope.
+     */
+    Frame(Scope scope) {
+        this.parent = null;
+        this.scope = scope;
+        this.slots = EMPTY;
+        this.names = new String[0];
+    }
+
+    /**
+     * Creates a frame for a block with the given variable names, nested in the
+     * parent frame.
+     */
+    Frame(Frame parent, String[] names) {
+        this.parent = parent;
+        this.scope = parent.scope;
+        this.slots = new Object[names.length];
+        this.names = names;
+    }
+
+    /**
+     * Returns the value in the given slot of the frame {@code depth} levels
+     * up from this one.
+     */
+    Object get(int depth, int slot) {
+        Frame frame = this;
+        for (int i = 0; i < depth; i++) {
+            frame = frame.parent;
+        }
+        return frame.slots[slot];
+    }
+
+    /**
+     * Returns the value of the variable at the given address, falling back to
+     * the outer candidates if a slot has not been defined yet.
+     */
+    Object lookup(Resolver.Address address) {
+        for (Resolver.Address candidate = address; ; candidate = candidate.outer) {
+            if (candidate.isGlobal()) {
+                return scope.lookup(candidate.symbol);
+            }
+            Object value = get(candidate.depth, candidate.slot);
+            if (value != null || candidate.definite) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Sets the value of the variable at the given address, with the same
+     * fallback rules as {@link #lookup(Resolver.Address)}.
+     */
+    void set(Resolver.Address address, Object value) {
+        for (Resolver.Address candidate = address; ; candidate = candidate.outer) {
+            if (candidate.isGlobal()) {
+                scope.set(candidate.symbol, value);
+                return;
+            }
+            Frame frame = this;
+            for (int i = 0; i < candidate.depth; i++) {
+                frame = frame.parent;
+            }
+            if (frame.slots[candidate.slot] != null || candidate.definite) {
+                frame.slots[candidate.slot] = value;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Defines a variable in a slot of this frame, throwing if it has already
+     * been defined like {@link Scope#define(String, Object)}.
+     */
+    void define(int slot, Object value) {
+        if (slots[slot] != null) {
+            throw new EvalException("The identifier " + names[slot] + " is already defined in this scope.");
+        }
+        slots[slot] = value;
+    }
+
+    /**
+     * Copies the frames into a chain of {@link Scope}s, which is needed when
+     * calling a function that evaluates its arguments with an {@link
+     * Interpreter} rather than compiled code.
+     */
+    Scope toScope() {
+        if (parent == null) {
+            return scope;
+        }
+        Scope bridge = new Scope(parent.toScope());
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null && !bridge.defines(names[i])) {
+                bridge.define(names[i], slots[i]);
+            }
+        }
+        return bridge;
+    }
+
+    /**
+     * Copies any values defined or changed in a scope created by {@link
+     * #toScope()} back into the frames.
+     */
+    void update(Scope bridge) {
+        for (Frame frame = this; frame.parent != null; frame = frame.parent, bridge = bridge.getParent()) {
+            for (int i = 0; i < frame.slots.length; i++) {
+                if (bridge.defines(frame.names[i])) {
+                    frame.slots[i] = bridge.lookup(frame.names[i]);
+                }
+            }
+        }
+    }
+
+}
@@ -1,11 +1,19 @@
 package plc.interpreter;
 
 import java.io.PrintWriter;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -25,15 +33,88 @@ public final class Interpreter {
 
     };
 
+    /**
+     * The names which the comparison functions do not accept as their first
+     * argument, which were previously matched by a regex on every call. The
+     * {@link Linker} checks the same set while compiling.
+     */
+    static final Set<Symbol> KEYWORDS = new HashSet<>();
+
+    static {
+        for (String name : new String[] {"true", "false", "equal", "equals", "not", "and", "or", "<", "<=", ">", ">=",
+                "+", "-", "/", "*", "define", "list", "range", "set!", "do", "for", "while", ""}) {
+            KEYWORDS.add(Symbol.of(name));
+        }
+    }
+
     public final PrintWriter out;
     public Scope scope;
 
+    /**
+     * The standard library values defined by {@link #init()}, used by the
+     * {@link ClosureCompiler} to recognize calls it can link ahead of time.
+     */
+    final Map<String, Object> builtins = new HashMap<>();
+
+    /**
+     * The number of calls and loop iterations after which a function created
+     * by {@code define} is compiled, see {@link #setCompileThreshold(int)}.
+     */
+    public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+
+    /**
+     * The function whose body is currently being interpreted, which loops
+     * report their iterations to.
+     */
+    TieredFunction active;
+
+    private int compileThreshold = DEFAULT_COMPILE_THRESHOLD;
+    private JvmCompiler compiler;
+
+    /**
+     * The evaluated arguments of builtins which take more than two, used as
+     * a stack so nested calls share it.
+     */
+    private Object[] operands = new Object[16];
+    private int operandCount = 0;
+
     public Interpreter(PrintWriter out, Scope scope) {
         this.out = out;
         this.scope = scope;
         init();
     }
 
+    /**
+     * Reads, parses and evaluates the forms of a script one at a time,
+     * returning the value of the last one or {@link #VOID} if there are none.
+     * Each form is evaluated as soon as it is parsed and is dropped after, so
+     * memory does not grow with the length of the script, only with what it
+     * defines, and the output is flushed after each form. An error in the
+     * script is thrown when it is reached, after the forms before it have
+     * been evaluated.
+     */
+    public Object run(Reader reader) {
+        return run(Lexer.tokens(reader));
+    }
+
+    /**
+     * Reads the UTF-8 bytes of a script from the channel and evaluates it as
+     * {@link #run(Reader)} does.
+     */
+    public Object run(ReadableByteChannel channel) {
+        return run(Lexer.tokens(channel));
+    }
+
+    private Object run(Iterator<Token> tokens) {
+        Parser parser = new Parser(tokens);
+        Object result = VOID;
+        while (parser.hasNext()) {
+            result = eval(parser.parseForm());
+            out.flush();
+        }
+        return result;
+    }
+
     /**
      * Delegates evaluation to the method for the specific instance of AST. This
      * is another approach to implementing the visitor pattern.
@@ -57,9 +138,23 @@ public final class Interpreter {
      * the function stored under the term's name in the current scope. You will
      * need to check that the type of the value is a {@link Function}, and cast
      * to the type {@code Function<List<Ast>, Object>}.
+     *
+     * The function is cached in the term, which is valid as long as the term
+     * runs in the same scope and no binding it depends on has changed since
+     * (see {@link CallSite}).
      */
     private Object eval(Ast.Term ast) {
-        return requireType(Function.class, scope.lookup(ast.getName())).apply(ast.getArgs());
+        Object function;
+        CallSite cache = ast.cache;
+        if (cache != null && cache.matches(scope)) {
+            function = cache.function;
+        } else {
+            long version = scope.version();
+            function = requireType(Function.class, scope.lookup(ast.getSymbol()));
+            scope.observe();
+            ast.cache = new CallSite(scope, version, function);
+        }
+        return ((Function) function).apply(ast.getArgs());
     }
 
     /**
@@ -67,7 +162,7 @@ public final class Interpreter {
      * identifier's name in the current scope.
      */
     private Object eval(Ast.Identifier ast) {
-        return this.scope.lookup(ast.getName());
+        return this.scope.lookup(ast.getSymbol());
     }
 
     /**
@@ -89,85 +184,188 @@ public final class Interpreter {
      * library.
      */
     private void init() {
-        scope.define("print", (Function<List<Ast>, Object>) args -> {
-            List<Object> evaluated = args.stream().map(this::eval).collect(Collectors.toList());
-            evaluated.forEach(out::print);
-            out.println();
-            return VOID;
+        builtin("print", new Builtin() {
+
+            @Override
+            Object apply0() {
+                out.println();
+                return VOID;
+            }
+
+            @Override
+            Object apply1(Ast first) {
+                out.print(eval(first));
+                out.println();
+                return VOID;
+            }
+
+            @Override
+            Object apply2(Ast first, Ast second) {
+                Object left = eval(first);
+                Object right = eval(second);
+                out.print(left);
+                out.print(right);
+                out.println();
+                return VOID;
+            }
+
+            @Override
+            Object applyN(List<Ast> args) {
+                int base = operandCount;
+                try {
+                    pushOperands(args);
+                    for (int i = base; i < operandCount; i++) {
+                        out.print(operands[i]);
+                    }
+                    out.println();
+                    return VOID;
+                } finally {
+                    popOperands(base);
+                }
+            }
+
         });
-        scope.define("-", (Function<List<Ast>, Object>) args -> {
-            List<BigDecimal> evaluated = args.stream()
-                    .map(a -> requireType(BigDecimal.class, eval(a)))
-                    .collect(Collectors.toList());
-            if (evaluated.isEmpty()) {
+        builtin("-", new Builtin() {
+
+            @Override
+            Object apply0() {
                 throw new EvalException("Arguments to - cannot be empty");
-            } else if (evaluated.size() == 1) {
-                return evaluated.get(0).negate();
-            } else {
-                BigDecimal num = evaluated.get(0);
-                for (int i = 1; i < evaluated.size(); i++) {
-                    num = num.subtract(evaluated.get(i));
+            }
+
+            @Override
+            Object apply1(Ast first) {
+                return evalNumber(first).negate();
+            }
+
+            @Override
+            Object apply2(Ast first, Ast second) {
+                BigDecimal left = evalNumber(first);
+                return left.subtract(evalNumber(second));
+            }
+
+            @Override
+            Object applyN(List<Ast> args) {
+                BigDecimal num = evalNumber(args.get(0));
+                for (int i = 1; i < args.size(); i++) {
+                    num = num.subtract(evalNumber(args.get(i)));
                 }
                 return num;
             }
+
         });
 
-        scope.define("+", (Function<List<Ast>, Object>) args -> {
-            /*List<BigDecimal> evaluated = args.stream().map(a -> requireType(BigDecimal.class, eval(a)))
-                    .collect(Collectors.toList());
-            if (evaluated.isEmpty()) {
+        builtin("+", new Builtin() {
+
+            @Override
+            Object apply0() {
                 return BigDecimal.ZERO;
-            } else {
-                BigDecimal num = evaluated.get(0);
-                for (int i = 1; i < evaluated.size(); i++) {
-                    num = num.add(evaluated.get(i));
-                }
-                return num;
-            }*/
+            }
 
-            List<Object> evaluated = args.stream().map(this::eval).collect(Collectors.toList());
-            BigDecimal result = BigDecimal.ZERO;
-            for (Object obj : evaluated) {
-                result = result.add(requireType(BigDecimal.class, obj));
+            @Override
+            Object apply1(Ast first) {
+                return BigDecimal.ZERO.add(requireType(BigDecimal.class, eval(first)));
             }
-            return result;
+
+            @Override
+            Object apply2(Ast first, Ast second) {
+                Object left = eval(first);
+                Object right = eval(second);
+                return BigDecimal.ZERO.add(requireType(BigDecimal.class, left))
+                        .add(requireType(BigDecimal.class, right));
+            }
+
+            @Override
+            Object applyN(List<Ast> args) {
+                int base = operandCount;
+                try {
+                    pushOperands(args);
+                    BigDecimal result = BigDecimal.ZERO;
+                    for (int i = base; i < operandCount; i++) {
+                        result = result.add(requireType(BigDecimal.class, operands[i]));
+                    }
+                    return result;
+                } finally {
+                    popOperands(base);
+                }
+            }
+
         });
 
-        scope.define("/", (Function<List<Ast>, Object>) args -> {
-            List<BigDecimal> evaluated = args.stream().map(a -> requireType(BigDecimal.class, eval(a)))
-                    .collect(Collectors.toList());
-            if (evaluated.isEmpty()) {
+        builtin("/", new Builtin() {
+
+            @Override
+            Object apply0() {
                 throw new EvalException("Empty Arguments for divide function");
-            } else if (evaluated.size()== 1){
-                BigDecimal num = BigDecimal.ONE.divide(evaluated.get(0), RoundingMode.HALF_EVEN);
-                return num;
-            } else {
-                BigDecimal num = evaluated.get(0);
-                int maxscale = num.scale();
-                for (int i = 1; i < evaluated.size(); i++) {
-                    maxscale = Math.max(evaluated.get(i).scale(), maxscale);
-                    num = num.divide(evaluated.get(i), maxscale, RoundingMode.HALF_EVEN);
+            }
+
+            @Override
+            Object apply1(Ast first) {
+                return BigDecimal.ONE.divide(evalNumber(first), RoundingMode.HALF_EVEN);
+            }
+
+            @Override
+            Object apply2(Ast first, Ast second) {
+                BigDecimal left = evalNumber(first);
+                BigDecimal right = evalNumber(second);
+                return left.divide(right, Math.max(right.scale(), left.scale()), RoundingMode.HALF_EVEN);
+            }
+
+            /**
+             * Every argument is evaluated and type checked before dividing,
+             * so an argument after a zero is still evaluated.
+             */
+            @Override
+            Object applyN(List<Ast> args) {
+                int base = operandCount;
+                try {
+                    for (Ast arg : args) {
+                        pushOperand(evalNumber(arg));
+                    }
+                    BigDecimal num = (BigDecimal) operands[base];
+                    int maxscale = num.scale();
+                    for (int i = base + 1; i < operandCount; i++) {
+                        BigDecimal next = (BigDecimal) operands[i];
+                        maxscale = Math.max(next.scale(), maxscale);
+                        num = num.divide(next, maxscale, RoundingMode.HALF_EVEN);
+                    }
+                    return num;
+                } finally {
+                    popOperands(base);
                 }
-                return num;
             }
 
         });
-        scope.define("*", (Function<List<Ast>, Object>) args -> {
-            List<BigDecimal> evaluated = args.stream().map(a -> requireType(BigDecimal.class, eval(a)))
-                    .collect(Collectors.toList());
-            if (evaluated.isEmpty()) {
+        builtin("*", new Builtin() {
+
+            @Override
+            Object apply0() {
                 return BigDecimal.ONE;
-            } else {
+            }
+
+            @Override
+            Object apply1(Ast first) {
+                return BigDecimal.ONE.multiply(evalNumber(first));
+            }
+
+            @Override
+            Object apply2(Ast first, Ast second) {
+                BigDecimal left = evalNumber(first);
+                return BigDecimal.ONE.multiply(left).multiply(evalNumber(second));
+            }
+
+            @Override
+            Object applyN(List<Ast> args) {
                 BigDecimal num = BigDecimal.ONE;
-                for (int i = 0; i < evaluated.size(); i++) {
-                    num = num.multiply(evaluated.get(i));
+                for (Ast arg : args) {
+                    num = num.multiply(evalNumber(arg));
                 }
                 return num;
             }
+
         });
-        scope.define("true", new Boolean(true));
-        scope.define("false", new Boolean(false));
-        scope.define("equals?", (Function<List<Ast>, Object>) args -> {
+        builtin("true", new Boolean(true));
+        builtin("false", new Boolean(false));
+        builtin("equals?", (Function<List<Ast>, Object>) args -> {
             if (args.size() != 2) {
                 throw new EvalException("Can only have 2 arguments fore equals term name");
             }
@@ -175,7 +373,7 @@ public final class Interpreter {
             Object arg2 = eval(args.get(1));
             return new Boolean(Objects.deepEquals(arg1,arg2));
         });
-        scope.define("not", (Function<List<Ast>, Object>) args -> {
+        builtin("not", (Function<List<Ast>, Object>) args -> {
             if (args.size() != 1) {
                 throw new EvalException("Can only have 2 arguments fore equals term name");
             }
@@ -190,7 +388,7 @@ public final class Interpreter {
                 return new Boolean(true);
             }
         });
-        scope.define("and", (Function<List<Ast>, Object>) args -> {
+        builtin("and", (Function<List<Ast>, Object>) args -> {
             for (Ast node : args) {
                 if (!(eval(node) instanceof Boolean)) {
                     return new Boolean(false);
@@ -203,7 +401,7 @@ public final class Interpreter {
             }
             return new Boolean(true);
         });
-        scope.define("or", (Function<List<Ast>, Object>) args -> {
+        builtin("or", (Function<List<Ast>, Object>) args -> {
             for (Ast node : args) {
                 if (!(eval(node) instanceof Boolean)) {
                     throw new EvalException("Need a boolean value to evaluate or statement");
@@ -217,14 +415,14 @@ public final class Interpreter {
             return false;
         });
 
-        scope.define("list", (Function<List<Ast>, Object>) args -> {
+        builtin("list", (Function<List<Ast>, Object>) args -> {
             List<Object> values = new LinkedList<>();
             for (Ast node : args) {
                 values.add(eval(node));
             }
             return values;
         });
-        scope.define("range", (Function<List<Ast>, Object>) args -> {
+        builtin("range", (Function<List<Ast>, Object>) args -> {
 
             if (args.size() == 0) {
                 throw new EvalException(("Expected values to be there"));
@@ -245,14 +443,10 @@ public final class Interpreter {
             if (last.compareTo(first) < 0) {
                 throw new EvalException("Expected range to be increasing");
             }
-            List<BigDecimal> values = new LinkedList<>();
             //TODO CAN WE HAVE A LIST OF STRINGS????
-            for (BigDecimal i = first; i.compareTo(last) < 0; i = i.add(BigDecimal.ONE)) {
-                values.add(i);
-            }
-            return values;
+            return Range.of(first, last);
         });
-        scope.define("set!", (Function<List<Ast>, Object>) args -> {
+        builtin("set!", (Function<List<Ast>, Object>) args -> {
             //TODO DON'T KNOW IF THIS IS RIGHT
 
             if (args.size() != 2) {
@@ -261,51 +455,40 @@ public final class Interpreter {
             if (!(args.get(0) instanceof Ast.Identifier)) {
                 throw new EvalException("Need Identifier for argument");
             }
-            this.scope.set(requireType(Ast.Identifier.class, args.get(0)).getName(), eval(args.get(1)));
+            this.scope.set(requireType(Ast.Identifier.class, args.get(0)).getSymbol(), eval(args.get(1)));
             return VOID;
         });
-        scope.define("define", (Function<List<Ast>, Object>) args -> {
+        builtin("define", (Function<List<Ast>, Object>) args -> {
             if(args.size() != 2) {
                 throw new EvalException("Invalid number of arguments");
             }
             if (args.get(0) instanceof Ast.Identifier) {
-                scope.define(((Ast.Identifier) args.get(0)).getName(), eval(args.get(1)));
+                scope.define(((Ast.Identifier) args.get(0)).getSymbol(), eval(args.get(1)));
             } else if (args.get(0) instanceof Ast.Term) {
-                String name = ((Ast.Term) args.get(0)).getName();
-                List<String> params = ((Ast.Term) args.get(0)).getArgs().stream()
-                        .map(a -> requireType(Ast.Identifier.class, a).getName())
+                Symbol name = ((Ast.Term) args.get(0)).getSymbol();
+                List<Symbol> params = ((Ast.Term) args.get(0)).getArgs().stream()
+                        .map(a -> requireType(Ast.Identifier.class, a).getSymbol())
                         .collect(Collectors.toList());
-                Scope parent = scope;
-                scope.define(name, (Function<List<Ast>, Object>) arguments -> {
-                    List<Object> evaluated = arguments.stream().map(this::eval).collect(Collectors.toList());
-                    if (params.size() != evaluated.size()) {
-                        throw new EvalException("Invalid number of arguments");
-                    }
-                    Scope current = scope;
-                    scope = new Scope(parent);
-                    for (int i = 0; i < params.size(); i++) {
-                        scope.define(params.get(i), evaluated.get(i));
-                    }
-                    Object result = eval(args.get(1));
-                    scope = current;
-                    return result;
-                });
+                scope.define(name, new TieredFunction(this, (Ast.Term) args.get(0), params, args.get(1), scope));
             } else {
                 throw new EvalException("Invalid first arguments");
             }
             return VOID;
         });
 
-        scope.define("while", (Function<List<Ast>, Object>) args -> {
+        builtin("while", (Function<List<Ast>, Object>) args -> {
             if ( args.size() != 2 ) {
                 throw new EvalException( "Expected 2 arguments, received " + args.size() + "." );
             }
             while ( requireType( Boolean.class, eval( args.get(0) ) ) ) {
                 eval( args.get(1) );
+                if (active != null) {
+                    active.backEdge();
+                }
             }
             return VOID;
         });
-        scope.define("for", (Function<List<Ast>, Object>) args -> {
+        builtin("for", (Function<List<Ast>, Object>) args -> {
             Scope oldScope = this.scope;
             this.scope = new Scope(oldScope);
             //TODO Maybe buggy we'll see
@@ -314,12 +497,12 @@ public final class Interpreter {
             }
 
             Ast.Term value = requireType(Ast.Term.class, args.get(0)); // gets the variable e.g i
-            String identifierName = value.getName();
+            Symbol identifierName = value.getSymbol();
             Object potential_list = eval(value.getArgs().get(0));
-            if (!(potential_list instanceof LinkedList)) {
+            if (!Range.isIterable(potential_list)) {
                 throw new EvalException("Need a linked list for the for loop");
             }
-            List<Object> true_list = (LinkedList) potential_list;
+            List<Object> true_list = (List) potential_list;
             if (true_list.size() == 0) {
                 return VOID;
             }
@@ -327,18 +510,24 @@ public final class Interpreter {
             for (Object object_val : true_list) {
                 this.scope.set(identifierName, object_val);
                 eval(args.get(1));
+                if (active != null) {
+                    active.backEdge();
+                }
             }
             this.scope = this.scope.getParent();
             return VOID;
         });
-        scope.define("do", (Function<List<Ast>, Object>) args -> {
+        builtin("do", (Function<List<Ast>, Object>) args -> {
             //TODO DEF NEED
             scope = new Scope(scope);
-            List<Object> evaluated = args.stream().map(this::eval).collect(Collectors.toList());
+            Object result = VOID;
+            for (Ast arg : args) {
+                result = eval(arg);
+            }
             scope = scope.getParent();
-            return !evaluated.isEmpty() ? evaluated.get(evaluated.size()-1) : VOID;
+            return result;
         });
-        scope.define("<", (Function<List<Ast>, Object>) args->
+        builtin("<", (Function<List<Ast>, Object>) args->
         {
 
             int size = args.size();
@@ -346,7 +535,7 @@ public final class Interpreter {
             {
                 return true;
             }
-            if(args.get(0) instanceof Ast.Identifier && requireType(Ast.Identifier.class, args.get(0)).getName().matches("true|false|equals?|not|and|or|<|<=|>|>=|\\+|-|/|\\*|define|list|range|set!|do|for|while|")){
+            if(args.get(0) instanceof Ast.Identifier && KEYWORDS.contains(requireType(Ast.Identifier.class, args.get(0)).getSymbol())){
                 throw new EvalException("Identifier should not be keyword");
             }
             if (size == 1) {
@@ -375,7 +564,7 @@ public final class Interpreter {
             }
             return (shortcircuit)? new Boolean(false) : new Boolean(true);
         });
-        scope.define(">", (Function<List<Ast>, Object>)args->
+        builtin(">", (Function<List<Ast>, Object>)args->
         {
 
             int size = args.size();
@@ -383,7 +572,7 @@ public final class Interpreter {
             {
                 return true;
             }
-            if(args.get(0) instanceof Ast.Identifier && requireType(Ast.Identifier.class, args.get(0)).getName().matches("true|false|equals?|not|and|or|<|<=|>|>=|\\+|-|/|\\*|define|list|range|set!|do|for|while|")){
+            if(args.get(0) instanceof Ast.Identifier && KEYWORDS.contains(requireType(Ast.Identifier.class, args.get(0)).getSymbol())){
                 throw new EvalException("Identifier should not be keyword");
             }
             if (size == 1) {
@@ -412,7 +601,7 @@ public final class Interpreter {
             }
             return (shortcircuit)? new Boolean(false) : new Boolean(true);
         });
-        scope.define("<=", (Function<List<Ast>, Object>)args->
+        builtin("<=", (Function<List<Ast>, Object>)args->
         {
 
             int size = args.size();
@@ -421,7 +610,7 @@ public final class Interpreter {
             {
                 return true;
             }
-            if(args.get(0) instanceof Ast.Identifier && requireType(Ast.Identifier.class, args.get(0)).getName().matches("true|false|equals?|not|and|or|<|<=|>|>=|\\+|-|/|\\*|define|list|range|set!|do|for|while|")){
+            if(args.get(0) instanceof Ast.Identifier && KEYWORDS.contains(requireType(Ast.Identifier.class, args.get(0)).getSymbol())){
                 throw new EvalException("Identifier should not be keyword");
             }
             if (size == 1) {
@@ -451,14 +640,14 @@ public final class Interpreter {
             return (shortcircuit)? new Boolean(false) : new Boolean(true);
 
         });
-        scope.define(">=", (Function<List<Ast>, Object>)args->
+        builtin(">=", (Function<List<Ast>, Object>)args->
         {
             int size = args.size();
             if (size == 0)
             {
                 return true;
             }
-            if(args.get(0) instanceof Ast.Identifier && requireType(Ast.Identifier.class, args.get(0)).getName().matches("true|false|equals?|not|and|or|<|<=|>|>=|\\+|-|/|\\*|define|list|range|set!|do|for|while|")){
+            if(args.get(0) instanceof Ast.Identifier && KEYWORDS.contains(requireType(Ast.Identifier.class, args.get(0)).getSymbol())){
                 throw new EvalException("Identifier should not be keyword");
             }
             if (size == 1) {
@@ -491,6 +680,70 @@ public final class Interpreter {
         //TODO: Additional standard library functions
     }
 
+    public int getCompileThreshold() {
+        return compileThreshold;
+    }
+
+    /**
+     * Sets the number of calls and loop iterations after which a function
+     * created by {@code define} is compiled to JVM code. A threshold of 1
+     * compiles functions when they are first called, while {@link
+     * Integer#MAX_VALUE} disables compilation.
+     */
+    public void setCompileThreshold(int compileThreshold) {
+        this.compileThreshold = compileThreshold;
+    }
+
+    /**
+     * Returns the compiler for hot functions, which is only created once a
+     * function needs it.
+     */
+    JvmCompiler compiler() {
+        if (compiler == null) {
+            compiler = new JvmCompiler(this);
+        }
+        return compiler;
+    }
+
+    /**
+     * Evaluates an argument which must be a number.
+     */
+    private BigDecimal evalNumber(Ast ast) {
+        return requireType(BigDecimal.class, eval(ast));
+    }
+
+    /**
+     * Evaluates each argument onto the operand stack. The caller must release
+     * them with {@link #popOperands(int)} and the previous operand count,
+     * even if evaluating an argument fails.
+     */
+    private void pushOperands(List<Ast> args) {
+        for (Ast arg : args) {
+            pushOperand(eval(arg));
+        }
+    }
+
+    private void pushOperand(Object value) {
+        if (operandCount == operands.length) {
+            operands = Arrays.copyOf(operands, operands.length * 2);
+        }
+        operands[operandCount++] = value;
+    }
+
+    private void popOperands(int base) {
+        Arrays.fill(operands, base, operandCount, null);
+        operandCount = base;
+    }
+
+    /**
+     * Defines a standard library value in the current scope and records it as
+     * a builtin.
+     */
+    private void builtin(String name, Object value) {
+        scope.define(name, value);
+        builtins.put(name, value);
+    }
+
     /**
      * A helper function for type checking, taking in a type and an object and
      * throws an exception if the object does not have the required type.
@@ -499,7 +752,7 @@ public final class Interpreter {
      * occurs - in a real interpreter, we would have a stacktrace to provide
      * that implementation. For now, this is the simple-but-not-ideal solution.
      */
-    private static <T> T requireType(Class<T> type, Object value) {
+    static <T> T requireType(Class<T> type, Object value) {
         if (type.isInstance(value)) {
             return type.cast(value);
         } else {
@@ -0,0 +1,754 @@
+package plc.interpreter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Compiles the bodies of Whisp functions into JVM classes, so loops and
+ * recursive functions are compiled by the JIT like any other Java code rather
+ * than running through {@link Interpreter#eval(Ast)}.
+ *
+ * Each function becomes a subclass of {@link Body} written by {@link
+ * ClassFile} and loaded by a class loader private to the compiler. Parameters
+ * are kept in an {@code Object[]} passed to the generated method, builtins
+ * are linked while compiling as with the {@link ClosureCompiler}, and every
+ * other variable is looked up in the scope the function was defined in.
+ *
+ * Only a subset of Whisp is supported: bodies which {@code define} variables
+ * or functions, use {@code for}, or would always fail are not compiled and
+ * {@link #compile(Ast.Term, Ast, Scope)} returns {@code null}, in which case
+ * the function should be evaluated as before.
+ */
+public final class JvmCompiler {
+
+    private static final String BODY = "plc/interpreter/JvmCompiler$Body";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String VALUE = "Ljava/lang/Object;";
+    private static final String VALUES = "[Ljava/lang/Object;";
+
+    private final Interpreter interpreter;
+    private final Loader loader = new Loader();
+    private int count = 0;
+
+    public JvmCompiler(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Compiles a function with the given signature (as in {@code define}) and
+     * body, which will be called with {@code parent} as its enclosing scope.
+     * Returns {@code null} if the function cannot be compiled.
+     */
+    public Function<List<Ast>, Object> compile(Ast.Term signature, Ast body, Scope parent) {
+        String[] params = new String[signature.getArgs().size()];
+        for (int i = 0; i < params.length; i++) {
+            Ast param = signature.getArgs().get(i);
+            if (!(param instanceof Ast.Identifier) || Arrays.asList(params).contains(((Ast.Identifier) param).getName())) {
+                return null;
+            }
+            params[i] = ((Ast.Identifier) param).getName();
+        }
+        try {
+            //Definitions in the enclosing scopes must update the version so a
+            //builtin shadowed after compiling is noticed by isCurrent.
+            parent.observe();
+            Linker linker = new Linker(interpreter, parent, body);
+            Generator generator = new Generator(signature.getName(), params, linker);
+            Body instance = generator.generate(body);
+            instance.interpreter = interpreter;
+            instance.parent = parent;
+            instance.params = params;
+            instance.constants = generator.constants.toArray();
+            return new Compiled(interpreter, params.length, instance, linker);
+        } catch (Unsupported | IllegalStateException | LinkageError | ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Calls a compiled or {@link TieredFunction} with evaluated arguments,
+     * running any {@link TailCall}s it returns until there is a result.
+     */
+    static Object call(Object function, Object[] arguments) {
+        Object result = step(function, arguments);
+        while (result instanceof TailCall) {
+            TailCall call = (TailCall) result;
+            result = step(call.function, call.arguments);
+        }
+        return result;
+    }
+
+    /**
+     * Runs the body of a compiled or {@link TieredFunction}, which may return
+     * a {@link TailCall}.
+     */
+    static Object step(Object function, Object[] arguments) {
+        if (function instanceof TieredFunction) {
+            return ((TieredFunction) function).step(arguments);
+        }
+        return ((Compiled) function).step(arguments);
+    }
+
+    /**
+     * Returns true if every builtin linked into a compiled function still has
+     * the same binding as when it was compiled, so the function can be run.
+     */
+    static boolean isCurrent(Function<List<Ast>, Object> function) {
+        return ((Compiled) function).isCurrent();
+    }
+
+    /**
+     * Thrown while generating code for a form which is not supported.
+     */
+    private static final class Unsupported extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private Unsupported() {
+            super(null, null, false, false);
+        }
+
+    }
+
+    private static final class Loader extends ClassLoader {
+
+        private Loader() {
+            super(JvmCompiler.class.getClassLoader());
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+    }
+
+    /**
+     * A compiled function. Calls between compiled functions pass the
+     * evaluated arguments directly to the body, and calls in tail position
+     * return a {@link TailCall}.
+     */
+    private static final class Compiled implements Function<List<Ast>, Object> {
+
+        private final Interpreter interpreter;
+        private final int params;
+        private final Body body;
+        private final Linker linker;
+        private long version;
+
+        private Compiled(Interpreter interpreter, int params, Body body, Linker linker) {
+            this.interpreter = interpreter;
+            this.params = params;
+            this.body = body;
+            this.linker = linker;
+            this.version = body.parent.version();
+        }
+
+        @Override
+        public Object apply(List<Ast> arguments) {
+            Object[] evaluated = new Object[arguments.size()];
+            for (int i = 0; i < evaluated.length; i++) {
+                evaluated[i] = interpreter.eval(arguments.get(i));
+            }
+            return call(this, evaluated);
+        }
+
+        private boolean isCurrent() {
+            if (version != body.parent.version()) {
+                if (!linker.isCurrent()) {
+                    return false;
+                }
+                version = body.parent.version();
+            }
+            return true;
+        }
+
+        private Object step(Object[] arguments) {
+            if (params != arguments.length) {
+                throw new EvalException("Invalid number of arguments");
+            }
+            return body.execute(arguments);
+        }
+
+    }
+
+    /**
+     * The superclass of generated function bodies. Generated code calls the
+     * protected helpers below for anything more than loading and storing
+     * values, which keeps the generated classes small.
+     */
+    public abstract static class Body {
+
+        private Interpreter interpreter;
+        private Scope parent;
+        private String[] params;
+        protected Object[] constants;
+
+        protected Body() {}
+
+        /**
+         * Executes the body with the given values for the parameters, which
+         * are updated by {@code set!}. The result may be a {@link TailCall}.
+         */
+        protected abstract Object execute(Object[] locals);
+
+        protected final Object lookup(String name) {
+            return parent.lookup(name);
+        }
+
+        protected final Object assign(String name, Object value) {
+            parent.set(name, value);
+            return Interpreter.VOID;
+        }
+
+        protected final Object print(Object[] values) {
+            for (Object value : values) {
+                interpreter.out.print(value);
+            }
+            interpreter.out.println();
+            return Interpreter.VOID;
+        }
+
+        /**
+         * Applies a function which was not compiled to the original ASTs, with
+         * the parameters copied into a scope for the interpreter.
+         */
+        @SuppressWarnings("unchecked")
+        protected final Object apply(Object function, Object[] locals, Object args) {
+            Scope bridge = new Scope(parent);
+            for (int i = 0; i < params.length; i++) {
+                bridge.define(params[i], locals[i]);
+            }
+            Scope current = interpreter.scope;
+            interpreter.scope = bridge;
+            try {
+                return ((Function<List<Ast>, Object>) function).apply((List<Ast>) args);
+            } finally {
+                interpreter.scope = current;
+                for (int i = 0; i < params.length; i++) {
+                    locals[i] = bridge.lookup(params[i]);
+                }
+            }
+        }
+
+        protected static Object function(Object value) {
+            return Interpreter.requireType(Function.class, value);
+        }
+
+        /**
+         * Returns true if the function can be called with evaluated arguments
+         * by {@link #invoke(Object, Object[])}.
+         */
+        protected static boolean compiled(Object function) {
+            return function instanceof Compiled || function instanceof TieredFunction;
+        }
+
+        protected static Object invoke(Object function, Object[] arguments) {
+            return call(function, arguments);
+        }
+
+        protected static Object tail(Object function, Object[] arguments) {
+            return new TailCall(function, arguments);
+        }
+
+        protected static Object number(Object value) {
+            return Interpreter.requireType(BigDecimal.class, value);
+        }
+
+        protected static Object add(Object left, Object right) {
+            return BigDecimal.ZERO.add((BigDecimal) number(left)).add((BigDecimal) number(right));
+        }
+
+        protected static Object add(Object[] values) {
+            BigDecimal result = BigDecimal.ZERO;
+            for (Object value : values) {
+                result = result.add((BigDecimal) number(value));
+            }
+            return result;
+        }
+
+        protected static Object subtract(Object left, Object right) {
+            return ((BigDecimal) left).subtract((BigDecimal) right);
+        }
+
+        protected static Object negate(Object value) {
+            return ((BigDecimal) value).negate();
+        }
+
+        protected static Object multiply(Object left, Object right) {
+            return ((BigDecimal) left).multiply((BigDecimal) right);
+        }
+
+        protected static Object divide(Object[] values) {
+            if (values.length == 1) {
+                return BigDecimal.ONE.divide((BigDecimal) values[0], RoundingMode.HALF_EVEN);
+            }
+            BigDecimal result = (BigDecimal) values[0];
+            int scale = result.scale();
+            for (int i = 1; i < values.length; i++) {
+                scale = Math.max(((BigDecimal) values[i]).scale(), scale);
+                result = result.divide((BigDecimal) values[i], scale, RoundingMode.HALF_EVEN);
+            }
+            return result;
+        }
+
+        /**
+         * Compares a pair of adjacent arguments of a comparison, returning
+         * the result of the pairs so far and this one.
+         */
+        protected static Object compare(Object result, Object left, Object right, int comparison) {
+            int compared;
+            if (left instanceof BigDecimal && right instanceof BigDecimal) {
+                compared = ((BigDecimal) left).compareTo((BigDecimal) right);
+            } else if (left instanceof String && right instanceof String) {
+                compared = ((String) left).compareTo((String) right);
+            } else {
+                throw new EvalException("values have to be of same type");
+            }
+            switch (comparison) {
+                case Bytecode.LESS: return (Boolean) result && compared < 0;
+                case Bytecode.GREATER: return (Boolean) result && compared > 0;
+                case Bytecode.LESS_EQUAL: return (Boolean) result && compared <= 0;
+                default: return (Boolean) result && compared >= 0;
+            }
+        }
+
+        protected static Object equal(Object left, Object right) {
+            return Objects.deepEquals(left, right);
+        }
+
+        protected static Object not(Object value) {
+            if (!(value instanceof Boolean)) {
+                throw new EvalException("Argument has to be of type boolean");
+            }
+            return !(Boolean) value;
+        }
+
+        protected static boolean and(Object value) {
+            return value instanceof Boolean;
+        }
+
+        protected static void or(Object value) {
+            if (!(value instanceof Boolean)) {
+                throw new EvalException("Need a boolean value to evaluate or statement");
+            }
+        }
+
+        /**
+         * Tests the second evaluation of an argument of {@code and} / {@code
+         * or}, which the interpreter casts without checking its type again.
+         */
+        protected static boolean test(Object value) {
+            return (Boolean) value;
+        }
+
+        protected static boolean condition(Object value) {
+            return Interpreter.requireType(Boolean.class, value);
+        }
+
+        protected static Object list(Object[] values) {
+            return new LinkedList<>(Arrays.asList(values));
+        }
+
+        protected static Object range(Object bounds) {
+            return Range.of(((BigDecimal[]) bounds)[0], ((BigDecimal[]) bounds)[1]);
+        }
+
+    }
+
+    /**
+     * Generates the class for a single function body. Every expression leaves
+     * exactly one value on the operand stack.
+     */
+    private final class Generator {
+
+        private final String name;
+        private final List<String> params;
+        private final Linker linker;
+        private final List<Object> constants = new ArrayList<>();
+        private ClassFile.Code code;
+
+        private Generator(String name, String[] params, Linker linker) {
+            this.name = "plc/interpreter/jvm/" + name.replaceAll("[^A-Za-z0-9_]", "_") + "$" + count++;
+            this.params = Arrays.asList(params);
+            this.linker = linker;
+        }
+
+        private Body generate(Ast body) throws ReflectiveOperationException {
+            requireConstant(name);
+            ClassFile file = new ClassFile(name, BODY);
+            ClassFile.Code init = file.method(ClassFile.ACC_PUBLIC, "<init>", "()V", 1);
+            init.aload(0).invoke(ClassFile.INVOKESPECIAL, BODY, "<init>", "()V").op(ClassFile.RETURN, 0);
+            code = file.method(ClassFile.ACC_PUBLIC, "execute", "(" + VALUES + ")" + VALUE, 2);
+            generateAst(body, true);
+            code.op(ClassFile.ARETURN, -1);
+            Class<?> type = loader.define(name.replace('/', '.'), file.toByteArray());
+            return (Body) type.getDeclaredConstructor().newInstance();
+        }
+
+        private void generateAst(Ast ast) {
+            generateAst(ast, false);
+        }
+
+        /**
+         * Generates an AST, which is in tail position if its value is the
+         * result of the function.
+         */
+        private void generateAst(Ast ast, boolean tail) {
+            if (ast instanceof Ast.Term) {
+                generateTerm((Ast.Term) ast, tail);
+            } else if (ast instanceof Ast.Identifier) {
+                String name = ((Ast.Identifier) ast).getName();
+                if (params.contains(name)) {
+                    code.aload(1).iconst(params.indexOf(name)).op(ClassFile.AALOAD, -1);
+                } else if ((name.equals("true") || name.equals("false")) && linker.isBuiltin(name)) {
+                    code.getstatic("java/lang/Boolean", name.toUpperCase(), "Ljava/lang/Boolean;");
+                } else {
+                    code.aload(0);
+                    ldc(name);
+                    helper("lookup", "(Ljava/lang/String;)" + VALUE);
+                }
+            } else if (ast instanceof Ast.NumberLiteral) {
+                constant(((Ast.NumberLiteral) ast).getValue());
+            } else if (ast instanceof Ast.StringLiteral) {
+                ldc(((Ast.StringLiteral) ast).getValue());
+            } else {
+                throw new AssertionError(ast.getClass());
+            }
+        }
+
+        private void generateTerm(Ast.Term ast, boolean tail) {
+            String name = ast.getName();
+            List<Ast> args = ast.getArgs();
+            if (params.contains(name) || !linker.isBuiltin(name)) {
+                generateCall(ast, tail);
+                return;
+            }
+            switch (name) {
+                case "print":
+                    code.aload(0);
+                    generateArray(args, false);
+                    helper("print", "(" + VALUES + ")" + VALUE);
+                    break;
+                case "+":
+                    if (args.size() == 2) {
+                        generateAst(args.get(0));
+                        generateAst(args.get(1));
+                        function("add", 2);
+                    } else {
+                        generateArray(args, false);
+                        function("add", "(" + VALUES + ")" + VALUE);
+                    }
+                    break;
+                case "-":
+                    generateSubtract(args);
+                    break;
+                case "*":
+                    code.getstatic("java/math/BigDecimal", "ONE", "Ljava/math/BigDecimal;");
+                    for (Ast arg : args) {
+                        generateNumber(arg);
+                        function("multiply", 2);
+                    }
+                    break;
+                case "/":
+                    if (args.isEmpty()) {
+                        throw new Unsupported();
+                    }
+                    generateArray(args, true);
+                    function("divide", "(" + VALUES + ")" + VALUE);
+                    break;
+                case "equals?":
+                    if (args.size() != 2) {
+                        throw new Unsupported();
+                    }
+                    generateAst(args.get(0));
+                    generateAst(args.get(1));
+                    function("equal", 2);
+                    break;
+                case "not":
+                    if (args.size() != 1) {
+                        throw new Unsupported();
+                    }
+                    generateAst(args.get(0));
+                    function("not", 1);
+                    break;
+                case "and":
+                    generateLogic(args, false);
+                    break;
+                case "or":
+                    generateLogic(args, true);
+                    break;
+                case "list":
+                    generateArray(args, false);
+                    function("list", "(" + VALUES + ")" + VALUE);
+                    break;
+                case "range":
+                    generateRange(args);
+                    break;
+                case "set!":
+                    generateSet(args);
+                    break;
+                case "while":
+                    generateWhile(args);
+                    break;
+                case "do":
+                    generateSequence(args, tail);
+                    break;
+                case "<":
+                    generateComparison(args, Bytecode.LESS);
+                    break;
+                case ">":
+                    generateComparison(args, Bytecode.GREATER);
+                    break;
+                case "<=":
+                    generateComparison(args, Bytecode.LESS_EQUAL);
+                    break;
+                case ">=":
+                    generateComparison(args, Bytecode.GREATER_EQUAL);
+                    break;
+                case "define":
+                case "for":
+                    throw new Unsupported();
+                default:
+                    generateCall(ast, tail);
+            }
+        }
+
+        /**
+         * Generates a call to a function which is looked up when it runs.
+         * Compiled functions receive the evaluated arguments (as a {@link
+         * TailCall} in tail position), while anything else is applied to the
+         * original ASTs.
+         */
+        private void generateCall(Ast.Term ast, boolean tail) {
+            ClassFile.Label generic = new ClassFile.Label();
+            ClassFile.Label end = new ClassFile.Label();
+            generateAst(new Ast.Identifier(ast.getName()));
+            function("function", 1);
+            code.op(ClassFile.DUP, 1);
+            function("compiled", "(" + VALUE + ")Z");
+            code.jump(ClassFile.IFEQ, generic);
+            generateArray(ast.getArgs(), false);
+            function(tail ? "tail" : "invoke", "(" + VALUE + VALUES + ")" + VALUE);
+            code.jump(ClassFile.GOTO, end);
+            code.mark(generic);
+            code.aload(0).op(ClassFile.SWAP, 0).aload(1);
+            constant(ast.getArgs());
+            helper("apply", "(" + VALUE + VALUES + VALUE + ")" + VALUE);
+            code.mark(end);
+        }
+
+        private void generateSequence(List<Ast> asts, boolean tail) {
+            if (asts.isEmpty()) {
+                code.getstatic("plc/interpreter/Interpreter", "VOID", VALUE);
+            }
+            for (int i = 0; i < asts.size(); i++) {
+                if (i > 0) {
+                    code.op(ClassFile.POP, -1);
+                }
+                generateAst(asts.get(i), tail && i == asts.size() - 1);
+            }
+        }
+
+        /**
+         * Generates a new array holding the values of the ASTs, checking that
+         * each is a number as it is evaluated if required.
+         */
+        private void generateArray(List<Ast> asts, boolean numbers) {
+            code.iconst(asts.size()).anewarray(OBJECT);
+            for (int i = 0; i < asts.size(); i++) {
+                code.op(ClassFile.DUP, 1).iconst(i);
+                if (numbers) {
+                    generateNumber(asts.get(i));
+                } else {
+                    generateAst(asts.get(i));
+                }
+                code.op(ClassFile.AASTORE, -3);
+            }
+        }
+
+        private void generateNumber(Ast ast) {
+            generateAst(ast);
+            function("number", 1);
+        }
+
+        private void generateSubtract(List<Ast> args) {
+            if (args.isEmpty()) {
+                throw new Unsupported();
+            }
+            generateNumber(args.get(0));
+            if (args.size() == 1) {
+                function("negate", 1);
+            }
+            for (Ast arg : args.subList(1, args.size())) {
+                generateNumber(arg);
+                function("subtract", 2);
+            }
+        }
+
+        /**
+         * Generates {@code and} / {@code or}, which jump to push the
+         * short-circuit result as soon as an argument decides it. As in the
+         * interpreter, each argument is evaluated once to check that it is a
+         * boolean and again for the value which is tested.
+         */
+        private void generateLogic(List<Ast> args, boolean shortCircuit) {
+            ClassFile.Label decided = new ClassFile.Label();
+            ClassFile.Label end = new ClassFile.Label();
+            for (Ast arg : args) {
+                generateAst(arg);
+                if (shortCircuit) {
+                    function("or", "(" + VALUE + ")V");
+                } else {
+                    function("and", "(" + VALUE + ")Z");
+                    code.jump(ClassFile.IFEQ, decided);
+                }
+                generateAst(arg);
+                function("test", "(" + VALUE + ")Z");
+                code.jump(shortCircuit ? ClassFile.IFNE : ClassFile.IFEQ, decided);
+            }
+            bool(!shortCircuit);
+            code.jump(ClassFile.GOTO, end);
+            code.mark(decided);
+            bool(shortCircuit);
+            code.mark(end);
+        }
+
+        private void generateRange(List<Ast> args) {
+            if (args.size() != 2) {
+                throw new Unsupported();
+            }
+            for (Ast arg : args) {
+                if (!(arg instanceof Ast.NumberLiteral) || ((Ast.NumberLiteral) arg).getValue().scale() > 0) {
+                    throw new Unsupported();
+                }
+            }
+            BigDecimal first = ((Ast.NumberLiteral) args.get(0)).getValue();
+            BigDecimal last = ((Ast.NumberLiteral) args.get(1)).getValue();
+            if (last.compareTo(first) < 0) {
+                throw new Unsupported();
+            }
+            constant(new BigDecimal[] {first, last});
+            function("range", 1);
+        }
+
+        private void generateSet(List<Ast> args) {
+            if (args.size() != 2 || !(args.get(0) instanceof Ast.Identifier)) {
+                throw new Unsupported();
+            }
+            String name = ((Ast.Identifier) args.get(0)).getName();
+            if (params.contains(name)) {
+                code.aload(1).iconst(params.indexOf(name));
+                generateAst(args.get(1));
+                code.op(ClassFile.AASTORE, -3);
+                code.getstatic("plc/interpreter/Interpreter", "VOID", VALUE);
+            } else {
+                code.aload(0);
+                ldc(name);
+                generateAst(args.get(1));
+                helper("assign", "(Ljava/lang/String;" + VALUE + ")" + VALUE);
+            }
+        }
+
+        private void generateWhile(List<Ast> args) {
+            if (args.size() != 2) {
+                throw new Unsupported();
+            }
+            ClassFile.Label start = new ClassFile.Label();
+            ClassFile.Label end = new ClassFile.Label();
+            code.mark(start);
+            generateAst(args.get(0));
+            function("condition", "(" + VALUE + ")Z");
+            code.jump(ClassFile.IFEQ, end);
+            generateAst(args.get(1));
+            code.op(ClassFile.POP, -1);
+            code.jump(ClassFile.GOTO, start);
+            code.mark(end);
+            code.getstatic("plc/interpreter/Interpreter", "VOID", VALUE);
+        }
+
+        /**
+         * Generates a comparison. As in the interpreter, both arguments of
+         * each pair are evaluated (so the middle ones twice) and compared
+         * before the next pair, keeping the result so far on the stack.
+         */
+        private void generateComparison(List<Ast> args, int comparison) {
+            if (args.isEmpty()) {
+                bool(true);
+            } else if (Linker.isKeyword(args.get(0))) {
+                throw new Unsupported();
+            } else if (args.size() == 1) {
+                generateAst(args.get(0));
+                code.op(ClassFile.POP, -1);
+                bool(true);
+            } else {
+                bool(true);
+                for (int i = 1; i < args.size(); i++) {
+                    generateAst(args.get(i - 1));
+                    generateAst(args.get(i));
+                    code.iconst(comparison);
+                    function("compare", "(" + VALUE + VALUE + VALUE + "I)" + VALUE);
+                }
+            }
+        }
+
+        private void ldc(String value) {
+            requireConstant(value);
+            code.ldc(value);
+        }
+
+        /**
+         * Throws {@link Unsupported} if the string is longer than the 65535
+         * bytes of modified UTF-8 a class file constant can hold, so the
+         * function is interpreted instead.
+         */
+        private void requireConstant(String value) {
+            int length = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                length += c != 0 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+            }
+            if (length > 65535) {
+                throw new Unsupported();
+            }
+        }
+
+        private void bool(boolean value) {
+            code.getstatic("java/lang/Boolean", value ? "TRUE" : "FALSE", "Ljava/lang/Boolean;");
+        }
+
+        /**
+         * Loads a value from the constant array of the body.
+         */
+        private void constant(Object value) {
+            code.aload(0).getfield(BODY, "constants", VALUES).iconst(constants.size()).op(ClassFile.AALOAD, -1);
+            constants.add(value);
+        }
+
+        private void helper(String method, String descriptor) {
+            code.invoke(ClassFile.INVOKEVIRTUAL, BODY, method, descriptor);
+        }
+
+        private void function(String method, String descriptor) {
+            code.invoke(ClassFile.INVOKESTATIC, BODY, method, descriptor);
+        }
+
+        /**
+         * Calls a static helper which takes the given number of values.
+         */
+        private void function(String method, int arity) {
+            StringBuilder descriptor = new StringBuilder("(");
+            for (int i = 0; i < arity; i++) {
+                descriptor.append(VALUE);
+            }
+            function(method, descriptor.append(')').append(VALUE).toString());
+        }
+
+    }
+
+}
@@ -1,9 +1,17 @@
 package plc.interpreter;
 
+import plc.scanner.Scanner;
+import plc.scanner.Source;
+import plc.scanner.TokenBuffer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -16,15 +24,28 @@ import java.util.regex.Pattern;
  * If the lexer fails to parse something (such as an unterminated string) you
  * should throw a {@link ParseException}.
  *
- * The {@link #peek(String...)} and {@link #match(String...)} functions are
- * helpers, they're not necessary but their use will make the implementation a
- * lot easier. Regex isn't the most performant way to go but it gets the job
- * done, and the focus here is on the concept.
+ * Characters are classified with the lookup tables of {@link Scanner}, which
+ * the {@link CharStream} extends. The {@link #peek(String...)} and {@link
+ * #match(String...)} functions are regex based helpers which are convenient
+ * for experimenting, but are not used to lex since compiling a pattern for
+ * every character is far too slow.
  */
 public final class Lexer {
 
+    /**
+     * The characters which may start an identifier, including a {@code .} or
+     * sign which is not followed by a digit.
+     */
+    private static final int IDENTIFIER_START = Scanner.LETTER | Scanner.UNDERSCORE | Scanner.SYMBOL
+            | Scanner.SIGN | Scanner.DOT;
+    private static final int IDENTIFIER_PART = IDENTIFIER_START | Scanner.DIGIT;
+
     final CharStream chars;
     Lexer(String input) {
+        chars = new CharStream(Source.of(input));
+    }
+
+    Lexer(Source input) {
         chars = new CharStream(input);
     }
 
@@ -35,6 +56,41 @@ public final class Lexer {
         return new Lexer(input).lex();
     }
 
+    /**
+     * Lexes the input into a {@link TokenBuffer}, which stores the tokens
+     * packed into an array and reads their literals from the input instead of
+     * copying each one into a {@link Token}.
+     */
+    public static TokenBuffer pack(String input) throws ParseException {
+        return new Lexer(input).lex(new TokenBuffer(input));
+    }
+
+    /**
+     * Lexes the UTF-8 file at the given path, which is memory-mapped. Tokens
+     * are lexed as the iterator is advanced and the characters before them
+     * are discarded, so the file is never held in memory as a whole. Errors
+     * are thrown by the iterator once they are reached.
+     */
+    public static Iterator<Token> tokens(Path path) throws IOException {
+        return new Lexer(Source.of(path, StandardCharsets.UTF_8)).tokens();
+    }
+
+    /**
+     * Lexes the UTF-8 bytes read from the channel as the iterator is
+     * advanced, in the same way as {@link #tokens(Path)}.
+     */
+    public static Iterator<Token> tokens(ReadableByteChannel channel) {
+        return new Lexer(Source.of(channel, StandardCharsets.UTF_8)).tokens();
+    }
+
+    /**
+     * Lexes the characters read from the reader as the iterator is advanced,
+     * in the same way as {@link #tokens(Path)}.
+     */
+    public static Iterator<Token> tokens(Reader reader) {
+        return new Lexer(Source.of(reader)).tokens();
+    }
+
     /**
      * Repeatedly lexes the next token using {@link #lexToken()} until the end
      * of the input is reached, returning the list of tokens lexed. This should
@@ -42,23 +98,85 @@ public final class Lexer {
      */
     List<Token> lex() throws ParseException {
         List<Token> tokens = new ArrayList<>();
-        while (chars.has(0)){
-            if (peek("\\s") || peek("[\n\r\t]")) {
-                chars.advance();
-                chars.reset();
-            }
-            else {
-                tokens.add(lexToken());
-                chars.reset();
-            }
+        for (Token token = next(); token != null; token = next()) {
+            tokens.add(token);
         }
         return tokens;
     }
 
     /**
-     * Lexes the next token. It may be helpful to have this call other methods,
-     * such as {@code lexIdentifier()} or {@code lexNumber()}, based on the next
-     * character(s).
+     * Lexes every token into the buffer, which must be over the same
+     * characters as the source of this lexer, and returns it.
+     */
+    TokenBuffer lex(TokenBuffer tokens) throws ParseException {
+        while (lexNext(tokens)) {}
+        tokens.trimToSize();
+        return tokens;
+    }
+
+    /**
+     * Lexes the tokens which start before the given index into the buffer,
+     * so part of the input can be lexed separately from the rest.
+     */
+    TokenBuffer lex(TokenBuffer tokens, int end) throws ParseException {
+        while (skipWhitespace() && chars.index < end) {
+            lexNext(tokens);
+        }
+        tokens.trimToSize();
+        return tokens;
+    }
+
+    /**
+     * Lexes the next token into the buffer, returning false at the end of the
+     * input. The parser uses this to lex only as many tokens as it reads.
+     */
+    boolean lexNext(TokenBuffer tokens) throws ParseException {
+        if (!skipWhitespace()) {
+            return false;
+        }
+        tokens.add(lexToken().ordinal(), chars.start(), chars.length);
+        chars.reset();
+        return true;
+    }
+
+    Iterator<Token> tokens() {
+        return Scanner.iterate(this::next);
+    }
+
+    /**
+     * Skips whitespace and lexes the next token, or returns null at the end of
+     * the input. The characters before the next token are released.
+     */
+    Token next() throws ParseException {
+        if (!skipWhitespace()) {
+            return null;
+        }
+        Token.Type type = lexToken();
+        Token token = new Token(type, chars.literal(), chars.start());
+        chars.reset();
+        chars.release();
+        return token;
+    }
+
+    /**
+     * Skips whitespace, releasing it, and returns true if there is a token
+     * left to lex.
+     */
+    boolean skipWhitespace() {
+        while (chars.is(0, Scanner.WHITESPACE)) {
+            chars.advance();
+            chars.reset();
+            chars.release();
+        }
+        return chars.has(0);
+    }
+
+    /**
+     * Lexes the next token and returns its type, leaving its literal as the
+     * one being built by the {@link CharStream} (see {@link
+     * CharStream#end(Token.Type)}). It may be helpful to have this call other
+     * methods, such as {@code lexIdentifier()} or {@code lexNumber()}, based on
+     * the next character(s).
      *
      * Additionally, here is an example of lexing a character literal (not used
      * in this assignment) using the peek/match methods below.
@@ -91,68 +209,59 @@ public final class Lexer {
      * }
      * </pre>
      */
-    Token lexToken() throws ParseException {
+    Token.Type lexToken() throws ParseException {
         // looks at start of each character
-        if (peek("\\s")) {
+        if (chars.is(0, Scanner.WHITESPACE)) {
             throw new ParseException("Unexpected character at ", chars.index);
         }
-        if (peek("[0-9]") || peek("[+-]", "[0-9]")) {
+        if (chars.is(0, Scanner.DIGIT) || chars.is(0, Scanner.SIGN) && chars.is(1, Scanner.DIGIT)) {
             return lexNumber();
-        }else if (peek("[A-Za-z_\\*/:!?<>=.+-]")) {
+        }else if (chars.is(0, IDENTIFIER_START)) {
             return lexIdentifier();
-        }else if (peek("\"")) {
+        }else if (chars.is(0, Scanner.QUOTE)) {
             return lexString();
         }
         chars.advance();
-        return chars.emit(Token.Type.OPERATOR);
+        return chars.end(Token.Type.OPERATOR);
     }
-    Token lexIdentifier() {
-
-        if (!peek("[A-Za-z_\\*/:!?<>=]") && !peek("\\.", "[0-9A-Za-z_+\\-*/:!?<>=]") && peek("\\+\\-", "[0-9]")) {
-            throw new ParseException("Unexpected character for Identifier: ", chars.index);
-        }
-        if (peek("\\.") && !peek("\\.", "[0-9A-Za-z_+\\-*/:!?<>.=]")) {
+    Token.Type lexIdentifier() {
+        if (chars.is(0, Scanner.DOT) && !chars.is(1, IDENTIFIER_PART)) {
             chars.advance();
-            return chars.emit(Token.Type.OPERATOR);
+            return chars.end(Token.Type.OPERATOR);
         }
         else {
-            while(peek("[0-9A-Za-z_+\\-*/:!?<>=.]")) {
-                chars.advance();
-            }
-            return chars.emit(Token.Type.IDENTIFIER);
+            chars.advanceWhile(IDENTIFIER_PART);
+            return chars.end(Token.Type.IDENTIFIER);
         }
 
     }
 
-    Token lexNumber() {
-        if (!peek("[0-9]") && !peek("[+-]")) {
+    Token.Type lexNumber() {
+        if (!chars.is(0, Scanner.DIGIT | Scanner.SIGN)) {
             throw new ParseException("Unexpected character for Number: ", chars.index);
         }
         chars.advance(); // goes past first number or first (+ -)
-        while (peek("[0-9]"))
-            chars.advance();
-        if (chars.has(0) && peek("\\.")) {
+        chars.advanceWhile(Scanner.DIGIT);
+        if (chars.is(0, Scanner.DOT)) {
             chars.advance();
-            if (peek("[0-9]")) {
-                while (peek("[0-9]")) {
-                    chars.advance();
-                }
-                return chars.emit(Token.Type.NUMBER);
+            if (chars.is(0, Scanner.DIGIT)) {
+                chars.advanceWhile(Scanner.DIGIT);
+                return chars.end(Token.Type.NUMBER);
             } else {
                 throw new ParseException("Not a number: ", chars.index);
             }
 
         }
-        return chars.emit(Token.Type.NUMBER);
+        return chars.end(Token.Type.NUMBER);
     }
 
-    Token lexString() throws ParseException {
+    Token.Type lexString() throws ParseException {
         chars.advance();
-        while (chars.has(0) && !peek("\"")) {
-            if (peek("\\\\", "[^bnrt'\"\\\\]")) {
-                throw new ParseException("Invalid Escape", chars.index);
-            }
-            else if (peek("\\\\", "[bnrt\'\"\\\\]")) {
+        while (chars.has(0) && !chars.is(0, Scanner.QUOTE)) {
+            if (chars.is(0, Scanner.BACKSLASH) && chars.has(1)) {
+                if (!chars.is(1, Scanner.ESCAPE)) {
+                    throw new ParseException("Invalid Escape", chars.index);
+                }
                 chars.advance();
             }
             chars.advance();
@@ -163,7 +272,7 @@ public final class Lexer {
         if (chars.has(0)) {
             chars.advance();
         }
-        return chars.emit(Token.Type.STRING);
+        return chars.end(Token.Type.STRING);
     }
 
     /**
@@ -202,44 +311,23 @@ public final class Lexer {
      * where in the input string the lexer currently is, and the builder
      * accumulates characters into the literal value for the next token.
      */
-    static final class CharStream {
+    static final class CharStream extends Scanner {
 
-        final String input;
-        int index = 0;
-        int length = 0;
-
-        CharStream(String input) {
-            this.input = input;
-        }
-
-        /**
-         * Returns true if there is a character at index + offset.
-         */
-        boolean has(int offset) {
-
-            return this.index + offset < this.input.length();
+        CharStream(Source input) {
+            super(input);
         }
 
         /**
          * Gets the character at index + offset.
          */
         char get(int offset) {
-            if (index + offset >= this.input.length()) {
+            if (!has(offset)) {
                 throw new UnsupportedOperationException();
             }
             return this.input.charAt(index + offset);
 
         }
 
-        /**
-         * Advances to the next character, incrementing the current index and
-         * length of the literal being built.
-         */
-        void advance() {
-            this.index += 1;
-            this.length += 1;
-        }
-
         /**
          * Resets the length to zero, skipping any consumed characters.
          */
@@ -248,15 +336,24 @@ public final class Lexer {
         }
 
         /**
-         * Returns a token of the given type with the built literal and resets
-         * the length to zero. The index of the token should be the
-         * <em>starting</em> index.
+         * Returns a token of the given type with the built literal. The index
+         * of the token should be the <em>starting</em> index.
          */
         Token emit(Token.Type type) {
-            if (this.index > this.input.length()) {
+            return new Token(end(type), literal(), start());
+        }
+
+        /**
+         * Ends a token of the given type, returning the type and leaving the
+         * built literal to be read by the caller. This is used by the lexer
+         * so it does not create a {@link Token} when packing tokens into a
+         * {@link TokenBuffer}.
+         */
+        Token.Type end(Token.Type type) {
+            if (!has(-1)) {
                 throw new UnsupportedOperationException();
             }
-            return new Token(type, this.input.substring(this.index - this.length, this.index), this.index - this.length);
+            return type;
         }
 
     }
@@ -0,0 +1,133 @@
+package plc.interpreter;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Decides which terms of a program can be linked to the interpreter's
+ * builtins while compiling. A name is linked if it is currently bound to the
+ * builtin of the same name and the program never rebinds it with {@code
+ * define}, {@code set!}, a parameter or a loop variable.
+ *
+ * This is shared by the {@link ClosureCompiler} and {@link BytecodeCompiler}
+ * so both agree with each other (and the {@link Resolver}) on which terms are
+ * special forms.
+ */
+final class Linker {
+
+    private final Interpreter interpreter;
+    private final Scope scope;
+    private final Set<String> rebound = new HashSet<>();
+    private final Set<String> linked = new HashSet<>();
+
+    Linker(Interpreter interpreter, Ast program) {
+        this(interpreter, interpreter.scope, program);
+    }
+
+    /**
+     * Creates a linker for a program which will run in the given scope
+     * rather than the interpreter's current scope.
+     */
+    Linker(Interpreter interpreter, Scope scope, Ast program) {
+        this.interpreter = interpreter;
+        this.scope = scope;
+        collect(program);
+    }
+
+    /**
+     * Returns true if the name refers to the interpreter's builtin and can be
+     * linked while compiling.
+     */
+    boolean isBuiltin(String name) {
+        if (rebound.contains(name) || !interpreter.builtins.containsKey(name) || !isBound(name)) {
+            return false;
+        }
+        linked.add(name);
+        return true;
+    }
+
+    /**
+     * Returns true if every name linked so far still refers to its builtin in
+     * the scope, so code compiled with this linker is still correct.
+     */
+    boolean isCurrent() {
+        for (String name : linked) {
+            if (!isBound(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isBound(String name) {
+        try {
+            return scope.lookup(name) == interpreter.builtins.get(name);
+        } catch (EvalException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the program may bind the name, so its value can differ
+     * from the one in the scope.
+     */
+    boolean binds(String name) {
+        return rebound.contains(name);
+    }
+
+    /**
+     * Returns the builtin value of the given name.
+     */
+    Object builtin(String name) {
+        return interpreter.builtins.get(name);
+    }
+
+    /**
+     * Returns the builtin function of the given name, which must be one of the
+     * builtins taking its arguments unevaluated.
+     */
+    @SuppressWarnings("unchecked")
+    Function<List<Ast>, Object> function(String name) {
+        return (Function<List<Ast>, Object>) interpreter.builtins.get(name);
+    }
+
+    /**
+     * Returns true if the identifier is rejected as the first argument of a
+     * comparison, which the interpreter checks before evaluating anything.
+     */
+    static boolean isKeyword(Ast ast) {
+        return ast instanceof Ast.Identifier && Interpreter.KEYWORDS.contains(((Ast.Identifier) ast).getSymbol());
+    }
+
+    /**
+     * Records every name the program may bind.
+     */
+    private void collect(Ast ast) {
+        if (!(ast instanceof Ast.Term)) {
+            return;
+        }
+        Ast.Term term = (Ast.Term) ast;
+        List<Ast> args = term.getArgs();
+        if (!args.isEmpty()) {
+            Ast first = args.get(0);
+            if ((term.getName().equals("define") || term.getName().equals("set!")) && first instanceof Ast.Identifier) {
+                rebound.add(((Ast.Identifier) first).getName());
+            } else if (term.getName().equals("define") && first instanceof Ast.Term) {
+                rebound.add(((Ast.Term) first).getName());
+                for (Ast param : ((Ast.Term) first).getArgs()) {
+                    if (param instanceof Ast.Identifier) {
+                        rebound.add(((Ast.Identifier) param).getName());
+                    }
+                }
+            } else if (term.getName().equals("for") && first instanceof Ast.Term) {
+                //The argument of the loop variable is the list, which is
+                //evaluated rather than bound.
+                rebound.add(((Ast.Term) first).getName());
+            }
+        }
+        args.forEach(this::collect);
+    }
+
+}
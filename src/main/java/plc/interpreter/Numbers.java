@@ -0,0 +1,49 @@
+package plc.interpreter;
+
+import java.math.BigDecimal;
+
+/**
+ * Helpers for the integer fast paths of the {@link ClosureCompiler} and
+ * {@link Range}. Whisp numbers are always {@link BigDecimal}s, but integers
+ * (with a scale of 0) which fit in a {@code long} can be computed with
+ * primitive arithmetic and only converted back when the value is stored or
+ * returned.
+ *
+ * Converting is exact in both directions, so the result of an operation
+ * computed this way is equal (including its scale) to the one computed with
+ * {@link BigDecimal}.
+ */
+final class Numbers {
+
+    private static final int MIN_CACHED = -128;
+    private static final int MAX_CACHED = 1023;
+    private static final BigDecimal[] CACHE = new BigDecimal[MAX_CACHED - MIN_CACHED + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = BigDecimal.valueOf(i + MIN_CACHED);
+        }
+    }
+
+    private Numbers() {}
+
+    /**
+     * Returns true if the value is an integer which fits in a {@code long},
+     * so {@link BigDecimal#longValue()} is exact.
+     */
+    static boolean isLong(BigDecimal value) {
+        return value.scale() == 0 && value.precision() < 19;
+    }
+
+    /**
+     * Returns the value as a {@link BigDecimal} with a scale of 0, sharing
+     * instances for small values such as loop counters.
+     */
+    static BigDecimal valueOf(long value) {
+        if (value >= MIN_CACHED && value <= MAX_CACHED) {
+            return CACHE[(int) value - MIN_CACHED];
+        }
+        return BigDecimal.valueOf(value);
+    }
+
+}
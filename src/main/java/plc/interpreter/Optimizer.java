@@ -0,0 +1,469 @@
+package plc.interpreter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites an AST ahead of time so that work which does not depend on the
+ * program's input is only done once. Calls of side-effect free builtins
+ * whose arguments are all constants (number and string literals and the
+ * identifiers {@code true} and {@code false}) are evaluated and replaced by
+ * their value, {@code and}/{@code or} drop the constant arguments which
+ * cannot change their result, and {@code do} drops constant forms and
+ * loops which never run whose value is discarded.
+ *
+ * Like the {@link ClosureCompiler}, a term is only treated as a builtin if
+ * the {@link Linker} allows it, so nothing is folded for a name which is
+ * bound to something else in the scope or which the program rebinds
+ * anywhere. Builtins are applied exactly as the interpreter would apply
+ * them, and a call which fails (such as {@code (/ 1 0)}) is kept so that it
+ * fails when it is run.
+ *
+ * Values which have no literal in the AST, such as lists, are not folded,
+ * but the arguments of the call are. Neither are the arguments of forms
+ * which inspect their ASTs rather than evaluating them, such as {@code
+ * range}. The names a program binds, such as the signature of a {@code
+ * define}, are never treated as builtins. Subtrees which do not change are
+ * returned as they are, so nodes shared by an {@link AstPool} stay shared.
+ *
+ * A program can also be specialized against variables whose values are
+ * known ahead of time (see {@link #specialize(Ast, Scope)}), which are then
+ * folded like literals and allow {@code for} loops over them to be unrolled.
+ */
+public final class Optimizer {
+
+    /**
+     * The builtins which only compute a value from their arguments.
+     */
+    private static final Set<String> PURE = new HashSet<>(Arrays.asList(
+            "+", "-", "*", "/", "equals?", "not", "and", "or", "<", ">", "<=", ">="));
+
+    private static final Set<String> COMPARISONS = new HashSet<>(Arrays.asList("<", ">", "<=", ">="));
+
+    /**
+     * The most iterations of a {@code for} loop which are unrolled, which
+     * bounds the size of a specialized program.
+     */
+    public static final int MAX_UNROLL = 64;
+
+    private final Interpreter interpreter;
+    private Linker linker;
+
+    /**
+     * The scope whose variables are known, or {@code null} if only literals
+     * are constants.
+     */
+    private Scope known;
+
+    /**
+     * The values of the variables of unrolled loops, which replace them in
+     * the copies of the body.
+     */
+    private final Map<Symbol, Ast> constants = new HashMap<>();
+
+    public Optimizer(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Returns the optimized AST, which evaluates to the same value with the
+     * same side effects as the given AST in the interpreter's current scope.
+     */
+    public Ast optimize(Ast ast) {
+        linker = new Linker(interpreter, ast);
+        known = null;
+        return visitProgram(ast);
+    }
+
+    /**
+     * Returns the residual program of the AST for the variables defined in
+     * the known scope, which must have the interpreter's global scope as an
+     * ancestor. Every variable which is bound to a number, string or boolean
+     * in the known scope and is never bound by the program is replaced by its
+     * value and folded, and {@code for} loops over a list or range known to
+     * have at most {@link #MAX_UNROLL} elements are unrolled where the value
+     * of the loop is discarded.
+     *
+     * The residual program evaluates to the same value with the same side
+     * effects as the given AST when it is run in the known scope or a scope
+     * nested in it, such as one which defines the variables that differ
+     * between runs. The known variables must not change once the program is
+     * specialized.
+     */
+    public Ast specialize(Ast ast, Scope known) {
+        linker = new Linker(interpreter, known, ast);
+        this.known = known;
+        return visitProgram(ast);
+    }
+
+    /**
+     * Visits a program, where the value of every top-level form of a {@code
+     * source} term except the last is discarded.
+     */
+    private Ast visitProgram(Ast ast) {
+        if (ast instanceof Ast.Term && ((Ast.Term) ast).getName().equals("source")) {
+            return rebuild((Ast.Term) ast, dropConstants(visitForms(((Ast.Term) ast).getArgs())));
+        }
+        return visit(ast);
+    }
+
+    private Ast visit(Ast ast) {
+        if (ast instanceof Ast.Term) {
+            return visitTerm((Ast.Term) ast);
+        } else if (ast instanceof Ast.Identifier) {
+            return visitIdentifier((Ast.Identifier) ast);
+        }
+        return ast;
+    }
+
+    /**
+     * Replaces a variable by its value if it is a constant, which is either
+     * the variable of an unrolled loop or a known variable.
+     */
+    private Ast visitIdentifier(Ast.Identifier ast) {
+        Ast constant = constants.get(ast.getSymbol());
+        if (constant == null) {
+            Object value = knownValue(ast);
+            constant = value != null ? literal(value) : null;
+        }
+        return constant != null && !constant.equals(ast) ? constant : ast;
+    }
+
+    private Ast visitTerm(Ast.Term ast) {
+        String name = ast.getName();
+        List<Ast> args = ast.getArgs();
+        if (!linker.isBuiltin(name)) {
+            return rebuild(ast, visitAll(args));
+        }
+        switch (name) {
+            case "range":
+                return ast;
+            case "and":
+                return fold(ast, shortCircuit(visitAll(args), false));
+            case "or":
+                return fold(ast, shortCircuit(visitAll(args), true));
+            case "do":
+                return simplifyDo(ast, visitForms(args));
+            case "while":
+            case "for":
+                if (args.size() == 2) {
+                    return rebuild(ast, Arrays.asList(visit(args.get(0)), visitDiscarded(args.get(1))));
+                }
+                return rebuild(ast, visitAll(args));
+            default:
+                List<Ast> optimized = visitAll(args);
+                if (COMPARISONS.contains(name) && !args.isEmpty()
+                        && optimized.get(0) != args.get(0) && Linker.isKeyword(optimized.get(0))) {
+                    //A keyword identifier as the first argument is an error,
+                    //so a comparison must not be folded into one.
+                    optimized.set(0, args.get(0));
+                }
+                return PURE.contains(name) ? fold(ast, optimized) : rebuild(ast, optimized);
+        }
+    }
+
+    private List<Ast> visitAll(List<Ast> args) {
+        List<Ast> optimized = new ArrayList<>(args.size());
+        for (Ast arg : args) {
+            optimized.add(visit(arg));
+        }
+        return optimized;
+    }
+
+    /**
+     * Visits a sequence of forms which returns the value of the last one.
+     */
+    private List<Ast> visitForms(List<Ast> forms) {
+        List<Ast> optimized = new ArrayList<>(forms.size());
+        for (int i = 0; i < forms.size(); i++) {
+            optimized.add(i == forms.size() - 1 ? visit(forms.get(i)) : visitDiscarded(forms.get(i)));
+        }
+        return optimized;
+    }
+
+    /**
+     * Visits a form whose value is discarded, so a {@code for} loop can be
+     * replaced by a {@code do} of its iterations and a {@code while} loop
+     * which never runs by its (constant) condition.
+     */
+    private Ast visitDiscarded(Ast ast) {
+        if (known != null && ast instanceof Ast.Term && ((Ast.Term) ast).getName().equals("for")
+                && linker.isBuiltin("for")) {
+            Ast unrolled = unroll((Ast.Term) ast);
+            if (unrolled != null) {
+                return unrolled;
+            }
+        }
+        Ast optimized = visit(ast);
+        if (optimized instanceof Ast.Term && ((Ast.Term) optimized).getName().equals("while")
+                && linker.isBuiltin("while") && ((Ast.Term) optimized).getArgs().size() == 2) {
+            Ast condition = ((Ast.Term) optimized).getArgs().get(0);
+            if (isConstant(condition) && Boolean.FALSE.equals(constant(condition))) {
+                return condition;
+            }
+        }
+        return optimized;
+    }
+
+    /**
+     * Unrolls a {@code for} loop over a constant list into a {@code do} of
+     * its iterations, which like the loop evaluates them in a new scope. If
+     * the body does not bind or call the loop variable and defines no
+     * functions (which could read it later), each copy of the body has the
+     * variable replaced by its value; otherwise the variable is defined and
+     * set before each copy as the loop would. Returns {@code null} if the
+     * loop is not unrolled.
+     */
+    private Ast unroll(Ast.Term ast) {
+        List<Ast> args = ast.getArgs();
+        if (args.size() != 2 || !(args.get(0) instanceof Ast.Term) || ((Ast.Term) args.get(0)).getArgs().size() != 1
+                || !linker.isBuiltin("do") || !linker.isBuiltin("define") || !linker.isBuiltin("set!")) {
+            return null;
+        }
+        Symbol variable = ((Ast.Term) args.get(0)).getSymbol();
+        List<Ast> values = constantList(((Ast.Term) args.get(0)).getArgs().get(0));
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        List<Ast> forms = new ArrayList<>();
+        if (isSubstitutable(args.get(1), variable)) {
+            for (Ast value : values) {
+                constants.put(variable, value);
+                try {
+                    forms.add(visitDiscarded(args.get(1)));
+                } finally {
+                    constants.remove(variable);
+                }
+            }
+        } else {
+            Ast body = visitDiscarded(args.get(1));
+            for (int i = 0; i < values.size(); i++) {
+                forms.add(new Ast.Term(i == 0 ? "define" : "set!", Arrays.asList(new Ast.Identifier(variable), values.get(i))));
+                forms.add(body);
+            }
+        }
+        return simplifyDo(new Ast.Term("do", forms), forms);
+    }
+
+    /**
+     * Returns the constants of a list expression which has at most {@link
+     * #MAX_UNROLL} elements, or {@code null} if it is not constant. The list
+     * is either a known variable, a {@code list} of constants or a {@code
+     * range} of literals.
+     */
+    private List<Ast> constantList(Ast ast) {
+        Object value = null;
+        if (ast instanceof Ast.Identifier && !constants.containsKey(((Ast.Identifier) ast).getSymbol())) {
+            value = knownValue((Ast.Identifier) ast);
+        } else if (ast instanceof Ast.Term && ((Ast.Term) ast).getName().equals("list")
+                && linker.isBuiltin("list") && ((Ast.Term) ast).getArgs().size() <= MAX_UNROLL) {
+            List<Ast> args = visitAll(((Ast.Term) ast).getArgs());
+            for (Ast arg : args) {
+                if (!isConstant(arg)) {
+                    return null;
+                }
+            }
+            return args;
+        } else if (ast instanceof Ast.Term && ((Ast.Term) ast).getName().equals("range") && linker.isBuiltin("range")) {
+            //The bounds must be literals before they are visited, and are
+            //checked before the range is built since it may not be lazy.
+            List<Ast> args = ((Ast.Term) ast).getArgs();
+            if (args.size() != 2 || !(args.get(0) instanceof Ast.NumberLiteral) || !(args.get(1) instanceof Ast.NumberLiteral)
+                    || ((Ast.NumberLiteral) args.get(1)).getValue().subtract(((Ast.NumberLiteral) args.get(0)).getValue())
+                            .compareTo(BigDecimal.valueOf(MAX_UNROLL)) > 0) {
+                return null;
+            }
+            try {
+                value = linker.function("range").apply(args);
+            } catch (EvalException e) {
+                return null;
+            }
+        }
+        if (!Range.isIterable(value) || ((List<?>) value).size() > MAX_UNROLL) {
+            return null;
+        }
+        List<Ast> result = new ArrayList<>();
+        for (Object element : (List<?>) value) {
+            Ast literal = literal(element);
+            if (literal == null) {
+                return null;
+            }
+            result.add(literal);
+        }
+        return result;
+    }
+
+    /**
+     * Returns true if every use of the variable in the body can be replaced
+     * by its value, see {@link #unroll(Ast.Term)}.
+     */
+    private static boolean isSubstitutable(Ast ast, Symbol variable) {
+        if (!(ast instanceof Ast.Term)) {
+            return true;
+        }
+        Ast.Term term = (Ast.Term) ast;
+        List<Ast> args = term.getArgs();
+        if (term.getSymbol() == variable) {
+            return false;
+        } else if (!args.isEmpty() && (term.getName().equals("define") || term.getName().equals("set!")
+                || term.getName().equals("for"))) {
+            Ast first = args.get(0);
+            if (first instanceof Ast.Identifier && ((Ast.Identifier) first).getSymbol() == variable
+                    || first instanceof Ast.Term && (term.getName().equals("define")
+                    || ((Ast.Term) first).getSymbol() == variable)) {
+                return false;
+            }
+        }
+        for (Ast arg : args) {
+            if (!isSubstitutable(arg, variable)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates a call of a pure builtin if all of its arguments are
+     * constants and the result has a literal, and otherwise returns the
+     * call with the given arguments.
+     */
+    private Ast fold(Ast.Term ast, List<Ast> args) {
+        for (Ast arg : args) {
+            if (!isConstant(arg)) {
+                return rebuild(ast, args);
+            }
+        }
+        Object value;
+        try {
+            value = linker.function(ast.getName()).apply(args);
+        } catch (EvalException | ArithmeticException e) {
+            return rebuild(ast, args);
+        }
+        Ast literal = literal(value);
+        return literal != null ? literal : rebuild(ast, args);
+    }
+
+    /**
+     * Drops the constant arguments of {@code and} ({@code until} false) or
+     * {@code or} ({@code until} true) which let evaluation continue, and
+     * every argument after one which ends it. A constant which is not a
+     * boolean also ends evaluation, as {@code and} returns false and {@code
+     * or} throws.
+     */
+    private List<Ast> shortCircuit(List<Ast> args, boolean until) {
+        List<Ast> result = new ArrayList<>(args.size());
+        for (Ast arg : args) {
+            Object value = isConstant(arg) ? constant(arg) : null;
+            if (value instanceof Boolean && (Boolean) value != until) {
+                continue;
+            }
+            result.add(arg);
+            if (value != null) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops the forms of a {@code do} which are constants and whose value is
+     * not returned. A {@code do} of a single constant is that constant, since
+     * the scope it creates is never used.
+     */
+    private Ast simplifyDo(Ast.Term ast, List<Ast> args) {
+        List<Ast> result = dropConstants(args);
+        if (result.size() == 1 && isConstant(result.get(0))) {
+            return result.get(0);
+        }
+        return rebuild(ast, result);
+    }
+
+    /**
+     * Returns the forms of a sequence without the constants whose value is
+     * not returned.
+     */
+    private List<Ast> dropConstants(List<Ast> forms) {
+        List<Ast> result = new ArrayList<>(forms.size());
+        for (int i = 0; i < forms.size(); i++) {
+            if (i == forms.size() - 1 || !isConstant(forms.get(i))) {
+                result.add(forms.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value of a known variable, or {@code null} if it is not
+     * known or may be bound by the program.
+     */
+    private Object knownValue(Ast.Identifier ast) {
+        if (known == null || linker.binds(ast.getName())) {
+            return null;
+        }
+        try {
+            return known.lookup(ast.getSymbol());
+        } catch (EvalException e) {
+            return null;
+        }
+    }
+
+    private boolean isConstant(Ast ast) {
+        return ast instanceof Ast.NumberLiteral || ast instanceof Ast.StringLiteral || ast instanceof Ast.Identifier
+                && (((Ast.Identifier) ast).getName().equals("true") || ((Ast.Identifier) ast).getName().equals("false"))
+                && linker.isBuiltin(((Ast.Identifier) ast).getName());
+    }
+
+    /**
+     * Returns the value of a constant, see {@link #isConstant(Ast)}.
+     */
+    private Object constant(Ast ast) {
+        if (ast instanceof Ast.NumberLiteral) {
+            return ((Ast.NumberLiteral) ast).getValue();
+        } else if (ast instanceof Ast.StringLiteral) {
+            return ((Ast.StringLiteral) ast).getValue();
+        } else {
+            return linker.builtin(((Ast.Identifier) ast).getName());
+        }
+    }
+
+    /**
+     * Returns the constant which evaluates to the value, or {@code null} if
+     * there is none.
+     */
+    private Ast literal(Object value) {
+        if (value instanceof BigDecimal) {
+            return new Ast.NumberLiteral((BigDecimal) value);
+        } else if (value instanceof String) {
+            return new Ast.StringLiteral((String) value);
+        } else if (value instanceof Boolean) {
+            String name = (Boolean) value ? "true" : "false";
+            return linker.isBuiltin(name) ? new Ast.Identifier(name) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Returns a term with the given arguments, which is the original term if
+     * none of them changed.
+     */
+    private static Ast.Term rebuild(Ast.Term ast, List<Ast> args) {
+        List<Ast> original = ast.getArgs();
+        if (args.size() == original.size()) {
+            boolean same = true;
+            for (int i = 0; i < args.size() && same; i++) {
+                same = args.get(i) == original.get(i);
+            }
+            if (same) {
+                return ast;
+            }
+        }
+        return new Ast.Term(ast.getSymbol(), args);
+    }
+
+}
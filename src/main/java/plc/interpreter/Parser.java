@@ -1,10 +1,21 @@
 package plc.interpreter;
 
 import javafx.scene.input.TouchEvent;
+import plc.scanner.Lookahead;
+import plc.scanner.Source;
+import plc.scanner.TokenBuffer;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Pattern;
 
 /**
@@ -13,20 +24,51 @@ import java.util.regex.Pattern;
  * Tree (AST).
  *
  * The parser has a similar architecture to the lexer, just with {@link Token}s
- * instead of characters. As before, {@link #peek(Object...)} and {@link
+ * instead of characters, which are read from the {@link TokenBuffer} of the
+ * lexer so no token objects are created, or pulled from the lexer one at a
+ * time when parsing a file or channel. As before, {@link #peek(Object...)} and {@link
  * #match(Object...)} are helpers to make the implementation easier.
  *
  * This type of parser is called <em>recursive descent</em>. Each rule in our
  * grammar will have it's own function, and reference to other rules correspond
- * to calling that functions.
+ * to calling that functions. The exception is nested terms, which are parsed
+ * with an explicit stack (see {@link #parseTerm(String)}) so deeply nested
+ * input does not overflow the Java stack.
  */
 public final class Parser {
 
+    /**
+     * The least number of characters in each chunk of a parallel parse, so
+     * small inputs are not split at all.
+     */
+    private static final int CHUNK = 1 << 16;
+
     private final TokenStream tokens;
+    private final AstPool pool;
 
-    private Parser(String input) {
+    private Parser(String input, AstPool pool) {
 
-        tokens = new TokenStream(Lexer.lex(input));
+        tokens = new PackedTokenStream(Lexer.pack(input), null);
+        this.pool = pool;
+    }
+
+    /**
+     * Creates a parser which pulls tokens from the iterator as they are read,
+     * so the {@link Interpreter} can evaluate each form as it is parsed.
+     */
+    Parser(Iterator<Token> tokens) {
+        this.tokens = new StreamedTokenStream(tokens);
+        this.pool = null;
+    }
+
+    /**
+     * Creates a parser over the tokens in the buffer. If the lexer is not
+     * null, it lexes tokens into the buffer as they are read, so a {@link
+     * Document} can re-parse part of its text without lexing the rest of it.
+     */
+    Parser(Lexer lexer, TokenBuffer tokens) {
+        this.tokens = new PackedTokenStream(tokens, lexer);
+        this.pool = null;
     }
 
     /**
@@ -34,7 +76,122 @@ public final class Parser {
      */
     public static Ast parse(String input) {
 
-        return new Parser(input).parse();
+        return new Parser(input, null).parse();
+    }
+
+    /**
+     * Parses the input as {@link #parse(String)} does, but takes every node
+     * of the AST from the pool, so subtrees and literals which are equal to
+     * ones already in the pool are shared instead of created again. The
+     * {@code source} term itself is not pooled.
+     */
+    public static Ast parse(String input, AstPool pool) {
+        return new Parser(input, pool).parse();
+    }
+
+    /**
+     * Parses the UTF-8 file at the given path while it is lexed, pulling each
+     * token from the lexer as it is needed so neither the file nor its tokens
+     * are held in memory as a whole (see {@link Lexer#tokens(Path)}). Since
+     * parsing starts before lexing finishes, errors are thrown in the order
+     * they appear in the input, unlike {@link #parse(String)} which throws a
+     * lexing error anywhere before any parsing error.
+     */
+    public static Ast parse(Path path) throws IOException {
+        return parse(Lexer.tokens(path));
+    }
+
+    /**
+     * Parses the UTF-8 bytes read from the channel while they are lexed, in
+     * the same way as {@link #parse(Path)}.
+     */
+    public static Ast parse(ReadableByteChannel channel) {
+        return parse(Lexer.tokens(channel));
+    }
+
+    /**
+     * Parses the tokens as they are pulled from the iterator.
+     */
+    static Ast parse(Iterator<Token> tokens) {
+        return new Parser(tokens).parse();
+    }
+
+    /**
+     * Parses the input in parallel on the given pool, returning the same AST
+     * as {@link #parse(String)}. The input is split into chunks before the
+     * forms of the {@code source} term, which are lexed and parsed
+     * separately. Errors are also the same: the first lexing error is thrown
+     * if there is one, else the first parsing error.
+     */
+    public static Ast parse(String input, ForkJoinPool pool) {
+        return parse(input, pool, CHUNK);
+    }
+
+    static Ast parse(String input, ForkJoinPool pool, int size) {
+        List<Integer> splits = split(input, size);
+        if (splits.size() == 2) {
+            return parse(input);
+        }
+        List<Chunk> chunks = new ArrayList<>();
+        for (int i = 1; i < splits.size(); i++) {
+            chunks.add(new Chunk(input, splits.get(i - 1), splits.get(i)));
+        }
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(chunks);
+            }
+        });
+        for (Chunk chunk : chunks) {
+            if (chunk.lexError != null) {
+                throw chunk.lexError;
+            }
+        }
+        List<Ast> args = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            if (chunk.parseError != null) {
+                throw chunk.parseError;
+            }
+            args.addAll(chunk.asts);
+        }
+        return new Ast.Term("source", args);
+    }
+
+    /**
+     * Returns the indices which split the input into chunks of at least the
+     * given size, starting with 0 and ending with the length of the input.
+     * Each chunk after the first starts at a {@code (} or {@code [} outside
+     * of any term or string, which always starts a new form: the parser only
+     * skips the token after a term if it is not one of these.
+     */
+    static List<Integer> split(String input, int size) {
+        List<Integer> splits = new ArrayList<>();
+        splits.add(0);
+        int depth = 0;
+        boolean string = false;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (string) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    string = false;
+                }
+            } else if (c == '"') {
+                string = true;
+            } else if (c == '(' || c == '[') {
+                if (depth == 0 && i - splits.get(splits.size() - 1) >= size) {
+                    splits.add(i);
+                }
+                depth++;
+            } else if (c == ')' || c == ']') {
+                depth = Math.max(depth - 1, 0);
+            }
+        }
+        splits.add(input.length());
+        return splits;
     }
 
     /**
@@ -48,11 +205,8 @@ public final class Parser {
         }*/
         List<Ast> list = new ArrayList<>();
         Ast.Term firstEntry = new Ast.Term("source",list);
-        while(tokens.index < tokens.tokens.size()){
-            firstEntry.getArgs().add(parseAst());
-            if(!peek("(")&&!peek("[")){
-                tokens.advance();
-            }
+        while(hasNext()){
+            firstEntry.getArgs().add(parseForm());
             //tokens.advance();
         }
 
@@ -61,6 +215,32 @@ public final class Parser {
         //throw new UnsupportedOperationException(); //TODO
     }
 
+    /**
+     * Returns true if there is another AST to parse in the source.
+     */
+    boolean hasNext() {
+        return tokens.has(0);
+    }
+
+    /**
+     * Returns the index in the buffer of the next token to parse.
+     */
+    int index() {
+        return tokens.index;
+    }
+
+    /**
+     * Parses the next AST of the source, which is one argument of the {@code
+     * source} term.
+     */
+    Ast parseForm() {
+        Ast ast = parseAst();
+        if(!peek("(")&&!peek("[")){
+            tokens.advance();
+        }
+        return ast;
+    }
+
     /**
      * Parses an AST from the given tokens based on the provided grammar. Like
      * the lexToken method, you may find it helpful to have this call other
@@ -105,7 +285,7 @@ public final class Parser {
             tokens.advance();
             if (peek(Token.Type.IDENTIFIER))
             {
-                return parseTerm(tokens.get(-1).getLiteral());
+                return parseTerm(tokens.literal(-1));
             }else{
                 throw new ParseException("Expected Identifier", 0);
             }
@@ -127,56 +307,78 @@ public final class Parser {
     }
 
     private Ast.Identifier parseIdentifier(){
-        String holder = tokens.get(0).getLiteral();
-        Ast.Identifier ret = new Ast.Identifier(holder);
+        Ast.Identifier ret = pool == null ? new Ast.Identifier(tokens.symbol(0)) : pool.identifier(tokens.symbol(0));
         return ret;
     }
 
+    /**
+     * Parses a term and the terms nested in it, after its opening bracket.
+     * Instead of recursing for each nested term, the terms which are still
+     * open are kept on an explicit stack, so terms can be nested as deeply
+     * as memory allows and the Java stack never overflows. The tokens are
+     * checked in the same order as a recursive parser would, so the errors
+     * are the same.
+     */
     private Ast.Term parseTerm(String val){
 
-        if (!peek(Token.Type.IDENTIFIER)) {
-            throw new ParseException("Identifier expected", tokens.get(0).getIndex());
-        }
-        tokens.advance();
-        List<Ast> ast = new ArrayList<>();
-        Ast.Term ret = new Ast.Term(tokens.get(-1).getLiteral(), ast);
-        while(tokens.index <= tokens.tokens.size())
-        {
+        Deque<OpenTerm> stack = new ArrayDeque<>();
+        stack.push(openTerm(val));
+        while (true) {
+            OpenTerm top = stack.peek();
+            if (tokens.has(-1))
+            {
                 if(match("[")||match("("))
                 {
-                    ast.add(parseTerm(tokens.get(-1).getLiteral()));
-                    if(tokens.index == tokens.tokens.size())
-                    {
-                        //break;
-                        throw new ParseException("No Closing Operator", 0);
-                        //tokens.get(0).getIndex()
-                    }
+                    stack.push(openTerm(tokens.literal(-1)));
                     continue;
                 }
                 if(match("]")||match(")"))
                 {
-                    if((val.equals("(")&&tokens.get(-1).getLiteral().equals("]"))||(val.equals("[")&&tokens.get(-1).getLiteral().equals(")")))
+                    if((top.val.equals("(")&&tokens.is(-1, "]"))||(top.val.equals("[")&&tokens.is(-1, ")")))
                     {
                         throw new ParseException("Improper Closing Operator", 0);
-                        //tokens.get(0).getIndex()
                     }
-                    return ret;
+                }else{
+                    top.args.add(parseAst());
+                    tokens.advance();
+                    continue;
                 }
-                ret.getArgs().add(parseAst());
-                tokens.advance();
+            }
+            stack.pop();
+            Ast.Term term = pool == null ? new Ast.Term(top.symbol, top.args) : pool.term(top.symbol, top.args);
+            if (stack.isEmpty()) {
+                return term;
+            }
+            stack.peek().args.add(term);
+            if(!tokens.has(0))
+            {
+                throw new ParseException("No Closing Operator", 0);
+            }
         }
-        return ret;
+    }
+
+    /**
+     * Parses the identifier of a term after its opening bracket, returning
+     * it with no arguments yet.
+     */
+    private OpenTerm openTerm(String val){
+
+        if (!peek(Token.Type.IDENTIFIER)) {
+            throw new ParseException("Identifier expected", tokens.start(0));
+        }
+        tokens.advance();
+        return new OpenTerm(tokens.symbol(-1), val);
     }
 
     private Ast.NumberLiteral parseNumberLiteral(){
-        BigDecimal val = new BigDecimal(tokens.get(0).getLiteral());
-        Ast.NumberLiteral ret = new Ast.NumberLiteral(val);
+        BigDecimal val = new BigDecimal(tokens.literal(0));
+        Ast.NumberLiteral ret = pool == null ? new Ast.NumberLiteral(val) : pool.number(val);
         return ret;
     }
 
     private Ast.StringLiteral parseStringLiteral(){
 
-        String holder = tokens.get(0).getLiteral();
+        String holder = tokens.literal(0);
         holder = holder.substring(1, holder.length()-1);
         holder = holder.replace("\\\"", "\"");
         holder = holder.replace("\\n", "\n");
@@ -185,7 +387,7 @@ public final class Parser {
         holder = holder.replace("\\t", "\t");
         holder = holder.replace("\\'", "'");
         holder = holder.replace("\\\\", "\\");
-        Ast.StringLiteral ret = new Ast.StringLiteral(holder);
+        Ast.StringLiteral ret = pool == null ? new Ast.StringLiteral(holder) : pool.string(holder);
         return ret;
     }
 
@@ -208,11 +410,11 @@ public final class Parser {
 
             if(pattern instanceof Token.Type)
             {
-                if (!tokens.has(offset) || !tokens.get(offset).getType().equals(pattern)) {
+                if (!tokens.has(offset) || tokens.type(offset) != pattern) {
                     return false;
                 }
             }else if(pattern instanceof String){
-                if (!tokens.has(offset) || !tokens.get(offset).getLiteral().equals(pattern)) {
+                if (!tokens.has(offset) || !tokens.is(offset, (String) pattern)) {
                     return false;
                 }
 
@@ -238,40 +440,260 @@ public final class Parser {
         return true;
     }
 
-    private static final class TokenStream {
+    /**
+     * A term whose closing bracket has not been parsed yet, along with its
+     * opening bracket so the closing one can be checked against it. The term
+     * itself is created once it is closed, so it can be taken from the pool.
+     */
+    private static final class OpenTerm {
 
-        private final List<Token> tokens;
-        private int index = 0;
+        private final Symbol symbol;
+        private final List<Ast> args = new ArrayList<>();
+        private final String val;
 
-        private TokenStream(List<Token> tokens) {
-            this.tokens = tokens;
+        private OpenTerm(Symbol symbol, String val) {
+            this.symbol = symbol;
+            this.val = val;
+        }
+
+    }
+
+    /**
+     * A part of the input which is lexed and parsed on its own, keeping the
+     * first error of each so they can be thrown in the same order as the
+     * sequential parser would.
+     */
+    private static final class Chunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String input;
+        private final int start;
+        private final int end;
+        private final List<Ast> asts = new ArrayList<>();
+        private RuntimeException lexError;
+        private RuntimeException parseError;
+
+        private Chunk(String input, int start, int end) {
+            this.input = input;
+            this.start = start;
+            this.end = end;
         }
 
+        @Override
+        protected void compute() {
+            Lexer lexer = new Lexer(Source.of(input));
+            lexer.chars.index = start;
+            TokenBuffer tokens = new TokenBuffer(input);
+            try {
+                lexer.lex(tokens, end);
+            } catch (RuntimeException e) {
+                lexError = e;
+                return;
+            }
+            Parser parser = new Parser(null, tokens);
+            try {
+                while (parser.hasNext()) {
+                    asts.add(parser.parseForm());
+                }
+            } catch (RuntimeException e) {
+                parseError = e;
+            }
+        }
+
+    }
+
+    private abstract static class TokenStream {
+
+        int index = 0;
+
         /**
          * Returns true if there is a token at index + offset.
          */
+        public abstract boolean has(int offset);
+
+        /**
+         * Gets the type of the token at index + offset.
+         */
+        public abstract Token.Type type(int offset);
+
+        /**
+         * Gets a copy of the literal of the token at index + offset.
+         */
+        public abstract String literal(int offset);
+
+        /**
+         * Gets the symbol of the token at index + offset.
+         */
+        public abstract Symbol symbol(int offset);
+
+        /**
+         * Gets the starting index of the token at index + offset.
+         */
+        public abstract int start(int offset);
+
+        /**
+         * Returns true if the literal of the token at index + offset is the
+         * given one.
+         */
+        public abstract boolean is(int offset, String literal);
+
+        /**
+         * Advances to the next token, incrementing the index.
+         */
+        public void advance() {
+
+            this.index += 1;
+        }
+
+    }
+
+    /**
+     * A stream over the tokens packed in a buffer, whose literals are read
+     * from the input.
+     */
+    private static final class PackedTokenStream extends TokenStream {
+
+        private static final Token.Type[] TYPES = Token.Type.values();
+
+        private final TokenBuffer tokens;
+        private final Lexer lexer;
+
+        /**
+         * Creates a stream over the buffer, which is filled by the lexer as
+         * tokens are read if it is not null.
+         */
+        private PackedTokenStream(TokenBuffer tokens, Lexer lexer) {
+            this.tokens = tokens;
+            this.lexer = lexer;
+        }
+
+        @Override
         public boolean has(int offset) {
 
+            while (this.lexer != null && this.index + offset >= this.tokens.size()) {
+                if (!this.lexer.lexNext(this.tokens)) {
+                    break;
+                }
+            }
             return this.index + offset < this.tokens.size();
         }
 
+        @Override
+        public Token.Type type(int offset) {
+
+            return TYPES[this.tokens.type(get(offset))];
+        }
+
+        @Override
+        public String literal(int offset) {
+
+            return this.tokens.string(get(offset));
+        }
+
         /**
-         * Gets the token at index + offset.
+         * Interns the symbol from the input without copying the literal.
          */
-        public Token get(int offset) {
+        @Override
+        public Symbol symbol(int offset) {
+
+            int start = this.tokens.start(get(offset));
+            return Symbol.intern(this.tokens.input(), start, start + this.tokens.length(index + offset));
+        }
+
+        @Override
+        public int start(int offset) {
+
+            return this.tokens.start(get(offset));
+        }
 
-            if(index + offset >= this.tokens.size()){
+        /**
+         * Compares the literal in place, without copying it.
+         */
+        @Override
+        public boolean is(int offset, String literal) {
+
+            return this.tokens.matches(get(offset), literal);
+        }
+
+        /**
+         * Gets the position in the buffer of the token at index + offset.
+         */
+        private int get(int offset) {
+
+            if(!has(offset)){
                 throw new UnsupportedOperationException();
             }
-            return this.tokens.get(index+offset);
+            return index + offset;
+        }
+
+    }
+
+    /**
+     * A stream which pulls tokens from the lexer as they are read. Only the
+     * previous token and the ones being peeked at are kept, in a {@link
+     * Lookahead} ring.
+     */
+    private static final class StreamedTokenStream extends TokenStream {
+
+        private final Lookahead<Token> tokens;
+
+        private StreamedTokenStream(Iterator<Token> tokens) {
+            this.tokens = new Lookahead<>(tokens);
+        }
+
+        @Override
+        public boolean has(int offset) {
+
+            return this.tokens.has(this.index + offset);
+        }
+
+        @Override
+        public Token.Type type(int offset) {
+
+            return get(offset).getType();
+        }
+
+        @Override
+        public String literal(int offset) {
+
+            return get(offset).getLiteral();
+        }
+
+        @Override
+        public Symbol symbol(int offset) {
+
+            return Symbol.of(get(offset).getLiteral());
+        }
+
+        @Override
+        public int start(int offset) {
+
+            return get(offset).getIndex();
+        }
+
+        @Override
+        public boolean is(int offset, String literal) {
+
+            return get(offset).getLiteral().equals(literal);
         }
 
         /**
-         * Advances to the next token, incrementing the index.
+         * Advances to the next token, releasing all but the previous one.
          */
+        @Override
         public void advance() {
 
-            this.index += 1;
+            super.advance();
+            this.tokens.release(this.index - 1);
+        }
+
+        private Token get(int offset) {
+
+            if(!has(offset)){
+                throw new UnsupportedOperationException();
+            }
+            return this.tokens.get(this.index + offset);
         }
 
     }
@@ -0,0 +1,99 @@
+package plc.interpreter;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * The list returned by {@code range}, which stores its bounds instead of its
+ * elements. Each element is created when it is needed, so a loop over a
+ * large range does not build a list of every number before it starts.
+ *
+ * A range is an immutable list of the integers from {@code start} (inclusive)
+ * to {@code end} (exclusive). Since it is a {@link List}, it is equal to,
+ * prints like, and can be used anywhere as the list built by {@code list}.
+ */
+final class Range extends AbstractList<BigDecimal> implements RandomAccess {
+
+    private final long start;
+    private final long end;
+
+    private Range(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Returns the integers from {@code first} (inclusive) to {@code last}
+     * (exclusive), which have already been checked to be integers in
+     * increasing order. Bounds which do not fit in a {@code long} are not
+     * supported by {@link Range}, so those elements are built into a list.
+     */
+    static List<BigDecimal> of(BigDecimal first, BigDecimal last) {
+        if (Numbers.isLong(first) && Numbers.isLong(last)) {
+            return new Range(first.longValue(), Math.max(first.longValue(), last.longValue()));
+        }
+        List<BigDecimal> values = new LinkedList<>();
+        for (BigDecimal i = first; i.compareTo(last) < 0; i = i.add(BigDecimal.ONE)) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    /**
+     * Returns true if the value is a list which {@code for} can iterate, which
+     * is either a list built by {@code list} or a range.
+     */
+    static boolean isIterable(Object value) {
+        return value instanceof LinkedList || value instanceof Range;
+    }
+
+    @Override
+    public BigDecimal get(int index) {
+        if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return Numbers.valueOf(start + index);
+    }
+
+    /**
+     * Returns the number of elements, or {@link Integer#MAX_VALUE} if there
+     * are more than that as required by {@link java.util.Collection#size()}.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(end - start, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return start == end;
+    }
+
+    @Override
+    public Iterator<BigDecimal> iterator() {
+        return new Iterator<BigDecimal>() {
+
+            private long next = start;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public BigDecimal next() {
+                if (next >= end) {
+                    throw new NoSuchElementException();
+                }
+                return Numbers.valueOf(next++);
+            }
+
+        };
+    }
+
+}
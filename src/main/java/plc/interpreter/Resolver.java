@@ -0,0 +1,183 @@
+package plc.interpreter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The resolver gives each variable a lexical address: the number of frames to
+ * walk up (the depth) and the index of the variable in that frame (the
+ * slot). It is used while compiling, entering a {@link Block} for every
+ * {@code do}, {@code for} and function body in the same order the compiled
+ * code creates {@link Frame}s.
+ *
+ * Whisp defines variables as the program runs, so a name defined anywhere in
+ * a block is given a slot when the block is entered. Until the definition has
+ * run the slot is empty, and a variable which may be read before then
+ * resolves to a chain of candidate addresses which ends at the global scope.
+ * Parameters and loop variables are always defined, so the chain stops there.
+ */
+final class Resolver {
+
+    private final Predicate<String> linked;
+    private Block block = null;
+
+    /**
+     * Creates a resolver, where {@code linked} returns true if a name refers
+     * to the builtin special form of the same name (as opposed to a function
+     * which has been rebound by the program).
+     */
+    Resolver(Predicate<String> linked) {
+        this.linked = linked;
+    }
+
+    /**
+     * Enters a block whose first slots hold the given bound names (parameters
+     * or a loop variable), followed by every name the forms may define.
+     */
+    Block enter(List<String> bound, boolean definite, List<Ast> forms) {
+        block = new Block(block);
+        for (String name : bound) {
+            block.declare(name);
+            if (definite) {
+                block.definite.add(name);
+            }
+        }
+        forms.forEach(this::declare);
+        return block;
+    }
+
+    /**
+     * Marks a bound name of the current block as always defined, such as a
+     * loop variable once the list has been evaluated.
+     */
+    void markDefinite(String name) {
+        block.definite.add(name);
+    }
+
+    void exit() {
+        block = block.parent;
+    }
+
+    /**
+     * Returns the slot of the name in the current block, or {@code -1} if the
+     * current block is the global scope.
+     */
+    int slot(String name) {
+        return block == null ? -1 : block.slots.get(name);
+    }
+
+    /**
+     * Resolves the address of a variable read or assigned from the current
+     * block.
+     */
+    Address resolve(String name) {
+        List<Address> candidates = new ArrayList<>();
+        int depth = 0;
+        boolean definite = false;
+        for (Block current = block; current != null && !definite; current = current.parent, depth++) {
+            Integer slot = current.slots.get(name);
+            if (slot != null) {
+                definite = current.definite.contains(name);
+                candidates.add(new Address(name, depth, slot, definite, null));
+            }
+        }
+        Address address = definite ? null : new Address(name, -1, -1, false, null);
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            Address candidate = candidates.get(i);
+            address = new Address(name, candidate.depth, candidate.slot, candidate.definite, address);
+        }
+        return address;
+    }
+
+    /**
+     * Declares every name the AST may define in the current block. Nested
+     * blocks declare their own names when they are entered, so this does not
+     * descend into {@code do}, {@code for} or function bodies.
+     */
+    private void declare(Ast ast) {
+        if (!(ast instanceof Ast.Term)) {
+            return;
+        }
+        Ast.Term term = (Ast.Term) ast;
+        List<Ast> args = term.getArgs();
+        if (linked.test(term.getName())) {
+            switch (term.getName()) {
+                case "do":
+                case "for":
+                    return;
+                case "define":
+                    if (args.size() == 2 && args.get(0) instanceof Ast.Identifier) {
+                        block.declare(((Ast.Identifier) args.get(0)).getName());
+                        declare(args.get(1));
+                    } else if (args.size() == 2 && args.get(0) instanceof Ast.Term) {
+                        block.declare(((Ast.Term) args.get(0)).getName());
+                    }
+                    return;
+            }
+        }
+        args.forEach(this::declare);
+    }
+
+    /**
+     * The variables of a block, in slot order.
+     */
+    static final class Block {
+
+        private final Block parent;
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> slots = new HashMap<>();
+        private final Set<String> definite = new HashSet<>();
+
+        private Block(Block parent) {
+            this.parent = parent;
+        }
+
+        private void declare(String name) {
+            if (!slots.containsKey(name)) {
+                slots.put(name, names.size());
+                names.add(name);
+            }
+        }
+
+        String[] getNames() {
+            return names.toArray(new String[0]);
+        }
+
+    }
+
+    /**
+     * A candidate location of a variable. If the slot at {@code depth} and
+     * {@code slot} has not been defined (and is not {@code definite}), the
+     * {@code outer} candidate is used instead. A negative depth refers to the
+     * global scope, which is looked up by its symbol.
+     */
+    static final class Address {
+
+        final String name;
+        final Symbol symbol;
+        final int depth;
+        final int slot;
+        final boolean definite;
+        final Address outer;
+
+        private Address(String name, int depth, int slot, boolean definite, Address outer) {
+            this.name = name;
+            this.symbol = Symbol.of(name);
+            this.depth = depth;
+            this.slot = slot;
+            this.definite = definite;
+            this.outer = outer;
+        }
+
+        boolean isGlobal() {
+            return depth < 0;
+        }
+
+    }
+
+}
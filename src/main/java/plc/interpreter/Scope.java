@@ -2,14 +2,27 @@ package plc.interpreter;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+/**
+ * The variables of a block, keyed by their {@link Symbol}s so a lookup uses
+ * the precomputed hash and compares keys by identity. The methods taking a
+ * name look up its symbol once and then walk the parents with it. Only
+ * {@code define} creates a symbol for a new name; the other methods treat a
+ * name without one as undefined, so probing arbitrary names does not grow
+ * the symbol table.
+ */
 public final class Scope {
 
     private final Scope parent;
-    private final Map<String, Object> map = new HashMap<>();
+    private final Map<Symbol, Object> map = new HashMap<>();
+    private final AtomicLong version;
+    private boolean observed = false;
 
     public Scope(Scope parent) {
         this.parent = parent;
+        this.version = parent != null ? parent.version : new AtomicLong();
     }
 
     public Scope getParent() {
@@ -17,31 +30,90 @@ public final class Scope {
     }
 
     public void define(String name, Object value) {
-        if (map.containsKey(name)) {
-            throw new EvalException("The identifier " + name + " is already defined in this scope.");
+        define(Symbol.of(name), value);
+    }
+
+    public void define(Symbol symbol, Object value) {
+        if (map.containsKey(symbol)) {
+            throw new EvalException("The identifier " + symbol + " is already defined in this scope.");
         } else {
-            map.put(name, value);
+            map.put(symbol, value);
+            if (observed) {
+                version.incrementAndGet();
+            }
         }
     }
 
     public void set(String name, Object value) throws EvalException {
-        if (map.containsKey(name)) {
-            map.put(name, value);
-        } else if (parent != null) {
-            parent.set(name, value);
-        } else {
-            throw new EvalException("The identifier " + name + " is not defined.");
+        set(symbol(name), value);
+    }
+
+    public void set(Symbol symbol, Object value) throws EvalException {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            if (scope.map.containsKey(symbol)) {
+                if (scope.map.put(symbol, value) instanceof Function) {
+                    version.incrementAndGet();
+                }
+                return;
+            }
+        }
+        throw new EvalException("The identifier " + symbol + " is not defined.");
+    }
+
+    /**
+     * Returns true if the identifier is defined in this scope, ignoring any
+     * parent scopes.
+     */
+    boolean defines(String name) {
+        Symbol symbol = Symbol.find(name);
+        return symbol != null && map.containsKey(symbol);
+    }
+
+    /**
+     * Returns the version of the bindings of this scope's tree, which is
+     * shared by a root scope and all of its descendants. It is incremented
+     * whenever a binding changes in a way that could change the function a
+     * call site cached by the interpreter resolves to: a definition in a
+     * scope a cache depends on, or a function being replaced.
+     */
+    long version() {
+        return version.get();
+    }
+
+    /**
+     * Marks this scope and its parents as used by a cached lookup, so that
+     * later definitions in any of them increment the {@link #version()}.
+     */
+    void observe() {
+        for (Scope scope = this; scope != null && !scope.observed; scope = scope.parent) {
+            scope.observed = true;
         }
     }
 
     public Object lookup(String name) throws EvalException {
-        if (map.containsKey(name)) {
-            return map.get(name);
-        } else if (parent != null) {
-            return parent.lookup(name);
-        } else {
+        return lookup(symbol(name));
+    }
+
+    public Object lookup(Symbol symbol) throws EvalException {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Object value = scope.map.get(symbol);
+            if (value != null || scope.map.containsKey(symbol)) {
+                return value;
+            }
+        }
+        throw new EvalException("The identifier " + symbol + " is not defined.");
+    }
+
+    /**
+     * Returns the existing symbol for a name which is being used rather than
+     * defined, which is undefined if there is none.
+     */
+    private static Symbol symbol(String name) throws EvalException {
+        Symbol symbol = Symbol.find(name);
+        if (symbol == null) {
             throw new EvalException("The identifier " + name + " is not defined.");
         }
+        return symbol;
     }
 
 }
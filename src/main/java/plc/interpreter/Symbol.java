@@ -0,0 +1,143 @@
+package plc.interpreter;
+
+/**
+ * The canonical object for an identifier name. There is exactly one symbol
+ * for each name, so symbols are compared by identity, and each symbol has a
+ * precomputed hash and a dense id (the number of symbols created before it)
+ * which can index into arrays.
+ *
+ * The parser interns identifiers straight from the characters of the input,
+ * so a name which has been seen before does not allocate a new string. The
+ * table is shared by every thread: lookups read it without locking, and only
+ * adding a new symbol is synchronized. Symbols are never removed, which is
+ * fine for the names of a program but means the table should not be used for
+ * arbitrary strings.
+ */
+public final class Symbol {
+
+    private static volatile Symbol[] table = new Symbol[1 << 10];
+    private static int count = 0;
+
+    private final String name;
+    private final int hash;
+    private final int id;
+
+    private Symbol(String name, int hash, int id) {
+        this.name = name;
+        this.hash = hash;
+        this.id = id;
+    }
+
+    /**
+     * Returns the symbol for the given name.
+     */
+    public static Symbol of(String name) {
+        Symbol symbol = find(table, name, 0, name.length(), name.hashCode());
+        return symbol != null ? symbol : add(name, 0, name.length(), name.hashCode());
+    }
+
+    /**
+     * Returns the symbol for the given name if one has been created, or null
+     * without adding the name to the table. This is used for names which are
+     * only looked up, since a name without a symbol cannot be bound.
+     */
+    public static Symbol find(String name) {
+        return find(table, name, 0, name.length(), name.hashCode());
+    }
+
+    /**
+     * Returns the symbol for the characters from start (inclusive) to end
+     * (exclusive), only creating a string for the name if it is new.
+     */
+    static Symbol intern(CharSequence chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        Symbol symbol = find(table, chars, start, end, hash);
+        return symbol != null ? symbol : add(chars, start, end, hash);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Returns the symbol with the given characters in the table, or null. The
+     * hash is the same as {@link String#hashCode()} of the name.
+     */
+    private static Symbol find(Symbol[] table, CharSequence chars, int start, int end, int hash) {
+        int mask = table.length - 1;
+        for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+            Symbol symbol = table[i];
+            if (symbol == null) {
+                return null;
+            } else if (symbol.hash == hash && symbol.matches(chars, start, end)) {
+                return symbol;
+            }
+        }
+    }
+
+    private static synchronized Symbol add(CharSequence chars, int start, int end, int hash) {
+        Symbol symbol = find(table, chars, start, end, hash);
+        if (symbol != null) {
+            return symbol;
+        }
+        Symbol[] current = table;
+        if (2 * (count + 1) > current.length) {
+            Symbol[] resized = new Symbol[2 * current.length];
+            for (Symbol existing : current) {
+                if (existing != null) {
+                    insert(resized, existing);
+                }
+            }
+            current = resized;
+        }
+        symbol = new Symbol(chars.subSequence(start, end).toString(), hash, count++);
+        insert(current, symbol);
+        table = current;
+        return symbol;
+    }
+
+    private static void insert(Symbol[] table, Symbol symbol) {
+        int mask = table.length - 1;
+        int i = spread(symbol.hash) & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = symbol;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean matches(CharSequence chars, int start, int end) {
+        if (chars == name && start == 0 && end == name.length()) {
+            return true;
+        } else if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != chars.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,22 @@
+package plc.interpreter;
+
+/**
+ * A call made in tail position, returned in place of a result so the caller
+ * can make the call after its own frame has been discarded. Calls are run by
+ * a trampoline loop (see {@link JvmCompiler#call(Object, Object[])}), so a
+ * chain of tail calls runs in constant Java stack.
+ *
+ * A tail call is never visible to Whisp code: only the functions which
+ * resolve it can return one.
+ */
+final class TailCall {
+
+    final Object function;
+    final Object[] arguments;
+
+    TailCall(Object function, Object[] arguments) {
+        this.function = function;
+        this.arguments = arguments;
+    }
+
+}
@@ -0,0 +1,156 @@
+package plc.interpreter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A function created by the interpreter's {@code define}. It starts out
+ * evaluating its body with {@link Interpreter#eval(Ast)} and counts how often
+ * it is called and how many loop iterations run inside it. Once the count
+ * reaches the interpreter's compile threshold, the body is compiled by the
+ * {@link JvmCompiler} and later calls run the compiled code instead.
+ *
+ * If the body cannot be compiled the function keeps being interpreted and
+ * compilation is not attempted again, so a failure never changes the result
+ * of a program. The body is also compiled again if a builtin it linked is
+ * later rebound.
+ */
+final class TieredFunction implements Function<List<Ast>, Object> {
+
+    private final Interpreter interpreter;
+    private final Ast.Term signature;
+    private final List<Symbol> params;
+    private final Ast body;
+    private final Scope parent;
+    private int count = 0;
+    private boolean failed = false;
+    private Function<List<Ast>, Object> compiled;
+
+    TieredFunction(Interpreter interpreter, Ast.Term signature, List<Symbol> params, Ast body, Scope parent) {
+        this.interpreter = interpreter;
+        this.signature = signature;
+        this.params = params;
+        this.body = body;
+        this.parent = parent;
+    }
+
+    @Override
+    public Object apply(List<Ast> arguments) {
+        Object[] evaluated = new Object[arguments.size()];
+        for (int i = 0; i < evaluated.length; i++) {
+            evaluated[i] = interpreter.eval(arguments.get(i));
+        }
+        return JvmCompiler.call(this, evaluated);
+    }
+
+    /**
+     * Runs the body with arguments which have already been evaluated. If the
+     * body ends with a call to another user function, that call is returned
+     * as a {@link TailCall} instead of being made here.
+     */
+    Object step(Object[] arguments) {
+        if (compiled == null && !failed) {
+            increment();
+            int threshold = interpreter.getCompileThreshold();
+            if (threshold != Integer.MAX_VALUE && count >= threshold) {
+                compile();
+            }
+        } else if (compiled != null && !JvmCompiler.isCurrent(compiled)) {
+            //A builtin linked into the compiled code has been rebound, so the
+            //body is compiled again against the current bindings.
+            compile();
+        }
+        if (compiled != null) {
+            return JvmCompiler.step(compiled, arguments);
+        }
+        if (params.size() != arguments.length) {
+            throw new EvalException("Invalid number of arguments");
+        }
+        Scope current = interpreter.scope;
+        interpreter.scope = new Scope(parent);
+        for (int i = 0; i < params.size(); i++) {
+            interpreter.scope.define(params.get(i), arguments[i]);
+        }
+        TieredFunction active = interpreter.active;
+        interpreter.active = this;
+        try {
+            Object result = evalTail(body);
+            interpreter.scope = current;
+            return result;
+        } finally {
+            interpreter.active = active;
+        }
+    }
+
+    /**
+     * Evaluates an AST in tail position, which is the body itself or the last
+     * form of a {@code do} in tail position.
+     */
+    private Object evalTail(Ast ast) {
+        while (isBuiltin(ast, "do")) {
+            List<Ast> forms = ((Ast.Term) ast).getArgs();
+            interpreter.scope = new Scope(interpreter.scope);
+            if (forms.isEmpty()) {
+                return Interpreter.VOID;
+            }
+            for (Ast form : forms.subList(0, forms.size() - 1)) {
+                interpreter.eval(form);
+            }
+            ast = forms.get(forms.size() - 1);
+        }
+        if (!(ast instanceof Ast.Term)) {
+            return interpreter.eval(ast);
+        }
+        Ast.Term term = (Ast.Term) ast;
+        Object function = interpreter.scope.lookup(term.getSymbol());
+        if (!JvmCompiler.Body.compiled(function)) {
+            @SuppressWarnings("unchecked")
+            Function<List<Ast>, Object> builtin = (Function<List<Ast>, Object>) Interpreter.requireType(Function.class, function);
+            return builtin.apply(term.getArgs());
+        }
+        Object[] evaluated = new Object[term.getArgs().size()];
+        for (int i = 0; i < evaluated.length; i++) {
+            evaluated[i] = interpreter.eval(term.getArgs().get(i));
+        }
+        return new TailCall(function, evaluated);
+    }
+
+    private boolean isBuiltin(Ast ast, String name) {
+        return ast instanceof Ast.Term && ((Ast.Term) ast).getName().equals(name)
+                && interpreter.scope.lookup(name) == interpreter.builtins.get(name);
+    }
+
+    /**
+     * Counts an iteration of a loop running in the body of this function.
+     */
+    void backEdge() {
+        increment();
+    }
+
+    /**
+     * Increments the count, which stops at {@link Integer#MAX_VALUE} rather
+     * than overflowing in long running loops.
+     */
+    private void increment() {
+        if (count < Integer.MAX_VALUE) {
+            count++;
+        }
+    }
+
+    /**
+     * Returns true if the body has been compiled.
+     */
+    boolean isCompiled() {
+        return compiled != null;
+    }
+
+    private void compile() {
+        try {
+            compiled = interpreter.compiler().compile(signature, body, parent);
+        } catch (RuntimeException | LinkageError e) {
+            compiled = null;
+        }
+        failed = compiled == null;
+    }
+
+}
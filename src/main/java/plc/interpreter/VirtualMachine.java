@@ -0,0 +1,416 @@
+package plc.interpreter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Executes {@link Bytecode} produced by the {@link BytecodeCompiler}. Values
+ * are kept on an operand stack and calls between compiled functions push a
+ * record onto an explicit call stack instead of recursing in Java, so the
+ * whole program runs in a single dispatch loop.
+ *
+ * Variables are stored in {@link Frame}s as with the {@link ClosureCompiler},
+ * and functions which were not compiled to bytecode (such as those defined by
+ * the {@link Interpreter}) are applied to their original ASTs with the frames
+ * copied into the interpreter's scope while they run.
+ */
+public final class VirtualMachine {
+
+    private final Interpreter interpreter;
+
+    public VirtualMachine(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    /**
+     * Executes the bytecode with the interpreter's current scope as the global
+     * scope and returns the resulting value.
+     */
+    public Object execute(Bytecode bytecode) {
+        return run(bytecode, new Frame(interpreter.scope));
+    }
+
+    /**
+     * A function created by executing a {@code define}, which is the compiled
+     * body along with the frame it was defined in.
+     */
+    private final class Closure implements Function<List<Ast>, Object> {
+
+        private final Bytecode function;
+        private final Frame parent;
+
+        private Closure(Bytecode function, Frame parent) {
+            this.function = function;
+            this.parent = parent;
+        }
+
+        private VirtualMachine machine() {
+            return VirtualMachine.this;
+        }
+
+        /**
+         * Calls the function from the interpreter or other host code, which
+         * starts a new dispatch loop for the body.
+         */
+        @Override
+        public Object apply(List<Ast> arguments) {
+            Object[] evaluated = new Object[arguments.size()];
+            for (int i = 0; i < evaluated.length; i++) {
+                evaluated[i] = interpreter.eval(arguments.get(i));
+            }
+            return run(function, enter(this, evaluated, 0, evaluated.length));
+        }
+
+    }
+
+    /**
+     * Checks the arguments of a call and creates the frame for its body.
+     */
+    private static Frame enter(Closure closure, Object[] arguments, int offset, int count) {
+        Bytecode function = closure.function;
+        if (function.params != count) {
+            throw new EvalException("Invalid number of arguments");
+        } else if (function.duplicate != null) {
+            throw new EvalException("The identifier " + function.duplicate + " is already defined in this scope.");
+        }
+        Frame frame = new Frame(closure.parent, function.names);
+        System.arraycopy(arguments, offset, frame.slots, 0, count);
+        return frame;
+    }
+
+    /**
+     * The dispatch loop. Each iteration decodes one instruction from the
+     * current bytecode; {@code CALL} and {@code RETURN} switch between units
+     * by saving and restoring the caller in the call stack, while {@code
+     * TAIL_CALL} switches without saving anything so the callee returns
+     * straight to the caller's caller.
+     */
+    @SuppressWarnings("unchecked")
+    private Object run(Bytecode bytecode, Frame frame) {
+        Object[] stack = new Object[16];
+        int sp = 0;
+        Bytecode[] callers = new Bytecode[8];
+        int[] returns = new int[8];
+        Frame[] frames = new Frame[8];
+        int depth = 0;
+        int[] code = bytecode.code;
+        Object[] constants = bytecode.constants;
+        int pc = 0;
+        while (true) {
+            if (sp == stack.length) {
+                stack = Arrays.copyOf(stack, sp * 2);
+            }
+            switch (code[pc]) {
+                case Bytecode.CONST:
+                    stack[sp++] = constants[code[pc + 1]];
+                    pc += 2;
+                    break;
+                case Bytecode.VOID:
+                    stack[sp++] = Interpreter.VOID;
+                    pc += 1;
+                    break;
+                case Bytecode.POP:
+                    stack[--sp] = null;
+                    pc += 1;
+                    break;
+                case Bytecode.LOAD_LOCAL:
+                    stack[sp++] = frame.get(code[pc + 1], code[pc + 2]);
+                    pc += 3;
+                    break;
+                case Bytecode.LOAD:
+                    stack[sp++] = frame.lookup((Resolver.Address) constants[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Bytecode.STORE:
+                    frame.set((Resolver.Address) constants[code[pc + 1]], stack[sp - 1]);
+                    stack[sp - 1] = Interpreter.VOID;
+                    pc += 2;
+                    break;
+                case Bytecode.DEFINE_LOCAL:
+                    frame.define(code[pc + 1], stack[sp - 1]);
+                    stack[sp - 1] = Interpreter.VOID;
+                    pc += 2;
+                    break;
+                case Bytecode.DEFINE_GLOBAL:
+                    frame.scope.define((String) constants[code[pc + 1]], stack[sp - 1]);
+                    stack[sp - 1] = Interpreter.VOID;
+                    pc += 2;
+                    break;
+                case Bytecode.CHECK_NUMBER:
+                    Interpreter.requireType(BigDecimal.class, stack[sp - 1]);
+                    pc += 1;
+                    break;
+                case Bytecode.ADD: {
+                    int count = code[pc + 1];
+                    BigDecimal result = BigDecimal.ZERO;
+                    for (int i = sp - count; i < sp; i++) {
+                        result = result.add(Interpreter.requireType(BigDecimal.class, stack[i]));
+                    }
+                    sp = push(stack, sp, count, result);
+                    pc += 2;
+                    break;
+                }
+                case Bytecode.SUBTRACT: {
+                    int count = code[pc + 1];
+                    if (count == 0) {
+                        throw new EvalException("Arguments to - cannot be empty");
+                    }
+                    BigDecimal result = (BigDecimal) stack[sp - count];
+                    if (count == 1) {
+                        result = result.negate();
+                    }
+                    for (int i = sp - count + 1; i < sp; i++) {
+                        result = result.subtract((BigDecimal) stack[i]);
+                    }
+                    sp = push(stack, sp, count, result);
+                    pc += 2;
+                    break;
+                }
+                case Bytecode.MULTIPLY: {
+                    int count = code[pc + 1];
+                    BigDecimal result = BigDecimal.ONE;
+                    for (int i = sp - count; i < sp; i++) {
+                        result = result.multiply((BigDecimal) stack[i]);
+                    }
+                    sp = push(stack, sp, count, result);
+                    pc += 2;
+                    break;
+                }
+                case Bytecode.DIVIDE: {
+                    int count = code[pc + 1];
+                    if (count == 0) {
+                        throw new EvalException("Empty Arguments for divide function");
+                    }
+                    BigDecimal result = (BigDecimal) stack[sp - count];
+                    if (count == 1) {
+                        result = BigDecimal.ONE.divide(result, RoundingMode.HALF_EVEN);
+                    }
+                    int scale = result.scale();
+                    for (int i = sp - count + 1; i < sp; i++) {
+                        BigDecimal value = (BigDecimal) stack[i];
+                        scale = Math.max(value.scale(), scale);
+                        result = result.divide(value, scale, RoundingMode.HALF_EVEN);
+                    }
+                    sp = push(stack, sp, count, result);
+                    pc += 2;
+                    break;
+                }
+                case Bytecode.EQUALS:
+                    sp = push(stack, sp, 2, Objects.deepEquals(stack[sp - 2], stack[sp - 1]));
+                    pc += 1;
+                    break;
+                case Bytecode.NOT:
+                    if (!(stack[sp - 1] instanceof Boolean)) {
+                        throw new EvalException("Argument has to be of type boolean");
+                    }
+                    stack[sp - 1] = !(Boolean) stack[sp - 1];
+                    pc += 1;
+                    break;
+                case Bytecode.COMPARE:
+                    stack[sp - 3] = compare(code[pc + 1], stack[sp - 2], stack[sp - 1]) && (Boolean) stack[sp - 3];
+                    stack[sp - 2] = stack[sp - 1];
+                    stack[--sp] = null;
+                    pc += 2;
+                    break;
+                case Bytecode.JUMP:
+                    pc = code[pc + 1];
+                    break;
+                case Bytecode.JUMP_IF_FALSE:
+                    if (Interpreter.requireType(Boolean.class, stack[--sp])) {
+                        pc += 2;
+                    } else {
+                        pc = code[pc + 1];
+                    }
+                    stack[sp] = null;
+                    break;
+                case Bytecode.AND: {
+                    Object value = stack[--sp];
+                    stack[sp] = null;
+                    pc = value instanceof Boolean ? pc + 2 : code[pc + 1];
+                    break;
+                }
+                case Bytecode.OR: {
+                    Object value = stack[--sp];
+                    stack[sp] = null;
+                    if (!(value instanceof Boolean)) {
+                        throw new EvalException("Need a boolean value to evaluate or statement");
+                    }
+                    pc += 1;
+                    break;
+                }
+                case Bytecode.TEST: {
+                    //Cast like the interpreter, which evaluates the argument
+                    //a second time without checking its type again.
+                    Object value = stack[--sp];
+                    stack[sp] = null;
+                    pc = (Boolean) value == (code[pc + 1] != 0) ? code[pc + 2] : pc + 3;
+                    break;
+                }
+                case Bytecode.PRINT: {
+                    int count = code[pc + 1];
+                    for (int i = sp - count; i < sp; i++) {
+                        interpreter.out.print(stack[i]);
+                    }
+                    interpreter.out.println();
+                    sp = push(stack, sp, count, Interpreter.VOID);
+                    pc += 2;
+                    break;
+                }
+                case Bytecode.LIST: {
+                    int count = code[pc + 1];
+                    List<Object> values = new LinkedList<>(Arrays.asList(stack).subList(sp - count, sp));
+                    sp = push(stack, sp, count, values);
+                    pc += 2;
+                    break;
+                }
+                case Bytecode.RANGE: {
+                    BigDecimal[] bounds = (BigDecimal[]) constants[code[pc + 1]];
+                    stack[sp++] = Range.of(bounds[0], bounds[1]);
+                    pc += 2;
+                    break;
+                }
+                case Bytecode.FAIL:
+                    throw new EvalException((String) constants[code[pc + 1]]);
+                case Bytecode.FUNCTION:
+                    stack[sp++] = new Closure((Bytecode) constants[code[pc + 1]], frame);
+                    pc += 2;
+                    break;
+                case Bytecode.PREPARE: {
+                    Function<?, ?> function = Interpreter.requireType(Function.class, stack[sp - 1]);
+                    if (function instanceof Closure && ((Closure) function).machine() == this) {
+                        pc += 4;
+                    } else {
+                        stack[sp - 1] = apply(function, (List<Ast>) constants[code[pc + 2]], frame);
+                        pc = code[pc + 3];
+                    }
+                    break;
+                }
+                case Bytecode.CALL:
+                case Bytecode.TAIL_CALL: {
+                    int count = code[pc + 1];
+                    Closure closure = (Closure) stack[sp - count - 1];
+                    Frame callee = enter(closure, stack, sp - count, count);
+                    Arrays.fill(stack, sp - count - 1, sp, null);
+                    sp -= count + 1;
+                    if (code[pc] == Bytecode.CALL) {
+                        if (depth == callers.length) {
+                            callers = Arrays.copyOf(callers, depth * 2);
+                            returns = Arrays.copyOf(returns, depth * 2);
+                            frames = Arrays.copyOf(frames, depth * 2);
+                        }
+                        callers[depth] = bytecode;
+                        returns[depth] = pc + 2;
+                        frames[depth] = frame;
+                        depth++;
+                    }
+                    bytecode = closure.function;
+                    code = bytecode.code;
+                    constants = bytecode.constants;
+                    frame = callee;
+                    pc = 0;
+                    break;
+                }
+                case Bytecode.RETURN:
+                    if (depth == 0) {
+                        return stack[sp - 1];
+                    }
+                    depth--;
+                    bytecode = callers[depth];
+                    code = bytecode.code;
+                    constants = bytecode.constants;
+                    pc = returns[depth];
+                    frame = frames[depth];
+                    callers[depth] = null;
+                    frames[depth] = null;
+                    break;
+                case Bytecode.ENTER:
+                    frame = new Frame(frame, (String[]) constants[code[pc + 1]]);
+                    pc += 2;
+                    break;
+                case Bytecode.EXIT:
+                    frame = frame.parent;
+                    pc += 1;
+                    break;
+                case Bytecode.FOR: {
+                    Object values = stack[sp - 1];
+                    if (!Range.isIterable(values)) {
+                        throw new EvalException("Need a linked list for the for loop");
+                    } else if (!((List<?>) values).isEmpty() && frame.slots[0] != null) {
+                        throw new EvalException("The identifier " + frame.names[0] + " is already defined in this scope.");
+                    }
+                    stack[sp - 1] = ((List<?>) values).iterator();
+                    pc += 1;
+                    break;
+                }
+                case Bytecode.NEXT: {
+                    Iterator<?> iterator = (Iterator<?>) stack[sp - 1];
+                    if (iterator.hasNext()) {
+                        frame.slots[0] = iterator.next();
+                        pc += 2;
+                    } else {
+                        stack[--sp] = null;
+                        pc = code[pc + 1];
+                    }
+                    break;
+                }
+                default:
+                    throw new AssertionError(code[pc]);
+            }
+        }
+    }
+
+    /**
+     * Replaces the top {@code count} values of the stack with the result,
+     * returning the new stack pointer.
+     */
+    private static int push(Object[] stack, int sp, int count, Object result) {
+        Arrays.fill(stack, sp - count, sp, null);
+        stack[sp - count] = result;
+        return sp - count + 1;
+    }
+
+    /**
+     * Compares a pair of adjacent values. Every pair is type checked even
+     * once the result is known, like the interpreter.
+     */
+    private static boolean compare(int comparison, Object left, Object right) {
+        int compared;
+        if (left instanceof BigDecimal && right instanceof BigDecimal) {
+            compared = ((BigDecimal) left).compareTo((BigDecimal) right);
+        } else if (left instanceof String && right instanceof String) {
+            compared = ((String) left).compareTo((String) right);
+        } else {
+            throw new EvalException("values have to be of same type");
+        }
+        switch (comparison) {
+            case Bytecode.LESS: return compared < 0;
+            case Bytecode.GREATER: return compared > 0;
+            case Bytecode.LESS_EQUAL: return compared <= 0;
+            default: return compared >= 0;
+        }
+    }
+
+    /**
+     * Applies a function which was not compiled to bytecode to the original
+     * ASTs, with the frames copied into the interpreter's scope.
+     */
+    @SuppressWarnings("unchecked")
+    private Object apply(Function<?, ?> function, List<Ast> args, Frame frame) {
+        Scope current = interpreter.scope;
+        Scope bridge = frame.toScope();
+        interpreter.scope = bridge;
+        try {
+            return ((Function<List<Ast>, Object>) function).apply(args);
+        } finally {
+            interpreter.scope = current;
+            frame.update(bridge);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package plc.scanner;
+
+import java.util.Iterator;
+
+/**
+ * A window over the elements of an iterator, such as the tokens of a lexer,
+ * which are pulled as they are first read and kept in a ring buffer until
+ * they are released. Like a {@link Source}, elements are read by their index
+ * from the start of the iterator, so a parser can peek ahead and look back at
+ * the tokens around its position without the full list ever existing.
+ *
+ * The ring only grows if more elements are kept than it can hold, which for
+ * a parser is its lookahead plus however many tokens it looks back at, so it
+ * stays small and the tokens being parsed stay in cache.
+ */
+public final class Lookahead<T> {
+
+    private final Iterator<? extends T> source;
+    private Object[] ring = new Object[8];
+    private int size = 0;
+    private int released = 0;
+
+    public Lookahead(Iterator<? extends T> source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns true if the iterator has an element at the given index, pulling
+     * elements from it up to that index if they have not been read yet.
+     */
+    public boolean has(int index) {
+        while (index >= size && source.hasNext()) {
+            if (size - Math.min(released, size) == ring.length) {
+                grow();
+            }
+            ring[size & (ring.length - 1)] = source.next();
+            size++;
+        }
+        return index >= 0 && index < size;
+    }
+
+    /**
+     * Returns the element at the given index, which must not have been
+     * released.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < released || !has(index)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Released: " + released + ", Size: " + size);
+        }
+        return (T) ring[index & (ring.length - 1)];
+    }
+
+    /**
+     * Releases the elements before the given index, which will not be read
+     * again, so their slots in the ring can be reused.
+     */
+    public void release(int index) {
+        released = Math.max(released, index);
+    }
+
+    private void grow() {
+        Object[] grown = new Object[2 * ring.length];
+        for (int i = size - ring.length; i < size; i++) {
+            grown[i & (grown.length - 1)] = ring[i & (ring.length - 1)];
+        }
+        ring = grown;
+    }
+
+}
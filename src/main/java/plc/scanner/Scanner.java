@@ -0,0 +1,178 @@
+package plc.scanner;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+
+/**
+ * The scanning core shared by the lexers of {@code plc.interpreter} and
+ * {@code plc.compiler}. It keeps the position in the {@link Source} and the
+ * length of the literal being built, and classifies characters with a lookup
+ * table instead of regular expressions, so checking a character is a single
+ * array access.
+ *
+ * Character classes are bit masks and can be combined to test for any of
+ * them, for example {@code is(0, LETTER | DIGIT)}. Only ASCII characters
+ * belong to a class; every other character is in none of them.
+ */
+public abstract class Scanner {
+
+    /** The characters matched by the regex {@code \s}: {@code [ \t\n\x0B\f\r]}. */
+    public static final int WHITESPACE = 1;
+    /** The characters {@code [ \t\n\r]}. */
+    public static final int BLANK = 1 << 1;
+    /** The characters {@code [0-9]}. */
+    public static final int DIGIT = 1 << 2;
+    /** The characters {@code [A-Za-z]}. */
+    public static final int LETTER = 1 << 3;
+    /** The character {@code _}. */
+    public static final int UNDERSCORE = 1 << 4;
+    /** The characters {@code * / : ! ? < > =}. */
+    public static final int SYMBOL = 1 << 5;
+    /** The characters {@code [+-]}. */
+    public static final int SIGN = 1 << 6;
+    /** The character {@code .}. */
+    public static final int DOT = 1 << 7;
+    /** The character {@code "}. */
+    public static final int QUOTE = 1 << 8;
+    /** The character {@code \}. */
+    public static final int BACKSLASH = 1 << 9;
+    /** The characters which may follow a backslash: {@code [bnrt'"\\]}. */
+    public static final int ESCAPE = 1 << 10;
+
+    private static final int[] CLASSES = new int[128];
+
+    static {
+        classify(" \t\n\u000B\f\r", WHITESPACE);
+        classify(" \t\n\r", BLANK);
+        classify("0123456789", DIGIT);
+        classify("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz", LETTER);
+        classify("_", UNDERSCORE);
+        classify("*/:!?<>=", SYMBOL);
+        classify("+-", SIGN);
+        classify(".", DOT);
+        classify("\"", QUOTE);
+        classify("\\", BACKSLASH);
+        classify("bnrt'\"\\", ESCAPE);
+    }
+
+    private static void classify(String characters, int mask) {
+        for (int i = 0; i < characters.length(); i++) {
+            CLASSES[characters.charAt(i)] |= mask;
+        }
+    }
+
+    protected final Source input;
+    public int index = 0;
+    public int length = 0;
+
+    protected Scanner(CharSequence input) {
+        this(Source.of(input));
+    }
+
+    protected Scanner(Source input) {
+        this.input = input;
+    }
+
+    /**
+     * Returns the classes of the given character, or 0 if it is not ASCII.
+     */
+    public static int classes(char c) {
+        return c < CLASSES.length ? CLASSES[c] : 0;
+    }
+
+    /**
+     * Returns an iterator over the values returned by {@code next} until it
+     * returns null, such as the tokens lexed from a stream.
+     */
+    public static <T> Iterator<T> iterate(Supplier<T> next) {
+        return new Iterator<T>() {
+
+            private T value = null;
+
+            @Override
+            public boolean hasNext() {
+                if (value == null) {
+                    value = next.get();
+                }
+                return value != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T result = value;
+                value = null;
+                return result;
+            }
+
+        };
+    }
+
+    /**
+     * Returns true if there is a character at index + offset.
+     */
+    public final boolean has(int offset) {
+        return input.has(index + offset);
+    }
+
+    /**
+     * Returns true if there is a character at index + offset and it belongs to
+     * any of the given classes.
+     */
+    public final boolean is(int offset, int mask) {
+        return has(offset) && (classes(input.charAt(index + offset)) & mask) != 0;
+    }
+
+    /**
+     * Returns true if the character at index + offset is the given one.
+     */
+    public final boolean is(int offset, char c) {
+        return has(offset) && input.charAt(index + offset) == c;
+    }
+
+    /**
+     * Advances to the next character, incrementing the current index and
+     * length of the literal being built.
+     */
+    public final void advance() {
+        index++;
+        length++;
+    }
+
+    /**
+     * Advances past every following character which belongs to any of the
+     * given classes.
+     */
+    public final void advanceWhile(int mask) {
+        while (is(0, mask)) {
+            advance();
+        }
+    }
+
+    /**
+     * Returns the index of the literal being built.
+     */
+    public final int start() {
+        return index - length;
+    }
+
+    /**
+     * Returns the literal being built, which is the characters from {@link
+     * #start()} up to the current index.
+     */
+    public final String literal() {
+        return input.substring(index - length, index);
+    }
+
+    /**
+     * Releases the characters before the literal being built, which will not
+     * be read again (see {@link Source#release(int)}).
+     */
+    public final void release() {
+        input.release(index - length);
+    }
+
+}
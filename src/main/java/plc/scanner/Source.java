@@ -0,0 +1,301 @@
+package plc.scanner;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The characters read by a {@link Scanner}, addressed by their index from the
+ * start of the input. A source may be a string or decoded incrementally from
+ * bytes, in which case only the characters which have not been released are
+ * kept in memory.
+ */
+public abstract class Source {
+
+    static final int CHUNK = 1 << 16;
+
+    /**
+     * Returns a source for the given characters.
+     */
+    public static Source of(CharSequence input) {
+        return new Text(input);
+    }
+
+    /**
+     * Returns a source which decodes the bytes read from the channel as they
+     * are needed. The channel is not closed by the source.
+     */
+    public static Source of(ReadableByteChannel channel, Charset charset) {
+        return new Decoded(channel::read, charset, CHUNK);
+    }
+
+    /**
+     * Returns a source which reads characters from the reader as they are
+     * needed. The reader is not closed by the source.
+     */
+    public static Source of(Reader reader) {
+        return new Read(reader, CHUNK);
+    }
+
+    /**
+     * Returns a source which decodes the file at the given path, which is
+     * memory-mapped so the operating system pages it in as it is read.
+     */
+    public static Source of(Path path, Charset charset) throws IOException {
+        List<ByteBuffer> segments = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (long position = 0; position < channel.size(); position += Integer.MAX_VALUE) {
+                long size = Math.min(channel.size() - position, Integer.MAX_VALUE);
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+            }
+        }
+        return new Decoded(new Segments(segments), charset, CHUNK);
+    }
+
+    /**
+     * Returns true if there is a character at the given index.
+     */
+    public abstract boolean has(int index);
+
+    /**
+     * Returns the character at the given index, which must not have been
+     * released.
+     */
+    public abstract char charAt(int index);
+
+    /**
+     * Returns the characters from start (inclusive) to end (exclusive), which
+     * must not have been released.
+     */
+    public abstract String substring(int start, int end);
+
+    /**
+     * Indicates that characters before the given index will not be read
+     * again, so they no longer need to be kept in memory.
+     */
+    public void release(int index) {}
+
+    private static final class Text extends Source {
+
+        private final CharSequence input;
+
+        private Text(CharSequence input) {
+            this.input = input;
+        }
+
+        @Override
+        public boolean has(int index) {
+            return index < input.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return input.charAt(index);
+        }
+
+        @Override
+        public String substring(int start, int end) {
+            return input.subSequence(start, end).toString();
+        }
+
+    }
+
+    /**
+     * Reads bytes into a buffer, returning -1 at the end of the input (as
+     * {@link ReadableByteChannel#read(ByteBuffer)}).
+     */
+    interface Input {
+
+        int read(ByteBuffer buffer) throws IOException;
+
+    }
+
+    /**
+     * The segments of a memory-mapped file, which are read in order.
+     */
+    private static final class Segments implements Input {
+
+        private final List<ByteBuffer> segments;
+        private int current = 0;
+
+        private Segments(List<ByteBuffer> segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer) {
+            while (current < segments.size() && !segments.get(current).hasRemaining()) {
+                current++;
+            }
+            if (current == segments.size()) {
+                return -1;
+            }
+            ByteBuffer segment = segments.get(current);
+            ByteBuffer slice = segment.duplicate();
+            int count = Math.min(buffer.remaining(), segment.remaining());
+            slice.limit(slice.position() + count);
+            buffer.put(slice);
+            segment.position(segment.position() + count);
+            return count;
+        }
+
+    }
+
+    /**
+     * A window of characters, which starts at the first character which has
+     * not been released and grows only if a single token is longer than it.
+     * Subclasses read more characters into the window as they are needed.
+     */
+    abstract static class Window extends Source {
+
+        private char[] window;
+        private int offset = 0;
+        private int length = 0;
+        private int released = 0;
+        private boolean done = false;
+
+        Window(int chunk) {
+            this.window = new char[chunk];
+        }
+
+        @Override
+        public boolean has(int index) {
+            while (index >= offset + length && !done) {
+                fill();
+            }
+            return index < offset + length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < offset || !has(index)) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return window[index - offset];
+        }
+
+        @Override
+        public String substring(int start, int end) {
+            if (start < offset || start > end || end > start && !has(end - 1)) {
+                throw new IndexOutOfBoundsException("Range: " + start + " to " + end);
+            }
+            return new String(window, start - offset, end - start);
+        }
+
+        @Override
+        public void release(int index) {
+            released = Math.max(released, index);
+        }
+
+        /**
+         * Discards the released characters and reads more of the input. The
+         * window always has room for a surrogate pair.
+         */
+        private void fill() {
+            int discarded = Math.min(released - offset, length);
+            if (discarded > 0) {
+                System.arraycopy(window, discarded, window, 0, length - discarded);
+                offset += discarded;
+                length -= discarded;
+            }
+            if (window.length - length < 2) {
+                window = Arrays.copyOf(window, window.length * 2 + 2);
+            }
+            CharBuffer chars = CharBuffer.wrap(window, length, window.length - length);
+            done = !read(chars);
+            length = chars.position();
+        }
+
+        /**
+         * Reads characters into the buffer, returning false once the end of
+         * the input has been reached and nothing more will be read.
+         */
+        abstract boolean read(CharBuffer chars);
+
+    }
+
+    /**
+     * Decodes bytes into the window of characters.
+     */
+    static final class Decoded extends Window {
+
+        /**
+         * The least number of bytes read at once, so the encoded form of any
+         * character fits in the buffer.
+         */
+        private static final int MIN_BYTES = 16;
+
+        private final Input input;
+        private final CharsetDecoder decoder;
+        private final ByteBuffer bytes;
+        private boolean ended = false;
+        private boolean flushing = false;
+
+        Decoded(Input input, Charset charset, int chunk) {
+            super(chunk);
+            this.input = input;
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.bytes = ByteBuffer.allocate(Math.max(chunk, MIN_BYTES));
+        }
+
+        @Override
+        boolean read(CharBuffer chars) {
+            try {
+                if (!ended) {
+                    ended = input.read(bytes) < 0;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            bytes.flip();
+            CoderResult result = flushing ? decoder.flush(chars) : decoder.decode(bytes, chars, ended);
+            bytes.compact();
+            if (ended && result.isUnderflow()) {
+                boolean flushed = flushing;
+                flushing = true;
+                return !flushed;
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Reads characters from a {@link Reader} into the window.
+     */
+    static final class Read extends Window {
+
+        private final Reader reader;
+
+        Read(Reader reader, int chunk) {
+            super(chunk);
+            this.reader = reader;
+        }
+
+        @Override
+        boolean read(CharBuffer chars) {
+            try {
+                return reader.read(chars) >= 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+}
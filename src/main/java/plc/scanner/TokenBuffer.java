@@ -0,0 +1,131 @@
+package plc.scanner;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * The tokens lexed from an input, packed into a single {@code int[]} instead
+ * of a list of token objects. Each token takes three ints: the ordinal of its
+ * type, the index of its first character and its length. Literals are not
+ * copied out of the input; they are read as {@link CharSequence} views or
+ * compared in place with {@link #matches(int, String)}, so only the literals
+ * which end up in the AST are ever turned into strings.
+ *
+ * The type is an ordinal so the buffer can be shared by the lexers of {@code
+ * plc.interpreter} and {@code plc.compiler}, which each have their own enum
+ * of token types.
+ */
+public final class TokenBuffer {
+
+    private static final int TYPE = 0;
+    private static final int START = 1;
+    private static final int LENGTH = 2;
+    private static final int STRIDE = 3;
+
+    private final CharSequence input;
+    private int[] tokens = new int[STRIDE * 16];
+    private int size = 0;
+
+    public TokenBuffer(CharSequence input) {
+        this.input = input;
+    }
+
+    /**
+     * Appends a token of the given type covering {@code length} characters of
+     * the input from {@code start}.
+     */
+    public void add(int type, int start, int length) {
+        if (STRIDE * size == tokens.length) {
+            tokens = Arrays.copyOf(tokens, tokens.length * 2);
+        }
+        int offset = STRIDE * size++;
+        tokens[offset + TYPE] = type;
+        tokens[offset + START] = start;
+        tokens[offset + LENGTH] = length;
+    }
+
+    /**
+     * Returns the characters the tokens were lexed from.
+     */
+    public CharSequence input() {
+        return input;
+    }
+
+    /**
+     * Returns the number of tokens.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ordinal of the type of the i-th token.
+     */
+    public int type(int i) {
+        return tokens[offset(i) + TYPE];
+    }
+
+    /**
+     * Returns the index in the input of the first character of the i-th token.
+     */
+    public int start(int i) {
+        return tokens[offset(i) + START];
+    }
+
+    /**
+     * Returns the number of characters of the i-th token.
+     */
+    public int length(int i) {
+        return tokens[offset(i) + LENGTH];
+    }
+
+    /**
+     * Returns a view of the literal of the i-th token, which reads the
+     * characters of the input without copying them.
+     */
+    public CharSequence literal(int i) {
+        int start = start(i);
+        return CharBuffer.wrap(input, start, start + length(i));
+    }
+
+    /**
+     * Returns a copy of the literal of the i-th token as a string, for when
+     * the literal has to outlive the input such as in the AST.
+     */
+    public String string(int i) {
+        int start = start(i);
+        return input.subSequence(start, start + length(i)).toString();
+    }
+
+    /**
+     * Returns true if the literal of the i-th token is the given string,
+     * comparing the characters of the input in place.
+     */
+    public boolean matches(int i, String literal) {
+        int start = start(i);
+        if (length(i) != literal.length()) {
+            return false;
+        }
+        for (int j = 0; j < literal.length(); j++) {
+            if (input.charAt(start + j) != literal.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases the unused capacity of the buffer once lexing is finished.
+     */
+    public void trimToSize() {
+        tokens = Arrays.copyOf(tokens, STRIDE * size);
+    }
+
+    private int offset(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+        return STRIDE * i;
+    }
+
+}
@@ -5,7 +5,15 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
-
+import plc.scanner.TokenBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Stream;
@@ -188,6 +196,37 @@ final class LexerTests {
         Assertions.assertEquals(expected, Lexer.lex(input));
     }
 
+    @Test
+    void testStreams() throws IOException {
+        String input = "LET x: INTEGER = 1.5 + \"str\" != y;\n  WHILE x == 0 DO END";
+        Path path = Files.createTempFile("lexer", ".txt");
+        try {
+            Files.write(path, input.getBytes(StandardCharsets.UTF_8));
+            List<Token> tokens = new ArrayList<>();
+            Lexer.tokens(path).forEachRemaining(tokens::add);
+            Assertions.assertEquals(Lexer.lex(input), tokens);
+        } finally {
+            Files.delete(path);
+        }
+        List<Token> tokens = new ArrayList<>();
+        Lexer.tokens(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))))
+                .forEachRemaining(tokens::add);
+        Assertions.assertEquals(Lexer.lex(input), tokens);
+    }
+
+    @Test
+    void testPack() {
+        String input = "LET x: INTEGER = 1.5 + \"str\" != y;\n  WHILE x == 0 DO END";
+        List<Token> expected = Lexer.lex(input);
+        TokenBuffer tokens = Lexer.pack(input);
+        Assertions.assertEquals(expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = expected.get(i);
+            Assertions.assertEquals(token, new Token(Token.Type.values()[tokens.type(i)], tokens.string(i), tokens.start(i)));
+            Assertions.assertTrue(tokens.matches(i, token.getLiteral()));
+        }
+    }
+
     /**
      * Tests that the input lexes to the (single) expected token if successful,
      * else throws a {@link ParseException} otherwise.
@@ -9,6 +9,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
@@ -373,6 +374,58 @@ final class ParserTests {
                                 new Ast.Expression.Variable("expr1"),
                                 new Ast.Expression.Variable("expr2")
                         )
+                ),
+                Arguments.of("Precedence",
+                        Arrays.asList(
+                                new Token(Token.Type.IDENTIFIER, "expr1", -1),
+                                new Token(Token.Type.OPERATOR, "+", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr2", -1),
+                                new Token(Token.Type.OPERATOR, "*", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr3", -1),
+                                new Token(Token.Type.OPERATOR, "!=", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr4", -1),
+                                new Token(Token.Type.OPERATOR, "/", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr5", -1)
+                        ),
+                        new Ast.Expression.Binary("!=",
+                                new Ast.Expression.Binary("+",
+                                        new Ast.Expression.Variable("expr1"),
+                                        new Ast.Expression.Binary("*",
+                                                new Ast.Expression.Variable("expr2"),
+                                                new Ast.Expression.Variable("expr3")
+                                        )
+                                ),
+                                new Ast.Expression.Binary("/",
+                                        new Ast.Expression.Variable("expr4"),
+                                        new Ast.Expression.Variable("expr5")
+                                )
+                        )
+                ),
+                Arguments.of("Left Associative",
+                        Arrays.asList(
+                                new Token(Token.Type.IDENTIFIER, "expr1", -1),
+                                new Token(Token.Type.OPERATOR, "-", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr2", -1),
+                                new Token(Token.Type.OPERATOR, "+", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr3", -1),
+                                new Token(Token.Type.OPERATOR, "==", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr4", -1),
+                                new Token(Token.Type.OPERATOR, "==", -1),
+                                new Token(Token.Type.IDENTIFIER, "expr5", -1)
+                        ),
+                        new Ast.Expression.Binary("==",
+                                new Ast.Expression.Binary("==",
+                                        new Ast.Expression.Binary("+",
+                                                new Ast.Expression.Binary("-",
+                                                        new Ast.Expression.Variable("expr1"),
+                                                        new Ast.Expression.Variable("expr2")
+                                                ),
+                                                new Ast.Expression.Variable("expr3")
+                                        ),
+                                        new Ast.Expression.Variable("expr4")
+                                ),
+                                new Ast.Expression.Variable("expr5")
+                        )
                 )
         );
     }
@@ -538,11 +591,12 @@ final class ParserTests {
      * to be thrown (not used in the provided tests).
      */
     private static <T extends Ast> void test(List<Token> tokens, T expected, Function<Parser, T> function) {
-        Parser parser = new Parser(tokens);
-        if (expected != null) {
-            Assertions.assertEquals(expected, function.apply(parser));
-        } else {
-            Assertions.assertThrows(ParseException.class, () -> function.apply(parser));
+        for (Parser parser : Arrays.asList(new Parser(tokens), new Parser(tokens.iterator()))) {
+            if (expected != null) {
+                Assertions.assertEquals(expected, function.apply(parser));
+            } else {
+                Assertions.assertThrows(ParseException.class, () -> function.apply(parser));
+            }
         }
     }
 
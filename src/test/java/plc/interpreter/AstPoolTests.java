@@ -0,0 +1,105 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class AstPoolTests {
+
+    @Test
+    void testParse() {
+        String input = "(f (+ x 1) \"ok\" 0) (g (+ x 1) \"ok\" 0 0.0) [f (+ x 1) \"ok\" 0]";
+        AstPool pool = new AstPool();
+        List<Ast> forms = ((Ast.Term) Parser.parse(input, pool)).getArgs();
+        Assertions.assertEquals(Parser.parse(input), new Ast.Term("source", forms));
+        Ast.Term f = (Ast.Term) forms.get(0);
+        Ast.Term g = (Ast.Term) forms.get(1);
+        Assertions.assertSame(f, forms.get(2));
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertSame(f.getArgs().get(i), g.getArgs().get(i));
+        }
+        Assertions.assertNotSame(g.getArgs().get(2), g.getArgs().get(3));
+        Assertions.assertSame(f, ((Ast.Term) Parser.parse("(f (+ x 1) \"ok\" 0)", pool)).getArgs().get(0));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> f.getArgs().add(new Ast.Identifier("y")));
+    }
+
+    @Test
+    void testIntern() {
+        AstPool pool = new AstPool();
+        Ast ast = Parser.parse("(a (b 1 \"s\") [c (b 1 \"s\") x] (e)) (d)");
+        Ast interned = pool.intern(ast);
+        Assertions.assertEquals(ast, interned);
+        Ast.Term a = (Ast.Term) ((Ast.Term) interned).getArgs().get(0);
+        Assertions.assertSame(a.getArgs().get(0), ((Ast.Term) a.getArgs().get(1)).getArgs().get(0));
+        Assertions.assertSame(interned, pool.intern(interned));
+        Assertions.assertSame(a, ((Ast.Term) Parser.parse("(a (b 1 \"s\") [c (b 1 \"s\") x] (e))", pool)).getArgs().get(0));
+    }
+
+    @Test
+    void testDeepNesting() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            input.append("(a ");
+        }
+        for (int i = 0; i < 100000; i++) {
+            input.append(')');
+        }
+        AstPool pool = new AstPool();
+        Ast parsed = ((Ast.Term) Parser.parse(input.toString(), pool)).getArgs().get(0);
+        Ast interned = pool.intern(((Ast.Term) Parser.parse(input.toString())).getArgs().get(0));
+        Assertions.assertSame(parsed, interned);
+    }
+
+    @Test
+    void testEval() {
+        //The bodies of f and g are the same term, which is evaluated in the
+        //scope of each call.
+        String input = "(define (f x) (+ x 1)) (define (g x) (+ x 1)) (list (f 1) (g 2) (f 3))";
+        List<Ast> forms = ((Ast.Term) Parser.parse(input, new AstPool())).getArgs();
+        Interpreter interpreter = new Interpreter(new PrintWriter(new StringWriter()), new Scope(null));
+        Object result = null;
+        for (Ast form : forms) {
+            result = interpreter.eval(form);
+        }
+        Assertions.assertEquals(Arrays.asList(BigDecimal.valueOf(2), BigDecimal.valueOf(3), BigDecimal.valueOf(4)), result);
+    }
+
+    @Test
+    void testEvalThreads() throws InterruptedException {
+        //Each interpreter binds f to a different function, so a call site
+        //cached by one must never be used by the other.
+        AstPool pool = new AstPool();
+        Ast call = ((Ast.Term) Parser.parse("(f)", pool)).getArgs().get(0);
+        List<Thread> threads = new ArrayList<>();
+        List<AssertionError> errors = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            BigDecimal value = BigDecimal.valueOf(t);
+            Interpreter interpreter = new Interpreter(new PrintWriter(new StringWriter()), new Scope(null));
+            interpreter.eval(((Ast.Term) Parser.parse("(define (f) " + t + ")", pool)).getArgs().get(0));
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1000000; i++) {
+                    Object result = interpreter.eval(call);
+                    if (!value.equals(result)) {
+                        synchronized (errors) {
+                            errors.add(new AssertionError(value + " != " + result));
+                        }
+                        return;
+                    }
+                }
+            });
+            threads.add(thread);
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertTrue(errors.isEmpty(), errors.toString());
+    }
+
+}
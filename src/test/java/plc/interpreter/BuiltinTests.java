@@ -0,0 +1,69 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.stream.Stream;
+
+final class BuiltinTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testArity(String test, String input, Object expected) {
+        Interpreter interpreter = new Interpreter(new PrintWriter(new StringWriter()), new Scope(null));
+        if (expected != null) {
+            Assertions.assertEquals(expected, eval(interpreter, input));
+        } else {
+            Assertions.assertThrows(EvalException.class, () -> eval(interpreter, input));
+        }
+    }
+
+    private static Stream<Arguments> testArity() {
+        return Stream.of(
+                Arguments.of("Add Zero", "(+)", BigDecimal.ZERO),
+                Arguments.of("Add One", "(+ 1.50)", new BigDecimal("1.50")),
+                Arguments.of("Add Two", "(+ 1 2)", BigDecimal.valueOf(3)),
+                Arguments.of("Add Many", "(+ 1 2 3 4)", BigDecimal.valueOf(10)),
+                Arguments.of("Add Invalid", "(+ 1 \"a\")", null),
+                Arguments.of("Subtract Zero", "(-)", null),
+                Arguments.of("Subtract One", "(- 2)", BigDecimal.valueOf(-2)),
+                Arguments.of("Subtract Two", "(- 5 2)", BigDecimal.valueOf(3)),
+                Arguments.of("Subtract Many", "(- 10 1 2 3)", BigDecimal.valueOf(4)),
+                Arguments.of("Multiply Zero", "(*)", BigDecimal.ONE),
+                Arguments.of("Multiply Two", "(* 1.5 2)", new BigDecimal("3.0")),
+                Arguments.of("Multiply Many", "(* 1 2 3 4)", BigDecimal.valueOf(24)),
+                Arguments.of("Divide Zero", "(/)", null),
+                Arguments.of("Divide One", "(/ 2)", BigDecimal.ZERO),
+                Arguments.of("Divide Two", "(/ 1.00 3)", new BigDecimal("0.33")),
+                Arguments.of("Divide Many", "(/ 100 2 5)", BigDecimal.valueOf(10)),
+                Arguments.of("Nested", "(+ 1 (+ 2 (+ 3 4 5) 6) (* 2 (/ 8 2 2)))", BigDecimal.valueOf(25))
+        );
+    }
+
+    @Test
+    void testPrintOrder() {
+        StringWriter writer = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(writer, true), new Scope(null));
+        eval(interpreter, "(print 1 (print 2 3 4) 5)");
+        String separator = System.lineSeparator();
+        Assertions.assertEquals("234" + separator + "1" + Interpreter.VOID + "5" + separator, writer.toString());
+    }
+
+    @Test
+    void testErrorInArgument() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(new StringWriter()), new Scope(null));
+        Assertions.assertThrows(EvalException.class, () -> eval(interpreter, "(+ 1 2 (+ 3 4 undefined))"));
+        Assertions.assertEquals(BigDecimal.valueOf(6), eval(interpreter, "(+ 1 2 3)"));
+    }
+
+    private static Object eval(Interpreter interpreter, String input) {
+        return interpreter.eval(((Ast.Term) Parser.parse(input)).getArgs().get(0));
+    }
+
+}
@@ -0,0 +1,110 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+final class CallSiteCacheTests {
+
+    @Test
+    void testCached() {
+        Interpreter interpreter = interpreter();
+        Ast.Term ast = parse("(+ 1 2)");
+        Assertions.assertEquals(BigDecimal.valueOf(3), interpreter.eval(ast));
+        Assertions.assertSame(interpreter.builtins.get("+"), ast.cache.function);
+        Assertions.assertSame(interpreter.scope, ast.cache.get());
+        Assertions.assertEquals(BigDecimal.valueOf(3), interpreter.eval(ast));
+    }
+
+    @Test
+    void testRebindBuiltin() {
+        Interpreter interpreter = interpreter();
+        Ast.Term ast = parse("(+ 2 3)");
+        Assertions.assertEquals(BigDecimal.valueOf(5), interpreter.eval(ast));
+        interpreter.eval(parse("(set! + *)"));
+        Assertions.assertEquals(BigDecimal.valueOf(6), interpreter.eval(ast));
+    }
+
+    @Test
+    void testShadowBuiltin() {
+        Interpreter interpreter = interpreter();
+        interpreter.scope = new Scope(interpreter.scope);
+        Ast.Term ast = parse("(+ 2 3)");
+        Assertions.assertEquals(BigDecimal.valueOf(5), interpreter.eval(ast));
+        interpreter.eval(parse("(define (+ x y) (- x y))"));
+        Assertions.assertEquals(BigDecimal.valueOf(-1), interpreter.eval(ast));
+    }
+
+    @Test
+    void testShadowInParent() {
+        Interpreter interpreter = interpreter();
+        Scope parent = new Scope(interpreter.scope);
+        interpreter.scope = new Scope(parent);
+        Ast.Term ast = parse("(+ 2 3)");
+        Assertions.assertEquals(BigDecimal.valueOf(5), interpreter.eval(ast));
+        parent.define("+", interpreter.builtins.get("*"));
+        Assertions.assertEquals(BigDecimal.valueOf(6), interpreter.eval(ast));
+    }
+
+    @Test
+    void testShadowWithValue() {
+        Interpreter interpreter = interpreter();
+        interpreter.eval(parse("(define (f) 1)"));
+        interpreter.scope = new Scope(interpreter.scope);
+        Ast.Term ast = parse("(f)");
+        Assertions.assertEquals(BigDecimal.ONE, interpreter.eval(ast));
+        interpreter.eval(parse("(define f 2)"));
+        Assertions.assertThrows(EvalException.class, () -> interpreter.eval(ast));
+    }
+
+    @Test
+    void testOtherScope() {
+        Interpreter interpreter = interpreter();
+        Scope global = interpreter.scope;
+        interpreter.scope = new Scope(global);
+        interpreter.eval(parse("(define f 1)"));
+        Scope first = interpreter.scope;
+        interpreter.scope = new Scope(global);
+        interpreter.eval(parse("(define (f) 2)"));
+        Ast.Term ast = parse("(f)");
+        Assertions.assertEquals(BigDecimal.valueOf(2), interpreter.eval(ast));
+        interpreter.scope = first;
+        Assertions.assertThrows(EvalException.class, () -> interpreter.eval(ast));
+    }
+
+    @Test
+    void testFunctionArgument() {
+        Interpreter interpreter = interpreter();
+        interpreter.eval(parse("(define (one) 1)"));
+        interpreter.eval(parse("(define (two) 2)"));
+        interpreter.eval(parse("(define (call f) (f))"));
+        Assertions.assertEquals(BigDecimal.ONE, interpreter.eval(parse("(call one)")));
+        Assertions.assertEquals(BigDecimal.valueOf(2), interpreter.eval(parse("(call two)")));
+    }
+
+    @Test
+    void testSeparateInterpreters() {
+        Interpreter first = interpreter();
+        Interpreter second = interpreter();
+        Ast.Term ast = parse("(+ 1 2)");
+        Assertions.assertEquals(BigDecimal.valueOf(3), first.eval(ast));
+        CallSite cache = ast.cache;
+        second.eval(parse("(set! + *)"));
+        Assertions.assertEquals(BigDecimal.valueOf(3), first.eval(ast));
+        Assertions.assertSame(cache, ast.cache);
+        Assertions.assertEquals(BigDecimal.valueOf(2), second.eval(ast));
+        Assertions.assertSame(second.scope, ast.cache.get());
+    }
+
+    private static Interpreter interpreter() {
+        return new Interpreter(new PrintWriter(new StringWriter()), new Scope(null));
+    }
+
+    private static Ast.Term parse(String input) {
+        return (Ast.Term) ((Ast.Term) Parser.parse(input)).getArgs().get(0);
+    }
+
+}
@@ -0,0 +1,119 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+final class ClosureCompilerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testProgram(String test, String input, Object expected) {
+        test(input, expected);
+    }
+
+    private static Stream<Arguments> testProgram() {
+        return Stream.of(
+                Arguments.of("Arithmetic", "(+ 1 (* 2 3) (- 4))", BigDecimal.valueOf(3)),
+                Arguments.of("Division", "(/ 1.000 2 3)", new BigDecimal("0.167")),
+                Arguments.of("Comparison", "(< 1 2 3)", true),
+                Arguments.of("Equals", "(equals? (list 1 2) (list 1 2))", true),
+                Arguments.of("Logic", "(and true (or false (not false)))", true),
+                Arguments.of("Do", "(do (define x 1) (set! x (+ x 1)) x)", BigDecimal.valueOf(2)),
+                Arguments.of("While", "(do (define x 1) (while (< x 100) (set! x (* x 2))) x)", BigDecimal.valueOf(128)),
+                Arguments.of("For", "(do (define sum 0) (for [i (range 1 10)] (set! sum (+ sum i))) sum)", BigDecimal.valueOf(45)),
+                Arguments.of("Function", "(define (square x) (* x x)) (square 12)", BigDecimal.valueOf(144)),
+                Arguments.of("Closure", "(do (define n 3) (define (add x) (+ x n)) (add 4))", BigDecimal.valueOf(7)),
+                Arguments.of("Nested Closure", "(define (outer a) (do (define (inner b) (+ a b)) (inner 10))) (outer 5)", BigDecimal.valueOf(15)),
+                Arguments.of("Forward Reference", "(do (define (f) (g)) (define (g) 7) (f))", BigDecimal.valueOf(7)),
+                Arguments.of("Shadowing", "(do (define x 1) (do (define y x) (define x 2) (+ x y)))", BigDecimal.valueOf(3)),
+                Arguments.of("Redefine", "(do (define x 1) (define x 2))", null),
+                Arguments.of("Duplicate Parameter", "(define (f x x) x) (f 1 2)", null),
+                Arguments.of("Undefined Identifier", "(print x)", null),
+                Arguments.of("Invalid Set", "(set! 1 2)", null),
+                Arguments.of("Invalid Arity", "(define (f x) x) (f 1 2)", null),
+                Arguments.of("Overflow", "(* 9223372036854775807 2)", new BigDecimal("18446744073709551614")),
+                Arguments.of("Negate Overflow", "(- (- 0 9223372036854775807 1))", new BigDecimal("9223372036854775808")),
+                Arguments.of("Promote", "(do (define x 1) (while (< x 100000000000000000000) (set! x (* x 10))) x)", new BigDecimal("100000000000000000000")),
+                Arguments.of("Mixed Scale", "(+ 1 2 0.50)", new BigDecimal("3.50")),
+                Arguments.of("Mixed Types", "(define (add a b) (+ a b)) (list (add 1 2) (add 1.5 2) (add 1 2))", Arrays.asList(BigDecimal.valueOf(3), new BigDecimal("3.5"), BigDecimal.valueOf(3))),
+                Arguments.of("Tail Call", "(define next 0) (define (done n) n) (define (down n) (do (set! next down) (while (<= n 0) (do (set! next done) (set! n 1))) (next (- n 1)))) (down 100000)", BigDecimal.ZERO)
+        );
+    }
+
+    @Test
+    void testRebindBuiltin() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(null));
+        interpreter.scope = new Scope(interpreter.scope);
+        Object result = new ClosureCompiler(interpreter).compile(Parser.parse("(define (+ x y) (* x y)) (+ 3 4)")).execute();
+        Assertions.assertEquals(BigDecimal.valueOf(12), result);
+    }
+
+    @Test
+    void testReexecute() {
+        Scope parent = new Scope(null);
+        parent.define("count", BigDecimal.ZERO);
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(parent));
+        ClosureCompiler.Program program = new ClosureCompiler(interpreter).compile(new Ast.Term("set!", Arrays.asList(
+                new Ast.Identifier("count"),
+                new Ast.Term("+", Arrays.asList(
+                        new Ast.Identifier("count"),
+                        new Ast.NumberLiteral(BigDecimal.ONE)
+                ))
+        )));
+        program.execute();
+        program.execute();
+        Assertions.assertEquals(BigDecimal.valueOf(2), parent.lookup("count"));
+    }
+
+    @Test
+    void testDeferredError() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(null));
+        ClosureCompiler.Program program = new ClosureCompiler(interpreter).compile(Parser.parse("(range 1.5 2)"));
+        Assertions.assertThrows(EvalException.class, program::execute);
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testEvaluationCount(String test, String input) {
+        StringWriter expected = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(expected), new Scope(null));
+        Object value = null;
+        for (Ast form : ((Ast.Term) Parser.parse(input)).getArgs()) {
+            value = interpreter.eval(form);
+        }
+        StringWriter actual = new StringWriter();
+        interpreter = new Interpreter(new PrintWriter(actual), new Scope(null));
+        Object result = new ClosureCompiler(interpreter).compile(Parser.parse(input)).execute();
+        Assertions.assertEquals(expected.toString(), actual.toString());
+        Assertions.assertEquals(value, result);
+    }
+
+    private static Stream<Arguments> testEvaluationCount() {
+        return Stream.of(
+                Arguments.of("And", "(list (and (do (print 1) true) (do (print 2) false) (print 3)))"),
+                Arguments.of("And Non-Boolean", "(list (and (do (print 1) 1) (print 2)))"),
+                Arguments.of("Or", "(list (or (do (print 1) false) (do (print 2) true) (print 3)))"),
+                Arguments.of("Comparison", "(list (< (do (print 1) 1) (do (print 2) 2) (do (print 3) 3)))")
+        );
+    }
+
+    private static void test(String input, Object expected) {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(null));
+        ClosureCompiler.Program program = new ClosureCompiler(interpreter).compile(Parser.parse(input));
+        if (expected != null) {
+            Assertions.assertEquals(expected, program.execute());
+        } else {
+            Assertions.assertThrows(EvalException.class, program::execute);
+        }
+    }
+
+}
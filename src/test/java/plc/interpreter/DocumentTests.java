@@ -0,0 +1,68 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+final class DocumentTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testEdit(String test, String input, int offset, int removed, String inserted) {
+        Document document = new Document(input);
+        Assertions.assertEquals(Parser.parse(input), document.parse());
+        String expected = input.substring(0, offset) + inserted + input.substring(offset + removed);
+        Assertions.assertEquals(Parser.parse(expected), document.edit(offset, removed, inserted));
+        Assertions.assertEquals(expected, document.getText());
+    }
+
+    private static Stream<Arguments> testEdit() {
+        return Stream.of(
+                Arguments.of("Insert Argument", "(a 1) (b 2) (c 3)", 9, 0, " x"),
+                Arguments.of("Remove Argument", "(a 1) (b 2) (c 3)", 8, 2, ""),
+                Arguments.of("Extend Identifier", "(a 1) (b 2) (c 3)", 8, 0, "cd"),
+                Arguments.of("Join Forms", "(a 1) (b 2) (c 3)", 10, 3, " "),
+                Arguments.of("Split Form", "(a 1 (b 2)) (c 3)", 4, 0, ")"),
+                Arguments.of("Merge Strings", "(a \"x\" \"y\") (b 2)", 5, 3, ""),
+                Arguments.of("Skipped Token", "(a 1) b (c 3)", 6, 1, "(b)"),
+                Arguments.of("Whitespace", "(a 1)\n(b 2)\n(c 3)", 5, 1, "\n\n  "),
+                Arguments.of("Start", "(a 1) (b 2)", 0, 0, "x "),
+                Arguments.of("End", "(a 1) (b 2)", 11, 0, " (c 3)"),
+                Arguments.of("Everything", "(a 1) (b 2)", 0, 11, "(c 3)")
+        );
+    }
+
+    @Test
+    void testReuse() {
+        Document document = new Document("(a 1) (b 2) (c 3)");
+        List<Ast> before = ((Ast.Term) document.parse()).getArgs();
+        List<Ast> after = ((Ast.Term) document.edit(9, 1, "20")).getArgs();
+        Assertions.assertSame(before.get(0), after.get(0));
+        Assertions.assertNotSame(before.get(1), after.get(1));
+        Assertions.assertSame(before.get(2), after.get(2));
+    }
+
+    @Test
+    void testError() {
+        Document document = new Document("(a 1) (b 2) (c 3)");
+        document.parse();
+        Assertions.assertThrows(ParseException.class, () -> document.edit(7, 1, ""));
+        Assertions.assertEquals("(a 1) ( 2) (c 3)", document.getText());
+        Assertions.assertEquals(Parser.parse("(a 1) (d 2) (c 3)"), document.edit(7, 0, "d"));
+    }
+
+    @Test
+    void testLexErrorFirst() {
+        Document document = new Document("(a 1) (b 2) (c \"\\q\")");
+        ParseException expected = Assertions.assertThrows(ParseException.class, () -> Parser.parse("(a 1) ( 2) (c \"\\q\")"));
+        ParseException actual = Assertions.assertThrows(ParseException.class, () -> document.edit(7, 1, ""));
+        Assertions.assertEquals(expected.getMessage(), actual.getMessage());
+        Assertions.assertEquals(expected.getIndex(), actual.getIndex());
+    }
+
+}
@@ -0,0 +1,150 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+final class FlatAstTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testRoundTrip(String test, String input) {
+        Ast ast = Parser.parse(input);
+        Assertions.assertEquals(ast, FlatAst.of(ast).toAst());
+    }
+
+    private static Stream<Arguments> testRoundTrip() {
+        return Stream.of(
+                Arguments.of("Empty", ""),
+                Arguments.of("Atoms", "x 1 \"s\""),
+                Arguments.of("Term", "(print \"Hello, World!\" 1.0 x)"),
+                Arguments.of("Nested", "(define (f x) [+ x (g 1 [h]) 2]) (f 3)"),
+                Arguments.of("Empty Terms", "(a) [b (c) (d [e])]")
+        );
+    }
+
+    @Test
+    void testCursor() {
+        FlatAst flat = FlatAst.of(Parser.parse("(define (f x) (+ x 1.5 \"s\"))"));
+        FlatAst.Cursor cursor = flat.cursor().child(0);
+        Assertions.assertEquals(FlatAst.Kind.TERM, cursor.getKind());
+        Assertions.assertEquals("define", cursor.getName());
+        Assertions.assertEquals(2, cursor.getChildCount());
+        Assertions.assertSame(Symbol.of("x"), cursor.child(0).child(0).getSymbol());
+        Assertions.assertEquals(FlatAst.Kind.IDENTIFIER, cursor.getKind());
+        Assertions.assertEquals(0, cursor.getChildCount());
+        Assertions.assertEquals(new BigDecimal("1.5"), cursor.parent().parent().child(1).child(1).getNumber());
+        Assertions.assertEquals("s", cursor.parent().child(2).getString());
+        Assertions.assertThrows(IllegalStateException.class, cursor::getNumber);
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> cursor.child(0));
+        Assertions.assertEquals(Parser.parse("(+ x 1.5 \"s\")"), new Ast.Term("source", Arrays.asList(cursor.parent().toAst())));
+        Assertions.assertFalse(cursor.parent().parent().hasParent());
+        Assertions.assertThrows(IllegalStateException.class, cursor::parent);
+    }
+
+    @Test
+    void testLiteralPool() {
+        Ast ast = Parser.parse("(f x x) (f \"s\" \"s\" 1 1 1.0)");
+        FlatAst flat = FlatAst.of(ast);
+        Assertions.assertEquals(10, flat.size());
+        Assertions.assertEquals(ast, flat.toAst());
+        Assertions.assertNotEquals(flat.cursor().child(1).child(3).getNumber(), flat.cursor().child(1).child(4).getNumber());
+    }
+
+    @Test
+    void testDeepNesting() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            input.append("(a ");
+        }
+        for (int i = 0; i < 100000; i++) {
+            input.append(')');
+        }
+        FlatAst flat = FlatAst.of(Parser.parse(input.toString()));
+        Assertions.assertEquals(100001, flat.size());
+        FlatAst.Cursor cursor = flat.cursor();
+        while (cursor.getChildCount() > 0) {
+            cursor.child(0);
+        }
+        Assertions.assertEquals("a", cursor.getName());
+        Ast ast = flat.toAst();
+        for (int i = 0; i < 100000; i++) {
+            ast = ((Ast.Term) ast).getArgs().get(0);
+        }
+        Assertions.assertTrue(((Ast.Term) ast).getArgs().isEmpty());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testRoundTrip")
+    void testWriteAndLoad(String test, String input) throws IOException {
+        Ast ast = Parser.parse(input);
+        Path path = Files.createTempFile("flat", ".whispc");
+        try {
+            FlatAst.of(ast).write(path);
+            Assertions.assertEquals(ast, FlatAst.load(path).toAst());
+            Assertions.assertEquals(ast, FlatAst.load(path).toLazyAst());
+            Path copy = Files.createTempFile("flat", ".whispc");
+            try {
+                FlatAst.load(path).write(copy);
+                Assertions.assertTrue(Arrays.equals(Files.readAllBytes(path), Files.readAllBytes(copy)));
+            } finally {
+                Files.delete(copy);
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void testLazy() throws IOException {
+        Path path = Files.createTempFile("flat", ".whispc");
+        try {
+            FlatAst.of(Parser.parse("(define x 1) (print x \"\u00e9\") (set! x 2.50) (+ x 0)")).write(path);
+            List<Ast> forms = ((Ast.Term) FlatAst.load(path).toLazyAst()).getArgs();
+            Assertions.assertEquals(4, forms.size());
+            Assertions.assertSame(forms.get(1), forms.get(1));
+            StringWriter out = new StringWriter();
+            Interpreter interpreter = new Interpreter(new PrintWriter(out), new Scope(null));
+            Object result = null;
+            for (Ast form : forms) {
+                result = interpreter.eval(form);
+            }
+            Assertions.assertEquals(0, new BigDecimal("2.5").compareTo((BigDecimal) result));
+            Assertions.assertTrue(out.toString().startsWith("1\u00e9"), out.toString());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void testVersion() throws IOException {
+        Path path = Files.createTempFile("flat", ".whispc");
+        try {
+            FlatAst.of(Parser.parse("(a 1)")).write(path);
+            byte[] bytes = Files.readAllBytes(path);
+            ByteBuffer.wrap(bytes).putInt(4, FlatAst.VERSION + 1);
+            Files.write(path, bytes);
+            Assertions.assertThrows(IOException.class, () -> FlatAst.load(path));
+            Files.write(path, "(a 1)".getBytes());
+            Assertions.assertThrows(IOException.class, () -> FlatAst.load(path));
+            Files.write(path, Arrays.copyOf(bytes, 20));
+            Assertions.assertThrows(IOException.class, () -> FlatAst.load(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+}
@@ -7,6 +7,9 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.Collections;
@@ -36,6 +39,58 @@ final class InterpreterTests {
         test(new Ast.StringLiteral("string"), "string", Collections.emptyMap());
     }
 
+    @Test
+    void testRun() {
+        StringWriter out = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(out), new Scope(null));
+        Object result = interpreter.run(new StringReader("(define x 1)\n(print x)\n(set! x 2) (+ x 3)"));
+        Assertions.assertEquals(BigDecimal.valueOf(5), result);
+        Assertions.assertEquals("1" + System.lineSeparator(), out.toString());
+    }
+
+    @Test
+    void testRunError() {
+        StringWriter out = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(out), new Scope(null));
+        Assertions.assertThrows(ParseException.class, () -> interpreter.run(new StringReader("(print 1) (print 2) (3)")));
+        Assertions.assertEquals("1" + System.lineSeparator() + "2" + System.lineSeparator(), out.toString());
+    }
+
+    @Test
+    void testRunStream() {
+        int forms = 200000;
+        StringWriter out = new StringWriter();
+        Reader reader = new Reader() {
+
+            private final StringBuilder buffer = new StringBuilder("(define n 0) (print \"started\")\n");
+            private int written = 0;
+
+            @Override
+            public int read(char[] chars, int offset, int length) {
+                if (written > 2 && out.toString().isEmpty()) {
+                    throw new AssertionError("The output was not flushed before the rest of the script was read.");
+                }
+                if (buffer.length() == 0) {
+                    if (written == forms) {
+                        return -1;
+                    }
+                    buffer.append(++written == forms ? "(+ n 0)" : "(set! n (+ n 1))\n");
+                }
+                int count = Math.min(length, buffer.length());
+                buffer.getChars(0, count, chars, offset);
+                buffer.delete(0, count);
+                return count;
+            }
+
+            @Override
+            public void close() {}
+
+        };
+        Interpreter interpreter = new Interpreter(new PrintWriter(out), new Scope(null));
+        Assertions.assertEquals(BigDecimal.valueOf(forms - 1), interpreter.run(reader));
+        Assertions.assertEquals("started" + System.lineSeparator(), out.toString());
+    }
+
     @ParameterizedTest
     @MethodSource
     void testAddition(String test, Ast ast, BigDecimal expected) {
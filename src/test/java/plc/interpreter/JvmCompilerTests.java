@@ -0,0 +1,117 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+final class JvmCompilerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testFunction(String test, String function, String call, Object expected) {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(null));
+        define(interpreter, function);
+        if (expected != null) {
+            Assertions.assertEquals(expected, interpreter.eval(parse(call)));
+        } else {
+            Assertions.assertThrows(EvalException.class, () -> interpreter.eval(parse(call)));
+        }
+    }
+
+    private static Stream<Arguments> testFunction() {
+        return Stream.of(
+                Arguments.of("Arithmetic", "(f x) (+ (* x x) (- x 1) (/ x 4.0))", "(f 3)", new BigDecimal("11.8")),
+                Arguments.of("Comparison", "(f x) (and (< 0 x 10) (not (equals? x 5)))", "(f 3)", true),
+                Arguments.of("While", "(f n) (do (set! n (* n 2)) (while (< n 100) (set! n (* n 2))) n)", "(f 3)", BigDecimal.valueOf(192)),
+                Arguments.of("Recursion", "(f n) (or (<= n 0) (f (- n 1)))", "(f 10)", true),
+                Arguments.of("List", "(f x) (list x \"x\" (range 1 3))", "(f 1)", Arrays.asList(BigDecimal.ONE, "x", Arrays.asList(BigDecimal.ONE, BigDecimal.valueOf(2)))),
+                Arguments.of("Invalid Type", "(f x) (- x)", "(f \"x\")", null),
+                Arguments.of("Invalid Arity", "(f x) x", "(f 1 2)", null),
+                Arguments.of("Undefined Identifier", "(f x) y", "(f 1)", null)
+        );
+    }
+
+    @Test
+    void testGlobalVariable() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(null));
+        interpreter.scope.define("total", BigDecimal.ZERO);
+        define(interpreter, "(add x) (set! total (+ total x))");
+        interpreter.eval(parse("(add 3)"));
+        interpreter.eval(parse("(add 4)"));
+        Assertions.assertEquals(BigDecimal.valueOf(7), interpreter.scope.lookup("total"));
+    }
+
+    @Test
+    void testInterpretedFunction() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(null));
+        interpreter.eval(parse("(define (g y) (* y 10))"));
+        define(interpreter, "(f x) (g (+ x 1))");
+        Assertions.assertEquals(BigDecimal.valueOf(30), interpreter.eval(parse("(f 2)")));
+    }
+
+    @Test
+    void testComparisonError() {
+        StringWriter out = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(out, true), new Scope(null));
+        define(interpreter, "(f x) (< 1 x (do (print 3) 5))");
+        Assertions.assertThrows(EvalException.class, () -> interpreter.eval(parse("(f \"a\")")));
+        Assertions.assertEquals("", out.toString());
+        Assertions.assertEquals(true, interpreter.eval(parse("(f 2)")));
+        Assertions.assertEquals("3" + System.lineSeparator(), out.toString());
+    }
+
+    @ParameterizedTest
+    @MethodSource("plc.interpreter.ClosureCompilerTests#testEvaluationCount")
+    void testEvaluationCount(String test, String input) {
+        StringWriter expected = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(expected, true), new Scope(null));
+        Object value = interpreter.eval(parse(input));
+        StringWriter actual = new StringWriter();
+        Interpreter compiled = new Interpreter(new PrintWriter(actual, true), new Scope(null));
+        define(compiled, "(f) " + input);
+        Assertions.assertEquals(value, compiled.eval(parse("(f)")));
+        Assertions.assertEquals(expected.toString(), actual.toString());
+    }
+
+    @Test
+    void testUnsupported() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(null));
+        Ast.Term definition = (Ast.Term) parse("(define (f x) (do (define y x) y))");
+        Assertions.assertNull(new JvmCompiler(interpreter).compile((Ast.Term) definition.getArgs().get(0), definition.getArgs().get(1), interpreter.scope));
+    }
+
+    @Test
+    void testLongString() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(null));
+        String value = String.join("", Collections.nCopies(70000, "x"));
+        Ast.Term definition = (Ast.Term) parse("(define (f) \"" + value + "\")");
+        Assertions.assertNull(new JvmCompiler(interpreter).compile((Ast.Term) definition.getArgs().get(0), definition.getArgs().get(1), interpreter.scope));
+    }
+
+    /**
+     * Parses a single top-level form.
+     */
+    private static Ast parse(String input) {
+        return ((Ast.Term) Parser.parse(input)).getArgs().get(0);
+    }
+
+    private static void define(Interpreter interpreter, String function) {
+        Ast.Term definition = (Ast.Term) parse("(define " + function + ")");
+        Ast.Term signature = (Ast.Term) definition.getArgs().get(0);
+        Function<List<Ast>, Object> compiled = new JvmCompiler(interpreter).compile(signature, definition.getArgs().get(1), interpreter.scope);
+        Assertions.assertNotNull(compiled);
+        interpreter.scope.define(signature.getName(), compiled);
+    }
+
+}
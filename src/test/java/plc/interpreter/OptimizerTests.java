@@ -0,0 +1,155 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+final class OptimizerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testOptimize(String test, String input, String expected) {
+        Interpreter interpreter = new Interpreter(new PrintWriter(new StringWriter()), new Scope(null));
+        Assertions.assertEquals(Parser.parse(expected), new Optimizer(interpreter).optimize(Parser.parse(input)));
+    }
+
+    private static Stream<Arguments> testOptimize() {
+        return Stream.of(
+                Arguments.of("Arithmetic", "(+ 1 (* 2 3) (- 4))", "3"),
+                Arguments.of("Division", "(/ 1.000 2 3)", "0.167"),
+                Arguments.of("Partial", "(+ x (* 2 3))", "(+ x 6)"),
+                Arguments.of("Comparison", "(print (< 1 2 3) (equals? \"a\" \"b\"))", "(print true false)"),
+                Arguments.of("Not", "(not (< 2 1))", "true"),
+                Arguments.of("And", "(and true x (not true) y)", "(and x false)"),
+                Arguments.of("And Non-Boolean", "(and x 1 y)", "(and x 1)"),
+                Arguments.of("Or", "(or false x true y)", "(or x true)"),
+                Arguments.of("Or Constant", "(or false (> 2 1) x)", "true"),
+                Arguments.of("Empty And", "(and true true)", "true"),
+                Arguments.of("Do", "(do 1 \"s\" (print x) (+ 1 1) x)", "(do (print x) x)"),
+                Arguments.of("Do Constant", "(do (- 3 1) (* 2 2))", "4"),
+                Arguments.of("List", "(list 1 (+ 1 1) (list (* 3 1)))", "(list 1 2 (list 3))"),
+                Arguments.of("Function", "(define (f x) (* x (+ 1 1))) (f (- 5 2))", "(define (f x) (* x 2)) (f 3)"),
+                Arguments.of("Division By Zero", "(print (/ 1 0))", "(print (/ 1 0))"),
+                Arguments.of("Type Error", "(+ 1 \"s\")", "(+ 1 \"s\")"),
+                Arguments.of("Range", "(range 1 (+ 1 2))", "(range 1 (+ 1 2))"),
+                Arguments.of("Comparison Keyword", "(< (not false) 1)", "(< (not false) 1)"),
+                Arguments.of("Rebound", "(define (+ x y) (* x y)) (+ 3 4) (print (* 3 4))", "(define (+ x y) (* x y)) (+ 3 4) (print 12)"),
+                Arguments.of("Rebound Parameter", "(define (f not) (not true)) (not true)", "(define (f not) (not true)) (not true)"),
+                Arguments.of("Rebound Boolean", "(define true 1) (not (< 1 2))", "(define true 1) (not (< 1 2))")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testSpecialize(String test, String input, String expected) {
+        Interpreter interpreter = new Interpreter(new PrintWriter(new StringWriter()), new Scope(null));
+        Assertions.assertEquals(Parser.parse(expected), new Optimizer(interpreter).specialize(Parser.parse(input), known(interpreter)));
+    }
+
+    private static Stream<Arguments> testSpecialize() {
+        return Stream.of(
+                Arguments.of("Variable", "(print (* rate x) (+ rate 1))", "(print (* 2 x) 3)"),
+                Arguments.of("Branch", "(do (while debug (print x)) (print (or debug (< x rate))))", "(do (print (or (< x 2))))"),
+                Arguments.of("Unknown", "(print y (f rate))", "(print y (f 2))"),
+                Arguments.of("Rebound", "(set! rate x) (print rate)", "(set! rate x) (print rate)"),
+                Arguments.of("Unroll", "(for (i ids) (print name i)) (print x)", "(do (print \"t\" 1) (print \"t\" 2) (print \"t\" 3)) (print x)"),
+                Arguments.of("Unroll Range", "(for (i (range 0 2)) (print (* i rate) x)) (print x)", "(do (print 0 x) (print 2 x)) (print x)"),
+                Arguments.of("Unroll Nested", "(for (i (range 0 2)) (for (j (list 1 rate)) (print (+ i j)))) (print x)",
+                        "(do (do (print 1) (print 2)) (do (print 2) (print 3))) (print x)"),
+                Arguments.of("Unroll Set", "(for (i ids) (set! i (+ i 1))) (print x)",
+                        "(do (define i 1) (set! i (+ i 1)) (set! i 2) (set! i (+ i 1)) (set! i 3) (set! i (+ i 1))) (print x)"),
+                Arguments.of("Loop Value", "(for (i ids) (print i))", "(for (i ids) (print i))"),
+                Arguments.of("Unbounded", "(for (i (range 0 65)) (print i)) (print x)", "(for (i (range 0 65)) (print i)) (print x)"),
+                Arguments.of("Range Variable", "(for (i (range 0 rate)) (print i)) (print x)", "(for (i (range 0 rate)) (print i)) (print x)")
+        );
+    }
+
+    @Test
+    void testSpecializeEval() {
+        String input = "(define total 0) (for (i ids) (set! total (+ total (* i rate)))) (while debug (print total))"
+                + " (for (i (range 0 3)) (do (define (f) i) (print (f) name x))) (list total (and (not debug) (< x rate)))";
+        for (int x = 0; x < 4; x++) {
+            StringWriter expected = new StringWriter();
+            Interpreter interpreter = new Interpreter(new PrintWriter(expected), new Scope(null));
+            Scope known = known(interpreter);
+            interpreter.scope = new Scope(known);
+            interpreter.scope.define("x", BigDecimal.valueOf(x));
+            Object value = null;
+            for (Ast form : ((Ast.Term) Parser.parse(input)).getArgs()) {
+                value = interpreter.eval(form);
+            }
+            StringWriter actual = new StringWriter();
+            interpreter = new Interpreter(new PrintWriter(actual), new Scope(null));
+            known = known(interpreter);
+            Ast residual = new Optimizer(interpreter).specialize(Parser.parse(input), known);
+            interpreter.scope = new Scope(known);
+            interpreter.scope.define("x", BigDecimal.valueOf(x));
+            Object result = null;
+            for (Ast form : ((Ast.Term) residual).getArgs()) {
+                result = interpreter.eval(form);
+            }
+            Assertions.assertEquals(expected.toString(), actual.toString());
+            Assertions.assertEquals(value, result);
+        }
+    }
+
+    /**
+     * Returns a scope of known variables for the interpreter's global scope.
+     */
+    private static Scope known(Interpreter interpreter) {
+        Scope known = new Scope(interpreter.scope);
+        known.define("rate", BigDecimal.valueOf(2));
+        known.define("name", "t");
+        known.define("debug", false);
+        known.define("ids", new java.util.LinkedList<>(Arrays.asList(BigDecimal.ONE, BigDecimal.valueOf(2), BigDecimal.valueOf(3))));
+        return known;
+    }
+
+    @Test
+    void testRebindScope() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(new StringWriter()), new Scope(null));
+        interpreter.scope = new Scope(interpreter.scope);
+        interpreter.eval(((Ast.Term) Parser.parse("(define (- x) x)")).getArgs().get(0));
+        Ast ast = Parser.parse("(- 1 (+ 1 1))");
+        Assertions.assertEquals(Parser.parse("(- 1 2)"), new Optimizer(interpreter).optimize(ast));
+    }
+
+    @Test
+    void testUnchanged() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(new StringWriter()), new Scope(null));
+        Ast ast = Parser.parse("(define (f x) (do (print x) (+ x 1))) (f y)");
+        Assertions.assertSame(ast, new Optimizer(interpreter).optimize(ast));
+    }
+
+    @Test
+    void testEval() {
+        String input = "(define x 2) (print (+ 1 (* 2 3)) \" \" (and true (< x 3))) (set! x (do 0 (- x 1) (/ 10.0 4)))"
+                + " (list x (or false (> x 2)) (equals? (list 1 2) (list 1 (+ 1 1))))";
+        Assertions.assertEquals(run(input, false), run(input, true));
+        Assertions.assertEquals(Arrays.asList(new BigDecimal("2.5"), true, true), run(input, true).get(1));
+    }
+
+    /**
+     * Evaluates the forms of the input, optionally optimizing each one first,
+     * and returns the output and the value of the last form.
+     */
+    private static List<Object> run(String input, boolean optimize) {
+        StringWriter out = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(out), new Scope(null));
+        Object result = null;
+        for (Ast form : ((Ast.Term) Parser.parse(input)).getArgs()) {
+            result = interpreter.eval(optimize ? new Optimizer(interpreter).optimize(form) : form);
+        }
+        return Arrays.asList(out.toString(), result);
+    }
+
+}
@@ -0,0 +1,58 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+final class ParallelParserTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testParse(String test, String input) {
+        Assertions.assertEquals(Parser.parse(input), Parser.parse(input, ForkJoinPool.commonPool(), 1));
+    }
+
+    private static Stream<Arguments> testParse() {
+        return Stream.of(
+                Arguments.of("Empty", ""),
+                Arguments.of("Forms", "(a 1) [b 2.5]\n(c \"s\")"),
+                Arguments.of("Nested", "(a (b [c 1]) (d)) (e)"),
+                Arguments.of("Atoms", "x (a 1) y z (b 2)"),
+                Arguments.of("Skipped Token", "(a 1) x (b 2) ) (c 3)"),
+                Arguments.of("Strings", "(a \"(b\" \"\\\"(\") (c \"]\")"),
+                Arguments.of("Adjacent", "(a)(b)[c](d)")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testError(String test, String input) {
+        ParseException expected = Assertions.assertThrows(ParseException.class, () -> Parser.parse(input));
+        ParseException actual = Assertions.assertThrows(ParseException.class, () -> Parser.parse(input, ForkJoinPool.commonPool(), 1));
+        Assertions.assertEquals(expected.getMessage(), actual.getMessage());
+        Assertions.assertEquals(expected.getIndex(), actual.getIndex());
+    }
+
+    private static Stream<Arguments> testError() {
+        return Stream.of(
+                Arguments.of("Parse", "(a 1) (1 2) (b 2)"),
+                Arguments.of("Lex After Parse", "(a 1) (1 2) (b \"\\q\")"),
+                Arguments.of("Unclosed", "(a 1) (b 2"),
+                Arguments.of("Unterminated String", "(a 1) (b \"2)")
+        );
+    }
+
+    @Test
+    void testSplit() {
+        String input = "(a \"(\") x (b [c]) (d)";
+        Assertions.assertEquals(Arrays.asList(0, input.length()), Parser.split(input, input.length()));
+        Assertions.assertEquals(Arrays.asList(0, 10, 18, input.length()), Parser.split(input, 1));
+    }
+
+}
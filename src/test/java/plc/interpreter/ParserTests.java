@@ -3,7 +3,13 @@ package plc.interpreter;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -167,16 +173,69 @@ final class ParserTests {
     }
 
 
+    @Test
+    void testDeepNesting() {
+        int depth = 100000;
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            input.append(i % 2 == 0 ? "(a " : "[b ").append(i).append(' ');
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            input.append(i % 2 == 0 ? ')' : ']');
+        }
+        Ast ast = ((Ast.Term) Parser.parse(input.toString())).getArgs().get(0);
+        for (int i = 0; i < depth; i++) {
+            Ast.Term term = (Ast.Term) ast;
+            Assertions.assertEquals(i % 2 == 0 ? "a" : "b", term.getName());
+            Assertions.assertEquals(new Ast.NumberLiteral(BigDecimal.valueOf(i)), term.getArgs().get(0));
+            Assertions.assertEquals(i == depth - 1 ? 1 : 2, term.getArgs().size());
+            ast = i == depth - 1 ? null : term.getArgs().get(1);
+        }
+        input.setCharAt(input.length() - 2, ')');
+        ParseException exception = Assertions.assertThrows(ParseException.class, () -> Parser.parse(input.toString()));
+        Assertions.assertEquals("Improper Closing Operator", exception.getMessage());
+    }
+
+    @Test
+    void testStreamFile() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            input.append("(define (f").append(i).append(" x) [+ x \"").append(i).append("\" 1.5]) x").append(i).append('\n');
+        }
+        Path path = Files.createTempFile("parser", ".whisp");
+        try {
+            Files.write(path, input.toString().getBytes(StandardCharsets.UTF_8));
+            Assertions.assertEquals(Parser.parse(input.toString()), Parser.parse(path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    void testStreamErrorOrder() {
+        //Parsing starts before lexing finishes, so the parse error comes first.
+        String input = "(a 1) (1 2) (b \"\\q\")";
+        ParseException expected = Assertions.assertThrows(ParseException.class, () -> Parser.parse("(a 1) (1 2)"));
+        ParseException actual = Assertions.assertThrows(ParseException.class, () -> stream(input));
+        Assertions.assertEquals(expected.getMessage(), actual.getMessage());
+        Assertions.assertThrows(ParseException.class, () -> stream("(a 1) (b \"\\q\")"));
+    }
 
     void test(String input, Ast expected) {
         Ast ast = new Ast.Term("source", Arrays.asList(expected));
         Assertions.assertEquals(ast, Parser.parse(input));
+        Assertions.assertEquals(ast, stream(input));
     }
 
     void test2(String input, List<Ast> myast)
     {
         Ast ast = new Ast.Term("source",myast);
         Assertions.assertEquals(ast,Parser.parse(input));
+        Assertions.assertEquals(ast, stream(input));
+    }
+
+    private static Ast stream(String input) {
+        return Parser.parse(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))));
     }
 
 }
@@ -0,0 +1,60 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+final class RangeTests {
+
+    @Test
+    void testElements() {
+        List<BigDecimal> range = Range.of(BigDecimal.valueOf(-2), BigDecimal.valueOf(2));
+        Assertions.assertEquals(Arrays.asList(BigDecimal.valueOf(-2), BigDecimal.valueOf(-1), BigDecimal.ZERO, BigDecimal.ONE), range);
+        Assertions.assertEquals(4, range.size());
+        Assertions.assertEquals(BigDecimal.ZERO, range.get(2));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> range.get(4));
+    }
+
+    @Test
+    void testEmpty() {
+        Assertions.assertEquals(Collections.emptyList(), Range.of(BigDecimal.TEN, BigDecimal.TEN));
+    }
+
+    @Test
+    void testLazy() {
+        List<BigDecimal> range = Range.of(BigDecimal.ZERO, new BigDecimal("100000000000000"));
+        Assertions.assertEquals(Integer.MAX_VALUE, range.size());
+        Assertions.assertEquals(new BigDecimal("99999"), range.get(99999));
+    }
+
+    @Test
+    void testUnboundedLong() {
+        BigDecimal first = new BigDecimal("10000000000000000000");
+        List<BigDecimal> range = Range.of(first, first.add(BigDecimal.valueOf(2)));
+        Assertions.assertTrue(range instanceof LinkedList);
+        Assertions.assertEquals(Arrays.asList(first, first.add(BigDecimal.ONE)), range);
+    }
+
+    @Test
+    void testInterpreter() {
+        StringWriter writer = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(writer, true), new Scope(null));
+        Assertions.assertEquals(true, eval(interpreter, "(equals? (range 1 4) (list 1 2 3))"));
+        eval(interpreter, "(print (range 1 4))");
+        Assertions.assertEquals("[1, 2, 3]" + System.lineSeparator(), writer.toString());
+        Assertions.assertEquals(BigDecimal.valueOf(499999500000L), eval(interpreter,
+                "(do (define sum 0) (for [i (range 0 1000000)] (set! sum (+ sum i))) sum)"));
+    }
+
+    private static Object eval(Interpreter interpreter, String input) {
+        return interpreter.eval(((Ast.Term) Parser.parse(input)).getArgs().get(0));
+    }
+
+}
@@ -0,0 +1,92 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+final class SymbolTests {
+
+    @Test
+    void testIntern() {
+        Symbol symbol = Symbol.of("symbol-tests");
+        Assertions.assertSame(symbol, Symbol.of(new String("symbol-tests")));
+        Assertions.assertSame(symbol, Symbol.intern("(symbol-tests)", 1, 13));
+        Assertions.assertEquals("symbol-tests", symbol.getName());
+        Assertions.assertEquals("symbol-tests".hashCode(), symbol.hashCode());
+        Assertions.assertNotSame(symbol, Symbol.of("symbol-test"));
+    }
+
+    @Test
+    void testIds() {
+        Symbol first = Symbol.of("symbol-tests-first");
+        Symbol second = Symbol.of("symbol-tests-second");
+        Assertions.assertNotEquals(first.getId(), second.getId());
+        Assertions.assertEquals(first.getId(), Symbol.of("symbol-tests-first").getId());
+    }
+
+    @Test
+    void testParse() {
+        Ast.Term term = (Ast.Term) ((Ast.Term) Parser.parse("(f x (g x) f)")).getArgs().get(0);
+        Ast.Identifier x = (Ast.Identifier) term.getArgs().get(0);
+        Assertions.assertSame(x.getSymbol(), ((Ast.Identifier) ((Ast.Term) term.getArgs().get(1)).getArgs().get(0)).getSymbol());
+        Assertions.assertSame(term.getSymbol(), ((Ast.Identifier) term.getArgs().get(2)).getSymbol());
+        Assertions.assertSame(Symbol.of("x"), x.getSymbol());
+    }
+
+    @Test
+    void testScope() {
+        Scope scope = new Scope(new Scope(null));
+        scope.getParent().define(Symbol.of("x"), 1);
+        scope.define("y", 2);
+        Assertions.assertEquals(1, scope.lookup("x"));
+        Assertions.assertEquals(2, scope.lookup(Symbol.of("y")));
+        scope.set(Symbol.of("x"), 3);
+        Assertions.assertEquals(3, scope.getParent().lookup("x"));
+        Assertions.assertThrows(EvalException.class, () -> scope.define(Symbol.of("y"), 4));
+        Assertions.assertThrows(EvalException.class, () -> scope.lookup(Symbol.of("z")));
+    }
+
+    @Test
+    void testFind() {
+        Scope scope = new Scope(null);
+        Assertions.assertThrows(EvalException.class, () -> scope.lookup("symbol-tests-unknown"));
+        Assertions.assertThrows(EvalException.class, () -> scope.set("symbol-tests-unknown", 1));
+        Assertions.assertFalse(scope.defines("symbol-tests-unknown"));
+        Assertions.assertNull(Symbol.find("symbol-tests-unknown"));
+        scope.define("symbol-tests-unknown", 1);
+        Assertions.assertSame(Symbol.of("symbol-tests-unknown"), Symbol.find("symbol-tests-unknown"));
+        Assertions.assertEquals(1, scope.lookup("symbol-tests-unknown"));
+    }
+
+    @Test
+    void testThreads() throws InterruptedException {
+        ConcurrentMap<String, Symbol> symbols = new ConcurrentHashMap<>();
+        List<Thread> threads = new ArrayList<>();
+        List<AssertionError> errors = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    String name = "symbol-tests-" + i;
+                    Symbol symbol = Symbol.of(name);
+                    Symbol existing = symbols.putIfAbsent(name, symbol);
+                    if (existing != null && existing != symbol) {
+                        synchronized (errors) {
+                            errors.add(new AssertionError(name));
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertTrue(errors.isEmpty(), errors.toString());
+    }
+
+}
@@ -0,0 +1,121 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+final class TieredFunctionTests {
+
+    @Test
+    void testCold() {
+        Interpreter interpreter = interpreter(3);
+        eval(interpreter, "(define (square x) (* x x))");
+        Assertions.assertEquals(BigDecimal.valueOf(4), eval(interpreter, "(square 2)"));
+        Assertions.assertEquals(BigDecimal.valueOf(9), eval(interpreter, "(square 3)"));
+        Assertions.assertFalse(function(interpreter, "square").isCompiled());
+    }
+
+    @Test
+    void testHot() {
+        Interpreter interpreter = interpreter(3);
+        eval(interpreter, "(define (square x) (* x x))");
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(BigDecimal.valueOf(i * i), eval(interpreter, "(square " + i + ")"));
+        }
+        Assertions.assertTrue(function(interpreter, "square").isCompiled());
+        Assertions.assertEquals(BigDecimal.valueOf(144), eval(interpreter, "(square 12)"));
+    }
+
+    @Test
+    void testBackEdges() {
+        Interpreter interpreter = interpreter(10);
+        eval(interpreter, "(define (loop n) (do (while (> n 0) (set! n (- n 1))) n))");
+        Assertions.assertEquals(BigDecimal.ZERO, eval(interpreter, "(loop 20)"));
+        Assertions.assertEquals(BigDecimal.ZERO, eval(interpreter, "(loop 20)"));
+        Assertions.assertTrue(function(interpreter, "loop").isCompiled());
+    }
+
+    @Test
+    void testUnsupported() {
+        Interpreter interpreter = interpreter(1);
+        eval(interpreter, "(define (count n) (do (define i 0) (while (< i n) (set! i (+ i 1))) i))");
+        Assertions.assertEquals(BigDecimal.valueOf(20), eval(interpreter, "(count 20)"));
+        Assertions.assertEquals(BigDecimal.valueOf(20), eval(interpreter, "(count 20)"));
+        Assertions.assertFalse(function(interpreter, "count").isCompiled());
+    }
+
+    @Test
+    void testDisabled() {
+        Interpreter interpreter = interpreter(Integer.MAX_VALUE);
+        eval(interpreter, "(define (identity x) x)");
+        for (int i = 0; i < 100; i++) {
+            eval(interpreter, "(identity 1)");
+        }
+        Assertions.assertFalse(function(interpreter, "identity").isCompiled());
+    }
+
+    @Test
+    void testRecursion() {
+        Interpreter interpreter = interpreter(1);
+        eval(interpreter, "(define (sum n) (or (<= n 0) (equals? (sum (- n 1)) true)))");
+        Assertions.assertEquals(true, eval(interpreter, "(sum 10)"));
+    }
+
+    @Test
+    void testTailCall() {
+        for (int threshold : new int[] {1, Integer.MAX_VALUE}) {
+            Interpreter interpreter = interpreter(threshold);
+            eval(interpreter, "(define next 0)");
+            eval(interpreter, "(define (done n) n)");
+            eval(interpreter, "(define (down n) (do (set! next down) (while (<= n 0) (do (set! next done) (set! n 1))) (next (- n 1))))");
+            Assertions.assertEquals(BigDecimal.ZERO, eval(interpreter, "(down 100000)"));
+        }
+    }
+
+    @Test
+    void testRebound() {
+        Interpreter interpreter = interpreter(1);
+        eval(interpreter, "(define (f x) (+ x 1))");
+        Assertions.assertEquals(BigDecimal.valueOf(2), eval(interpreter, "(f 1)"));
+        Assertions.assertTrue(function(interpreter, "f").isCompiled());
+        eval(interpreter, "(define (mul a b) (* a b))");
+        eval(interpreter, "(set! + mul)");
+        Assertions.assertEquals(BigDecimal.valueOf(5), eval(interpreter, "(f 5)"));
+    }
+
+    @Test
+    void testEvaluationCount() {
+        StringWriter out = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(out, true), new Scope(null));
+        interpreter.setCompileThreshold(3);
+        eval(interpreter, "(define (f) (and (do (print \"x\") true)))");
+        eval(interpreter, "(define (g) (< 1 (do (print \"y\") 2) 3))");
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            Assertions.assertEquals(true, eval(interpreter, "(f)"));
+            Assertions.assertEquals(true, eval(interpreter, "(g)"));
+            expected.append(String.join(System.lineSeparator(), "x", "x", "y", "y", ""));
+            Assertions.assertEquals(expected.toString(), out.toString());
+        }
+        Assertions.assertTrue(function(interpreter, "f").isCompiled());
+        Assertions.assertTrue(function(interpreter, "g").isCompiled());
+    }
+
+    private static Interpreter interpreter(int threshold) {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(null));
+        interpreter.setCompileThreshold(threshold);
+        return interpreter;
+    }
+
+    private static Object eval(Interpreter interpreter, String input) {
+        return interpreter.eval(((Ast.Term) Parser.parse(input)).getArgs().get(0));
+    }
+
+    private static TieredFunction function(Interpreter interpreter, String name) {
+        return (TieredFunction) interpreter.scope.lookup(name);
+    }
+
+}
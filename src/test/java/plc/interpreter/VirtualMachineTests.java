@@ -0,0 +1,160 @@
+package plc.interpreter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+final class VirtualMachineTests {
+
+    @ParameterizedTest
+    @MethodSource("plc.interpreter.ClosureCompilerTests#testProgram")
+    void testProgram(String test, String input, Object expected) {
+        test(input, expected);
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testControlFlow(String test, String input, Object expected) {
+        test(input, expected);
+    }
+
+    private static Stream<Arguments> testControlFlow() {
+        return Stream.of(
+                Arguments.of("And Short Circuit", "(and false (print x))", false),
+                Arguments.of("Or Short Circuit", "(or true (print x))", true),
+                Arguments.of("Or Invalid", "(or 1 true)", null),
+                Arguments.of("While Invalid", "(while 1 (print 1))", null),
+                Arguments.of("Empty Do", "(do)", Interpreter.VOID),
+                Arguments.of("Empty For", "(for [i (list)] (print i))", Interpreter.VOID),
+                Arguments.of("For Invalid", "(for [i 1] (print i))", null),
+                Arguments.of("Recursion", "(define (fib n) (do (define r n) (while (> n 1) (do (set! r (+ (fib (- n 1)) (fib (- n 2)))) (set! n 0))) r)) (fib 15)", BigDecimal.valueOf(610)),
+                Arguments.of("Deep Recursion", "(define (down n) (do (define r true) (while (> n 0) (do (set! r (down (- n 1))) (set! n 0))) r)) (down 100000)", true)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource({
+            "plc.interpreter.InterpreterTests#testAddition",
+            "plc.interpreter.InterpreterTests#testSubtraction",
+            "plc.interpreter.InterpreterTests#testMultiplication",
+            "plc.interpreter.InterpreterTests#testDivision",
+            "plc.interpreter.InterpreterTests#testLessThan",
+            "plc.interpreter.InterpreterTests#testLessThanEqual",
+            "plc.interpreter.InterpreterTests#testGreaterThan",
+            "plc.interpreter.InterpreterTests#testGreaterThanEqual",
+            "plc.interpreter.InterpreterTests#testEquals",
+            "plc.interpreter.InterpreterTests#testTrueFalse",
+            "plc.interpreter.InterpreterTests#testNot",
+            "plc.interpreter.InterpreterTests#testAnd",
+            "plc.interpreter.InterpreterTests#testOr",
+            "plc.interpreter.InterpreterBaselineTests#testAddition",
+            "plc.interpreter.InterpreterBaselineTests#testDo"
+    })
+    void testInterpreter(String test, Ast ast, Object expected) {
+        Assertions.assertEquals(run(ast, false), run(ast, true));
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testSideEffects(String test, String input) {
+        Assertions.assertEquals(run(Parser.parse(input), false), run(Parser.parse(input), true));
+    }
+
+    private static Stream<Arguments> testSideEffects() {
+        return Stream.of(
+                Arguments.of("And", "(and (do (print 1) true) (do (print 2) false) (print 3))"),
+                Arguments.of("And Non-Boolean", "(and (do (print 1) 1) (print 2))"),
+                Arguments.of("Or", "(or (do (print 1) false) (do (print 2) true) (print 3))"),
+                Arguments.of("Or Invalid", "(or (do (print 1) false) (do (print 2) 2))"),
+                Arguments.of("Comparison", "(< (do (print 1) 1) (do (print 2) 2) (do (print 3) 3))"),
+                Arguments.of("Comparison Error", "(< (do (print 1) 1) (do (print 2) \"a\") (do (print 3) 3))"),
+                Arguments.of("Loop", "(do (define i 0) (while (and (< (do (set! i (+ i 1)) i) 10) true) (print i)) i)")
+        );
+    }
+
+    @Test
+    void testHostFunction() {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(null));
+        interpreter.scope.define("twice", (Function<List<Ast>, Object>) args -> {
+            BigDecimal value = Interpreter.requireType(BigDecimal.class, interpreter.eval(args.get(0)));
+            return value.add(value);
+        });
+        Bytecode bytecode = new BytecodeCompiler(interpreter).compile(Parser.parse("(do (define (inc x) (+ x 1)) (twice (inc 3)))"));
+        Assertions.assertEquals(BigDecimal.valueOf(8), new VirtualMachine(interpreter).execute(bytecode));
+    }
+
+    @Test
+    void testReexecute() {
+        Scope parent = new Scope(null);
+        parent.define("count", BigDecimal.ZERO);
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(parent));
+        Bytecode bytecode = new BytecodeCompiler(interpreter).compile(new Ast.Term("set!", Arrays.asList(
+                new Ast.Identifier("count"),
+                new Ast.Term("+", Arrays.asList(
+                        new Ast.Identifier("count"),
+                        new Ast.NumberLiteral(BigDecimal.ONE)
+                ))
+        )));
+        VirtualMachine machine = new VirtualMachine(interpreter);
+        machine.execute(bytecode);
+        machine.execute(bytecode);
+        Assertions.assertEquals(BigDecimal.valueOf(2), parent.lookup("count"));
+    }
+
+    @Test
+    void testComparisonError() {
+        StringWriter out = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(out, true), new Scope(null));
+        Bytecode bytecode = new BytecodeCompiler(interpreter).compile(Parser.parse("(< 1 \"a\" (print 3))"));
+        Assertions.assertThrows(EvalException.class, () -> new VirtualMachine(interpreter).execute(bytecode));
+        Assertions.assertEquals("", out.toString());
+    }
+
+    /**
+     * Runs the AST with the interpreter or the virtual machine, returning the
+     * output and either the value or the class of the exception thrown.
+     */
+    private static List<Object> run(Ast ast, boolean compiled) {
+        StringWriter out = new StringWriter();
+        Interpreter interpreter = new Interpreter(new PrintWriter(out), new Scope(null));
+        Object result;
+        try {
+            if (compiled) {
+                result = new VirtualMachine(interpreter).execute(new BytecodeCompiler(interpreter).compile(ast));
+            } else if (ast instanceof Ast.Term && ((Ast.Term) ast).getName().equals("source")) {
+                result = null;
+                for (Ast form : ((Ast.Term) ast).getArgs()) {
+                    result = interpreter.eval(form);
+                }
+            } else {
+                result = interpreter.eval(ast);
+            }
+        } catch (RuntimeException e) {
+            result = e.getClass();
+        }
+        interpreter.out.flush();
+        return Arrays.asList(out.toString(), result);
+    }
+
+    private static void test(String input, Object expected) {
+        Interpreter interpreter = new Interpreter(new PrintWriter(System.out, true), new Scope(null));
+        Bytecode bytecode = new BytecodeCompiler(interpreter).compile(Parser.parse(input));
+        VirtualMachine machine = new VirtualMachine(interpreter);
+        if (expected != null) {
+            Assertions.assertEquals(expected, machine.execute(bytecode));
+        } else {
+            Assertions.assertThrows(EvalException.class, () -> machine.execute(bytecode));
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package plc.scanner;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+
+final class LookaheadTests {
+
+    @Test
+    void testPull() {
+        int[] pulled = {0};
+        Iterator<Integer> source = IntStream.range(0, 5).peek(i -> pulled[0]++).iterator();
+        Lookahead<Integer> lookahead = new Lookahead<>(source);
+        Assertions.assertFalse(lookahead.has(-1));
+        Assertions.assertTrue(lookahead.has(1));
+        Assertions.assertEquals(2, pulled[0]);
+        Assertions.assertEquals(1, (int) lookahead.get(1));
+        Assertions.assertTrue(lookahead.has(4));
+        Assertions.assertFalse(lookahead.has(5));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> lookahead.get(5));
+    }
+
+    @Test
+    void testRelease() {
+        Lookahead<Integer> lookahead = new Lookahead<>(IntStream.range(0, 1000).iterator());
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals(i, (int) lookahead.get(i));
+            if (i > 0) {
+                Assertions.assertEquals(i - 1, (int) lookahead.get(i - 1));
+            }
+            lookahead.release(i);
+        }
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> lookahead.get(998));
+        Assertions.assertEquals(999, (int) lookahead.get(999));
+    }
+
+    @Test
+    void testGrow() {
+        Lookahead<String> lookahead = new Lookahead<>(Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h", "i", "j").iterator());
+        lookahead.release(2);
+        Assertions.assertEquals("j", lookahead.get(9));
+        for (int i = 2; i < 10; i++) {
+            Assertions.assertEquals(String.valueOf((char) ('a' + i)), lookahead.get(i));
+        }
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> lookahead.get(1));
+    }
+
+}
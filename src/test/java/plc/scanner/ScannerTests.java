@@ -0,0 +1,54 @@
+package plc.scanner;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+final class ScannerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testClass(String test, int mask, String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        for (char c = 0; c < 256; c++) {
+            Assertions.assertEquals(pattern.matcher(String.valueOf(c)).matches(),
+                    (Scanner.classes(c) & mask) != 0, "Character " + (int) c);
+        }
+    }
+
+    private static Stream<Arguments> testClass() {
+        return Stream.of(
+                Arguments.of("Whitespace", Scanner.WHITESPACE, "\\s"),
+                Arguments.of("Blank", Scanner.BLANK, "[\n\r\t ]"),
+                Arguments.of("Digit", Scanner.DIGIT, "[0-9]"),
+                Arguments.of("Letter", Scanner.LETTER, "[A-Za-z]"),
+                Arguments.of("Underscore", Scanner.UNDERSCORE, "_"),
+                Arguments.of("Symbol", Scanner.SYMBOL, "[*/:!?<>=]"),
+                Arguments.of("Sign", Scanner.SIGN, "[+-]"),
+                Arguments.of("Dot", Scanner.DOT, "\\."),
+                Arguments.of("Quote", Scanner.QUOTE, "\""),
+                Arguments.of("Backslash", Scanner.BACKSLASH, "\\\\"),
+                Arguments.of("Escape", Scanner.ESCAPE, "[bnrt'\"\\\\]"),
+                Arguments.of("Combined", Scanner.LETTER | Scanner.DIGIT | Scanner.UNDERSCORE, "[A-Za-z0-9_]")
+        );
+    }
+
+    @Test
+    void testScan() {
+        Scanner scanner = new Scanner("abc12 x") {};
+        Assertions.assertTrue(scanner.is(0, Scanner.LETTER));
+        Assertions.assertTrue(scanner.is(0, 'a'));
+        scanner.advanceWhile(Scanner.LETTER | Scanner.DIGIT);
+        Assertions.assertEquals("abc12", scanner.literal());
+        Assertions.assertEquals(0, scanner.start());
+        Assertions.assertTrue(scanner.is(0, Scanner.BLANK));
+        Assertions.assertFalse(scanner.is(2, Scanner.LETTER));
+        Assertions.assertFalse(scanner.has(2));
+    }
+
+}
@@ -0,0 +1,79 @@
+package plc.scanner;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+final class SourceTests {
+
+    private static final String INPUT = "abé中😀cd efg ééé hij";
+
+    @Test
+    void testText() {
+        Source source = Source.of(INPUT);
+        Assertions.assertTrue(source.has(INPUT.length() - 1));
+        Assertions.assertFalse(source.has(INPUT.length()));
+        Assertions.assertEquals("cd", source.substring(6, 8));
+    }
+
+    @Test
+    void testDecoded() {
+        for (int chunk = 1; chunk <= 8; chunk++) {
+            Source source = decoded(chunk);
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; source.has(i); i++) {
+                builder.append(source.charAt(i));
+                source.release(i);
+            }
+            Assertions.assertEquals(INPUT, builder.toString(), "Chunk " + chunk);
+        }
+    }
+
+    @Test
+    void testRelease() {
+        Source source = decoded(2);
+        Assertions.assertEquals("abé中", source.substring(0, 4));
+        source.release(9);
+        Assertions.assertTrue(source.has(INPUT.length() - 1));
+        Assertions.assertEquals("efg", source.substring(9, 12));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> source.charAt(0));
+    }
+
+    @Test
+    void testReader() {
+        for (int chunk = 1; chunk <= 8; chunk++) {
+            Source source = new Source.Read(new StringReader(INPUT), chunk);
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; source.has(i); i++) {
+                builder.append(source.charAt(i));
+                source.release(i);
+            }
+            Assertions.assertEquals(INPUT, builder.toString(), "Chunk " + chunk);
+        }
+        Assertions.assertEquals("cd", Source.of(new StringReader(INPUT)).substring(6, 8));
+        Source source = new Source.Read(new StringReader(INPUT), 2);
+        source.release(9);
+        Assertions.assertEquals("efg", source.substring(9, 12));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> source.charAt(0));
+    }
+
+    @Test
+    void testMalformed() {
+        byte[] bytes = {'a', (byte) 0xFF, 'b'};
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(bytes));
+        Source source = Source.of(channel, StandardCharsets.UTF_8);
+        Assertions.assertTrue(source.has(2));
+        Assertions.assertEquals(new String(bytes, StandardCharsets.UTF_8), source.substring(0, 3));
+    }
+
+    private static Source decoded(int chunk) {
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)));
+        return new Source.Decoded(channel::read, StandardCharsets.UTF_8, chunk);
+    }
+
+}
@@ -0,0 +1,56 @@
+package plc.scanner;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+final class TokenBufferTests {
+
+    private static final String INPUT = "(print \"abc\" 12.5)";
+
+    @Test
+    void testAdd() {
+        TokenBuffer tokens = buffer();
+        Assertions.assertEquals(5, tokens.size());
+        Assertions.assertEquals(1, tokens.type(1));
+        Assertions.assertEquals(7, tokens.start(2));
+        Assertions.assertEquals(5, tokens.length(2));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> tokens.type(5));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> tokens.type(-1));
+    }
+
+    @Test
+    void testLiteral() {
+        TokenBuffer tokens = buffer();
+        Assertions.assertEquals("\"abc\"", tokens.literal(2).toString());
+        Assertions.assertEquals('1', tokens.literal(3).charAt(0));
+        Assertions.assertEquals("12.5", tokens.string(3));
+        Assertions.assertTrue(tokens.matches(1, "print"));
+        Assertions.assertFalse(tokens.matches(1, "prin"));
+        Assertions.assertFalse(tokens.matches(1, "prinT"));
+    }
+
+    @Test
+    void testGrow() {
+        StringBuilder input = new StringBuilder();
+        TokenBuffer tokens = new TokenBuffer(input);
+        for (int i = 0; i < 1000; i++) {
+            tokens.add(i % 3, input.length(), 1);
+            input.append((char) ('a' + i % 26));
+        }
+        tokens.trimToSize();
+        Assertions.assertEquals(1000, tokens.size());
+        Assertions.assertEquals(999 % 3, tokens.type(999));
+        Assertions.assertEquals(String.valueOf((char) ('a' + 999 % 26)), tokens.string(999));
+    }
+
+    private static TokenBuffer buffer() {
+        TokenBuffer tokens = new TokenBuffer(INPUT);
+        tokens.add(0, 0, 1);
+        tokens.add(1, 1, 5);
+        tokens.add(2, 7, 5);
+        tokens.add(3, 13, 4);
+        tokens.add(0, 17, 1);
+        return tokens;
+    }
+
+}